@@ -0,0 +1,80 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.IO.DatePacker;
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DatePackerBenchmark
+{
+    private static final int DATE_COUNT = 1024;
+
+    private GregorianCalendar[] calendars;
+    private int[] packed;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        calendars = new GregorianCalendar[DATE_COUNT];
+        packed = new int[DATE_COUNT];
+        long millis = 1400000000000L;
+        for (int i = 0; i < DATE_COUNT; ++i) {
+            GregorianCalendar calendar = new GregorianCalendar();
+            calendar.setTimeInMillis(millis);
+            calendars[i] = calendar;
+            packed[i] = DatePacker.pack(calendar);
+            millis += 7777777L;
+        }
+    }
+
+    @Benchmark
+    public int pack()
+    {
+        return DatePacker.pack(calendars[index++ & (DATE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public GregorianCalendar unpack()
+    {
+        return DatePacker.unpack(packed[index++ & (DATE_COUNT - 1)]);
+    }
+}
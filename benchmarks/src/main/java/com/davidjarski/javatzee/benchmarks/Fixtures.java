@@ -0,0 +1,115 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.history.GameRecord;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.random.RandomGenerator;
+import java.util.stream.Stream;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class Fixtures
+{
+    public static final long SEED = 0x4A415641545A4545L;
+
+    /**
+     * The number of distinct games played to build the records. Larger record
+     * lists repeat these games.
+     */
+    public static final int GAME_POOL_SIZE = 1024;
+
+    private static final String[] NAMES = {"Player 1", "Player 2", "Player 3",
+        "Player 4"};
+
+    private Fixtures()
+    {
+    }
+
+    /**
+     * Points user.home at a new temporary directory, so that the IO classes
+     * create their files there instead of in the real Javatzee data path.
+     * This must be called before any of the IO classes are used, since they
+     * only look up their files once.
+     */
+    public static Path useTemporaryDataDirectory() throws IOException
+    {
+        Path home = Files.createTempDirectory("javatzee-bench");
+        System.setProperty("user.home", home.toString());
+        return home;
+    }
+
+    public static void deleteRecursively(Path path) throws IOException
+    {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /**
+     * Plays <code>count</code> random games from the given seed.
+     */
+    public static GameRecord[] playGames(int count, long seed)
+    {
+        RandomGenerator random = DiceRandom.Algorithm.getDefault().create(seed);
+        ScoreCard card = new ScoreCard();
+        GameRecord[] records = new GameRecord[count];
+        long millis = 1400000000000L;
+        for (int i = 0; i < count; ++i) {
+            card.doDummyGame(random);
+            millis += random.nextInt(3600000);
+            records[i] = new GameRecord(NAMES[i % NAMES.length],
+                    card.getGrandTotal(), card.getKind5Count(), millis,
+                    card.getInts());
+        }
+        return records;
+    }
+
+    /**
+     * @return a list of <code>count</code> records, cycling through a pool of
+     * {@link #GAME_POOL_SIZE} played games
+     */
+    public static ArrayList<GameRecord> createRecords(int count)
+    {
+        GameRecord[] pool = playGames(Math.min(count, GAME_POOL_SIZE), SEED);
+        ArrayList<GameRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            records.add(pool[i % pool.length]);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,232 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.dice.Die;
+import com.davidjarski.javatzee.hand.Hand;
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rolling and classifying hands. The scripted benchmarks replay a fixed
+ * sequence of hands so that the cost of classification can be seen without
+ * the random number generator, either over random hands or over adversarial
+ * ones that change category on every roll and so defeat branch prediction.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandBenchmark
+{
+    /**
+     * The number of hands in a script. A power of two, so the script can wrap
+     * with a mask.
+     */
+    private static final int SCRIPT_HANDS = 4096;
+
+    /**
+     * One hand from each category, cycled through by the adversarial script.
+     */
+    private static final int[][] ADVERSARIAL_HANDS = {
+        {1, 2, 3, 4, 5},    // long straight
+        {4, 4, 4, 4, 4},    // five of a kind
+        {2, 2, 5, 5, 5},    // full house
+        {1, 3, 4, 5, 3},    // short straight
+        {6, 6, 6, 6, 1},    // four of a kind
+        {1, 1, 2, 4, 6},    // chance only
+        {3, 3, 3, 2, 6},    // three of a kind
+        {2, 3, 4, 5, 6},    // long straight
+        {1, 1, 1, 1, 1},    // five of a kind
+        {1, 2, 2, 5, 6},    // chance only
+        {6, 6, 3, 3, 6},    // full house
+        {3, 4, 5, 6, 6},    // short straight
+    };
+
+    @State(Scope.Thread)
+    public static class ScriptState
+    {
+        @Param({"random", "adversarial"})
+        public String hands;
+
+        int[] faces;
+        int position;
+        ScriptedDie[] dice;
+        Hand hand;
+        int[] packedHands;
+        int packedIndex;
+
+        @Setup
+        public void setUp()
+        {
+            RandomGenerator random = DiceRandom.Algorithm.getDefault()
+                    .create(Fixtures.SEED);
+            faces = new int[SCRIPT_HANDS * PackedHand.DICE_COUNT];
+            packedHands = new int[SCRIPT_HANDS];
+            for (int i = 0; i < SCRIPT_HANDS; ++i) {
+                int[] values = new int[PackedHand.DICE_COUNT];
+                if (hands.equals("adversarial")) {
+                    int[] source = ADVERSARIAL_HANDS[i % ADVERSARIAL_HANDS.length];
+                    // shuffle the order of the dice so that only the category repeats
+                    System.arraycopy(source, 0, values, 0, values.length);
+                    for (int j = values.length - 1; j > 0; --j) {
+                        int k = random.nextInt(j + 1);
+                        int temp = values[j];
+                        values[j] = values[k];
+                        values[k] = temp;
+                    }
+                } else {
+                    for (int j = 0; j < values.length; ++j) {
+                        values[j] = random.nextInt(1, 7);
+                    }
+                }
+                System.arraycopy(values, 0, faces, i * values.length, values.length);
+                packedHands[i] = PackedHand.of(values);
+            }
+            dice = new ScriptedDie[PackedHand.DICE_COUNT];
+            for (int i = 0; i < dice.length; ++i) {
+                dice[i] = new ScriptedDie(this);
+            }
+            hand = new Hand(dice);
+        }
+
+        int nextFace()
+        {
+            int face = faces[position];
+            if (++position == faces.length) {
+                position = 0;
+            }
+            return face;
+        }
+
+        /**
+         * Sets the dice to the next hand of the script without rolling them.
+         */
+        void advance()
+        {
+            for (ScriptedDie die : dice) {
+                die.value = nextFace();
+            }
+        }
+
+        int nextPackedHand()
+        {
+            return packedHands[packedIndex++ & (SCRIPT_HANDS - 1)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RandomState
+    {
+        Hand hand;
+
+        @Setup
+        public void setUp()
+        {
+            hand = new Hand(DiceRandom.Algorithm.getDefault().create(Fixtures.SEED));
+        }
+    }
+
+    /**
+     * Reads the next face of the script every time it's rolled.
+     */
+    private static class ScriptedDie implements Die
+    {
+        private final ScriptState script;
+        int value;
+
+        ScriptedDie(ScriptState script)
+        {
+            this.script = script;
+        }
+
+        @Override
+        public void roll()
+        {
+            value = script.nextFace();
+        }
+
+        @Override
+        public int getValue()
+        {
+            return value;
+        }
+    }
+
+    /**
+     * Hand.roll with standard dice, including the random number generator.
+     */
+    @Benchmark
+    public int rollStandardDice(RandomState state)
+    {
+        state.hand.roll();
+        return state.hand.getEntry();
+    }
+
+    /**
+     * Hand.roll over the scripted hands.
+     */
+    @Benchmark
+    public int roll(ScriptState state)
+    {
+        state.hand.roll();
+        return state.hand.getEntry();
+    }
+
+    /**
+     * Hand.handleRoll, which builds the histogram and classifies it, over the
+     * scripted hands. The dice values are set directly so that only
+     * handleRoll does any work beyond reading the script.
+     */
+    @Benchmark
+    public int handleRoll(ScriptState state)
+    {
+        state.advance();
+        state.hand.handleRoll();
+        return state.hand.getEntry();
+    }
+
+    /**
+     * Classifying a packed hand, for comparison with Hand.handleRoll.
+     */
+    @Benchmark
+    public int classifyPacked(ScriptState state)
+    {
+        return PackedHand.classify(state.nextPackedHand());
+    }
+}
@@ -0,0 +1,98 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.IO.HighScoresIO;
+import com.davidjarski.javatzee.history.GameRecord;
+import com.davidjarski.javatzee.history.HighScores;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing a full table of high scores to the user file and reading it back.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HighScoresIOBenchmark
+{
+    private Path home;
+    private ArrayList<GameRecord> highScores;
+    private ArrayList<GameRecord> readScores;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        home = Fixtures.useTemporaryDataDirectory();
+        highScores = new ArrayList<>(Arrays.asList(
+                Fixtures.playGames(HighScores.HIGH_SCORE_COUNT, Fixtures.SEED)));
+        readScores = new ArrayList<>(HighScores.HIGH_SCORE_COUNT);
+        HighScoresIO.write(highScores);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Fixtures.deleteRecursively(home);
+    }
+
+    @Benchmark
+    public ArrayList<GameRecord> read()
+    {
+        HighScoresIO.read(readScores);
+        return readScores;
+    }
+
+    @Benchmark
+    public ArrayList<GameRecord> write()
+    {
+        HighScoresIO.write(highScores);
+        return highScores;
+    }
+
+    @Benchmark
+    public ArrayList<GameRecord> roundTrip()
+    {
+        HighScoresIO.write(highScores);
+        HighScoresIO.read(readScores);
+        return readScores;
+    }
+}
@@ -0,0 +1,162 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.IO.HistoryIO;
+import com.davidjarski.javatzee.IO.MappedHistory;
+import com.davidjarski.javatzee.history.GameRecord;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and writing whole history files. All of the files are created in a
+ * temporary directory that is removed after the trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class HistoryIOBenchmark
+{
+    /**
+     * The games per block of version 2 files, as HistoryIO would use.
+     */
+    private static final int BLOCK_RECORDS = 1024;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int recordCount;
+
+    /**
+     * The history file version: 1 for rows, 2 for blocks of columns, or 3
+     * for compressed blocks of columns.
+     */
+    @Param({"1", "2", "3"})
+    public int version;
+
+    private Path home;
+    private ArrayList<GameRecord> records;
+    private File readFile;
+    private File writeFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        home = Fixtures.useTemporaryDataDirectory();
+        // measure the history file alone, as before the indexes were kept
+        HistoryIO.setIndexing(false);
+        records = Fixtures.createRecords(recordCount);
+        readFile = new File(home.toFile(), "read.dat");
+        writeFile = new File(home.toFile(), "write.dat");
+        createHistoryFile(readFile);
+        HistoryIO.write(records, readFile);
+    }
+
+    /**
+     * Leaves an empty history file of the version being measured. HistoryIO
+     * starts new files in the current version, but appends to a file in
+     * whichever version it already is.
+     */
+    private void createHistoryFile(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            if (version < HistoryIO.CURRENT_VERSION) {
+                raf.writeShort(version);
+                raf.writeInt(0);
+                if (version == 2) {
+                    raf.writeInt(BLOCK_RECORDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the file written by the write benchmark, so every write starts
+     * from a new file instead of the file growing without bound. The writes
+     * take milliseconds or more, so the cost of an invocation level setup is
+     * lost in the noise.
+     */
+    @Setup(Level.Invocation)
+    public void truncateWriteFile() throws IOException
+    {
+        createHistoryFile(writeFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        records = null;
+        Fixtures.deleteRecursively(home);
+    }
+
+    @Benchmark
+    public ArrayList<GameRecord> read()
+    {
+        return HistoryIO.read(readFile);
+    }
+
+    /**
+     * Maps the file and adds up the scores through a single flyweight, for
+     * comparison with reading every record into a list. In version 2 files
+     * only the pages of the score column are touched, and in version 3 files
+     * only the score column is decoded.
+     */
+    @Benchmark
+    public long readMapped() throws IOException
+    {
+        MappedHistory history = MappedHistory.open(readFile);
+        MappedHistory.Record record = history.newRecord();
+        long sum = 0;
+        for (int i = 0; i < history.getCount(); ++i) {
+            sum += record.moveTo(i).getScore();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long write()
+    {
+        HistoryIO.write(records, writeFile);
+        return writeFile.length();
+    }
+}
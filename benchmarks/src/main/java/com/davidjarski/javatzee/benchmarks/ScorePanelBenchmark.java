@@ -0,0 +1,109 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.benchmarks;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.history.GameRecord;
+import com.davidjarski.javatzee.scorepad.ScorePanel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Packing a scorecard into the ints stored with a game record, and restoring
+ * the ScorePanel from them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ScorePanelBenchmark
+{
+    private static final int RECORD_COUNT = 256;
+
+    private GameRecord[] records;
+    private ScorePanel panel;
+    private ScoreCard card;
+    private int[] ints;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        records = Fixtures.playGames(RECORD_COUNT, Fixtures.SEED);
+        panel = new ScorePanel();
+        panel.setStateFromGameRecord(records[0]);
+        card = new ScoreCard();
+        card.setInts(records[0].getInts());
+        ints = new int[ScoreCard.INT_COUNT];
+    }
+
+    private GameRecord nextRecord()
+    {
+        return records[index++ & (RECORD_COUNT - 1)];
+    }
+
+    @Benchmark
+    public int[] getInts()
+    {
+        return panel.getInts();
+    }
+
+    @Benchmark
+    public ScorePanel setStateFromGameRecord()
+    {
+        panel.setStateFromGameRecord(nextRecord());
+        return panel;
+    }
+
+    /**
+     * Packing into a reused array, without the ScorePanel.
+     */
+    @Benchmark
+    public int[] scoreCardGetInts()
+    {
+        card.getInts(ints);
+        return ints;
+    }
+
+    /**
+     * Unpacking without the ScorePanel.
+     */
+    @Benchmark
+    public int scoreCardSetInts()
+    {
+        card.setInts(nextRecord().getInts());
+        return card.getGrandTotal();
+    }
+}
@@ -0,0 +1,109 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.IOUtility.getColumnValuesFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the table of expected column values computed by
+ * strategy.ColumnSolver. The file holds a short version and an int count,
+ * followed by that many floats, so the values can be memory-mapped and read
+ * in place.
+ */
+public class ColumnValuesIO
+{
+    public static final int CURRENT_VERSION = 1;
+
+    private static final int HEADER_BYTE_COUNT = 6;
+    private static final int FLOAT_BYTE_COUNT = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static FloatBuffer read(int count) {
+        return read(getColumnValuesFile(), count);
+    }
+
+    /**
+     * Maps the values in the file into memory.
+     *
+     * @param count the number of values the file is expected to hold
+     * @return the values, or null if the file doesn't exist or doesn't hold
+     * a table of the expected version and size
+     */
+    public static FloatBuffer read(File file, int count) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() != HEADER_BYTE_COUNT + (long)count * FLOAT_BYTE_COUNT
+                    || raf.readShort() != CURRENT_VERSION
+                    || raf.readInt() != count) {
+                return null;
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = raf.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, HEADER_BYTE_COUNT,
+                    (long)count * FLOAT_BYTE_COUNT);
+            return buffer.asFloatBuffer();
+        } catch (IOException ex) {
+            Logger.getLogger(ColumnValuesIO.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    public static void write(float[] values) {
+        write(values, getColumnValuesFile());
+    }
+
+    public static void write(float[] values, File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.writeShort((short)CURRENT_VERSION);
+            raf.writeInt(values.length);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            FloatBuffer floats = buffer.asFloatBuffer();
+            for (int i = 0; i < values.length; i += floats.capacity()) {
+                int length = Math.min(floats.capacity(), values.length - i);
+                floats.clear();
+                floats.put(values, i, length);
+                buffer.clear();
+                buffer.limit(length * FLOAT_BYTE_COUNT);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ColumnValuesIO.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.HistoryIO.PACKED_INT_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryLayout.INTS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.KIND5_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.MILLIS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.NAME_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.SCORE_COLUMN;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compresses the blocks of version 3 history files. A block is encoded
+ * from, and decoded to, the columns of a block of a version 2 file, so the
+ * rest of the IO package handles decoded blocks as it does uncompressed
+ * ones.
+ * <p>
+ * Each column is encoded on its own:
+ * <ul>
+ * <li>Name ids, scores and Javatzee counts by frame of reference: the
+ * block's least value, then each value less it, packed into just as many
+ * bits as the largest difference needs. A block of one player's games
+ * takes no bits at all for the names, and a score about 11.
+ * <li>Times as the first time of the block, then the difference from one
+ * game to the next as a zigzag varint. The players of one game share a
+ * time, so their differences take a byte each, and a game an hour later
+ * three or four.
+ * <li>Each packed int of the score card either by frame of reference, or
+ * by dictionary. ScoreCard.getInts() packs the same boxes of each of the
+ * three columns side by side, so each int is three pieces of a few bits
+ * that take far fewer values than their width allows; the dictionary
+ * holds a block's distinct pieces, and each piece is packed as its place
+ * in it. Whichever of the two is smaller is used, so ints that aren't
+ * packed score cards are stored about as compactly as before.
+ * </ul>
+ * Bits are packed into longs, least significant first, so a column is
+ * decoded with one pass of shifts and masks. Typical games take about 18
+ * bytes rather than the 33 of the other layouts: the name, score, count
+ * and time shrink from 13 bytes to about 4, while the score cards, with
+ * around 80 bits of information in their 160, shrink by only a third.
+ * <p>
+ * An encoded block is an int of its length in bytes, not counting the int
+ * itself, followed by the number of games in it, the positions of the
+ * columns after the first, from the start of the block, and the columns.
+ * Any one column can be decoded without the others, so a scan of the
+ * scores decodes only the scores. A codec holds its own scratch space, so
+ * it must be used by one thread at a time.
+ */
+final class HistoryCodec
+{
+    private static final int GAMES_POSITION = Integer.BYTES;
+    private static final int DIRECTORY_POSITION = 2 * Integer.BYTES;
+    private static final int FIRST_COLUMN_POSITION = DIRECTORY_POSITION
+            + (HistoryLayout.COLUMN_COUNT - 1) * Integer.BYTES;
+
+    private static final int FRAME_OF_REFERENCE = 0;
+    private static final int DICTIONARY = 1;
+
+    /**
+     * The pieces of each packed int: the three columns of its boxes.
+     */
+    private static final int PIECES = 3;
+    /**
+     * The bits of a piece of each packed int, as packed by ScoreCard: the
+     * counts of ones to threes and of fours to sixes, three of a kind, four
+     * of a kind with the flags of the full house to Javatzee boxes, and
+     * chance with the Javatzee bonuses.
+     */
+    private static final int[] PIECE_BITS = {9, 9, 6, 10, 10};
+    private static final int MAX_PIECE_BITS = 10;
+
+    private final HistoryLayout layout;
+    private final int[] values;
+    private final int[] codes;
+    private final int[] dictionary;
+
+    HistoryCodec(HistoryLayout layout)
+    {
+        this.layout = layout;
+        values = new int[PIECES * layout.getBlockRecords()];
+        codes = new int[1 << MAX_PIECE_BITS];
+        dictionary = new int[1 << MAX_PIECE_BITS];
+    }
+
+    /**
+     * @return the most bytes a block can be encoded in, length included
+     */
+    static int getMaxBlockBytes(int blockRecords)
+    {
+        // the widest each column can be, with its header and last long
+        return FIRST_COLUMN_POSITION + 3 * (8 + 2 * blockRecords + 8) + 8 + 10 * blockRecords
+                + PACKED_INT_COUNT * (8 + 4 * blockRecords + 8);
+    }
+
+    /**
+     * Encodes the first games of a block of columns, laid out as in a
+     * version 2 file, to the position of the output buffer.
+     */
+    void encode(ByteBuffer block, int games, ByteBuffer out)
+    {
+        int start = out.position();
+        out.putInt(0);
+        out.putInt(games);
+        out.position(start + FIRST_COLUMN_POSITION);
+        for (int column = 0; column < HistoryLayout.COLUMN_COUNT; ++column) {
+            if (column > 0) {
+                out.putInt(start + DIRECTORY_POSITION + (column - 1) * Integer.BYTES,
+                        out.position() - start);
+            }
+            encodeColumn(block, games, column, out);
+        }
+        out.putInt(start, out.position() - start - Integer.BYTES);
+    }
+
+    private void encodeColumn(ByteBuffer block, int games, int column, ByteBuffer out)
+    {
+        int start = layout.getColumnStart(column);
+        switch (column) {
+        case NAME_COLUMN:
+        case SCORE_COLUMN:
+            for (int i = 0; i < games; ++i) {
+                values[i] = block.getShort(start + 2 * i);
+            }
+            encodeFrame(values, games, out);
+            break;
+        case KIND5_COLUMN:
+            for (int i = 0; i < games; ++i) {
+                values[i] = block.get(start + i);
+            }
+            encodeFrame(values, games, out);
+            break;
+        case MILLIS_COLUMN:
+            encodeMillis(block, games, out);
+            break;
+        default:
+            for (int i = 0; i < games; ++i) {
+                values[i] = block.getInt(start + 4 * i);
+            }
+            encodeInts(values, games, PIECE_BITS[column - INTS_COLUMN], out);
+            break;
+        }
+    }
+
+    /**
+     * Decodes the block at a position of the input, with absolute gets
+     * only, into a block of columns laid out as in a version 2 file.
+     *
+     * @return the number of games in the block
+     * @throws IOException if the block is damaged
+     */
+    int decode(ByteBuffer in, int position, ByteBuffer block) throws IOException
+    {
+        int p = position + FIRST_COLUMN_POSITION;
+        for (int column = 0; column < HistoryLayout.COLUMN_COUNT; ++column) {
+            if (p != getColumnPosition(in, position, column)) {
+                throw new IOException("Damaged history block at " + position);
+            }
+            p = decodeColumn(in, position, column, block);
+        }
+        if (p != position + Integer.BYTES + in.getInt(position)) {
+            throw new IOException("Damaged history block at " + position);
+        }
+        return getGames(in, position);
+    }
+
+    /**
+     * Decodes one column of the block at a position of the input into its
+     * place in a block of columns, leaving the other columns as they are.
+     *
+     * @return the position of the end of the column
+     * @throws IOException if the block is damaged
+     */
+    int decodeColumn(ByteBuffer in, int position, int column, ByteBuffer block)
+            throws IOException
+    {
+        int games = getGames(in, position);
+        if (games < 0 || games > layout.getBlockRecords()) {
+            throw new IOException("Damaged history block at " + position);
+        }
+        int p = getColumnPosition(in, position, column);
+        int start = layout.getColumnStart(column);
+        switch (column) {
+        case NAME_COLUMN:
+        case SCORE_COLUMN:
+            p = decodeFrame(in, p, values, games);
+            for (int i = 0; i < games; ++i) {
+                block.putShort(start + 2 * i, (short)values[i]);
+            }
+            break;
+        case KIND5_COLUMN:
+            p = decodeFrame(in, p, values, games);
+            for (int i = 0; i < games; ++i) {
+                block.put(start + i, (byte)values[i]);
+            }
+            break;
+        case MILLIS_COLUMN:
+            p = decodeMillis(in, p, block, games);
+            break;
+        default:
+            p = decodeInts(in, p, values, games);
+            for (int i = 0; i < games; ++i) {
+                block.putInt(start + 4 * i, values[i]);
+            }
+            break;
+        }
+        return p;
+    }
+
+    /**
+     * @return the number of games in the block at a position of the input
+     */
+    static int getGames(ByteBuffer in, int position)
+    {
+        return in.getInt(position + GAMES_POSITION);
+    }
+
+    private static int getColumnPosition(ByteBuffer in, int position, int column)
+            throws IOException
+    {
+        int end = position + Integer.BYTES + in.getInt(position);
+        int p = column == 0 ? position + FIRST_COLUMN_POSITION
+                : position + in.getInt(position + DIRECTORY_POSITION
+                        + (column - 1) * Integer.BYTES);
+        if (p < position + FIRST_COLUMN_POSITION || p > end || end > in.limit()) {
+            throw new IOException("Damaged history block at " + position);
+        }
+        return p;
+    }
+
+    private void encodeFrame(int[] values, int count, ByteBuffer out)
+    {
+        long min = 0;
+        long max = 0;
+        if (count > 0) {
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+        }
+        for (int i = 0; i < count; ++i) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        int width = getWidth(max - min);
+        for (int i = 0; i < count; ++i) {
+            values[i] -= (int)min;
+        }
+        out.putInt((int)min);
+        out.put((byte)width);
+        pack(values, count, width, out);
+    }
+
+    private int decodeFrame(ByteBuffer in, int p, int[] values, int count)
+            throws IOException
+    {
+        int min = in.getInt(p);
+        int width = in.get(p + Integer.BYTES);
+        if (width < 0 || width > Integer.SIZE) {
+            throw new IOException("Damaged history column at " + p);
+        }
+        p = unpack(in, p + Integer.BYTES + 1, values, count, width);
+        for (int i = 0; i < count; ++i) {
+            values[i] += min;
+        }
+        return p;
+    }
+
+    private void encodeMillis(ByteBuffer block, int games, ByteBuffer out)
+    {
+        long previous = games > 0 ? block.getLong(layout.getColumnStart(MILLIS_COLUMN)) : 0;
+        out.putLong(previous);
+        for (int i = 1; i < games; ++i) {
+            long millis = block.getLong(layout.getColumnStart(MILLIS_COLUMN) + 8 * i);
+            long delta = millis - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.put((byte)(zigzag & 0x7F | 0x80));
+                zigzag >>>= 7;
+            }
+            out.put((byte)zigzag);
+            previous = millis;
+        }
+    }
+
+    private int decodeMillis(ByteBuffer in, int p, ByteBuffer block, int games)
+    {
+        long millis = in.getLong(p);
+        p += Long.BYTES;
+        int start = layout.getColumnStart(MILLIS_COLUMN);
+        if (games > 0) {
+            block.putLong(start, millis);
+        }
+        for (int i = 1; i < games; ++i) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get(p++);
+                zigzag |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            millis += (zigzag >>> 1) ^ -(zigzag & 1);
+            block.putLong(start + 8 * i, millis);
+        }
+        return p;
+    }
+
+    /**
+     * Encodes a column of packed ints by dictionary when all of its values
+     * split into pieces and the dictionary comes out smaller.
+     */
+    private void encodeInts(int[] values, int count, int pieceBits, ByteBuffer out)
+    {
+        int pieceMask = (1 << pieceBits) - 1;
+        boolean pieced = true;
+        long min = Integer.MAX_VALUE;
+        long max = Integer.MIN_VALUE;
+        for (int i = 0; i < count; ++i) {
+            pieced &= (values[i] >>> PIECES * pieceBits) == 0;
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        int frameBytes = 1 + Integer.BYTES + 1 + getPackedBytes(count, getWidth(max - min));
+        if (pieced && count > 0) {
+            // mark the pieces used, then number them in order
+            Arrays.fill(codes, 0, pieceMask + 1, -1);
+            for (int i = 0; i < count; ++i) {
+                for (int k = 0; k < PIECES; ++k) {
+                    codes[values[i] >>> k * pieceBits & pieceMask] = 0;
+                }
+            }
+            int size = 0;
+            for (int piece = 0; piece <= pieceMask; ++piece) {
+                if (codes[piece] == 0) {
+                    codes[piece] = size++;
+                }
+            }
+            int width = getWidth(size - 1);
+            int dictionaryBytes = 1 + 1 + Short.BYTES + Short.BYTES * size + 1
+                    + getPackedBytes(PIECES * count, width);
+            if (dictionaryBytes < frameBytes) {
+                out.put((byte)DICTIONARY);
+                out.put((byte)pieceBits);
+                out.putShort((short)size);
+                for (int piece = 0; piece <= pieceMask; ++piece) {
+                    if (codes[piece] >= 0) {
+                        out.putShort((short)piece);
+                    }
+                }
+                // the pieces of each value in turn, lowest first
+                for (int i = count - 1; i >= 0; --i) {
+                    int value = values[i];
+                    for (int k = PIECES - 1; k >= 0; --k) {
+                        values[PIECES * i + k] = codes[value >>> k * pieceBits & pieceMask];
+                    }
+                }
+                out.put((byte)width);
+                pack(values, PIECES * count, width, out);
+                return;
+            }
+        }
+        out.put((byte)FRAME_OF_REFERENCE);
+        encodeFrame(values, count, out);
+    }
+
+    private int decodeInts(ByteBuffer in, int p, int[] values, int count) throws IOException
+    {
+        int mode = in.get(p++);
+        if (mode == FRAME_OF_REFERENCE) {
+            return decodeFrame(in, p, values, count);
+        }
+        if (mode != DICTIONARY) {
+            throw new IOException("Unknown history encoding: " + mode);
+        }
+        int pieceBits = in.get(p);
+        int size = in.getShort(p + 1) & 0xFFFF;
+        if (pieceBits < 1 || pieceBits > MAX_PIECE_BITS || size < 1 || size > 1 << pieceBits) {
+            throw new IOException("Damaged history dictionary at " + p);
+        }
+        p += 1 + Short.BYTES;
+        for (int k = 0; k < size; ++k) {
+            dictionary[k] = in.getShort(p + Short.BYTES * k) & 0xFFFF;
+        }
+        p += Short.BYTES * size;
+        int width = in.get(p++);
+        if (width != getWidth(size - 1)) {
+            throw new IOException("Damaged history dictionary at " + p);
+        }
+        // every code the width allows then reads a piece, even in damage
+        Arrays.fill(dictionary, size, 1 << width, 0);
+        p = unpack(in, p, values, PIECES * count, width);
+        for (int i = 0; i < count; ++i) {
+            values[i] = dictionary[values[PIECES * i]]
+                    | dictionary[values[PIECES * i + 1]] << pieceBits
+                    | dictionary[values[PIECES * i + 2]] << 2 * pieceBits;
+        }
+        return p;
+    }
+
+    private static int getWidth(long range)
+    {
+        return Long.SIZE - Long.numberOfLeadingZeros(range);
+    }
+
+    private static int getPackedBytes(int count, int width)
+    {
+        return (int)(((long)count * width + Long.SIZE - 1) / Long.SIZE) * Long.BYTES;
+    }
+
+    /**
+     * Packs the low bits of the values into longs, the first value in the
+     * lowest bits of the first long.
+     */
+    private static void pack(int[] values, int count, int width, ByteBuffer out)
+    {
+        if (width == 0) {
+            return;
+        }
+        long word = 0;
+        int used = 0;
+        for (int i = 0; i < count; ++i) {
+            long value = values[i] & 0xFFFFFFFFL;
+            word |= value << used;
+            used += width;
+            if (used >= Long.SIZE) {
+                out.putLong(word);
+                used -= Long.SIZE;
+                word = used == 0 ? 0 : value >>> width - used;
+            }
+        }
+        if (used > 0) {
+            out.putLong(word);
+        }
+    }
+
+    private static int unpack(ByteBuffer in, int p, int[] values, int count, int width)
+    {
+        if (width == 0) {
+            Arrays.fill(values, 0, count, 0);
+            return p;
+        }
+        int end = p + getPackedBytes(count, width);
+        long mask = (1L << width) - 1;
+        long word = in.getLong(p);
+        int used = 0;
+        for (int i = 0; i < count; ++i) {
+            long value = word >>> used;
+            used += width;
+            if (used >= Long.SIZE) {
+                // the rest of the value is at the bottom of the next long
+                used -= Long.SIZE;
+                p += Long.BYTES;
+                if (p < end) {
+                    word = in.getLong(p);
+                    value |= word << width - used;
+                }
+            }
+            values[i] = (int)(value & mask);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,163 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.HistoryIO.PACKED_INT_COUNT;
+import static com.davidjarski.javatzee.IO.IOUtility.getHistoryFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Rewrites history files in either layout of blocks, the columns of
+ * version 2 or the compressed columns of version 3, a block at a time, so
+ * a history of any size is converted with one block's worth of memory. The
+ * games keep their order, so the history indexes stay valid.
+ * <p>
+ * Files of every version are still read and appended to by HistoryIO, so
+ * migrating them is never required, only worthwhile for large histories.
+ */
+public class HistoryConverter
+{
+    /**
+     * Writes the games of a history file, of any version, to a new file of
+     * the version given.
+     *
+     * @param version 2 or 3
+     * @param blockRecords the number of games per block
+     * @return the number of games written
+     */
+    public static int convert(File source, File target, int version, int blockRecords)
+            throws IOException
+    {
+        if (version == HistoryLayout.ROW_VERSION) {
+            throw new IllegalArgumentException("Files can only be converted to blocks");
+        }
+        HistoryLayout layout = HistoryLayout.create(version, blockRecords);
+        HistoryCodec codec = layout.isCompressed() ? new HistoryCodec(layout) : null;
+        int[] ints = new int[PACKED_INT_COUNT];
+        // read without mapping the source, which migrate() replaces
+        try (HistoryReader history = HistoryReader.open(source);
+                RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            int count = history.getCount();
+            raf.setLength(0);
+            layout.writeHeader(raf, count);
+            FileChannel channel = raf.getChannel();
+            channel.position(layout.getHeaderBytes());
+            ByteBuffer block = ByteBuffer.allocate(layout.getBlockBytes());
+            ByteBuffer encoded = codec == null ? block
+                    : ByteBuffer.allocate(HistoryCodec.getMaxBlockBytes(blockRecords));
+            long last = layout.getHeaderBytes();
+            for (int first = 0; first < count; first += blockRecords) {
+                int blockCount = Math.min(blockRecords, count - first);
+                if (blockCount < blockRecords) {
+                    // the unused end of each column of the last block
+                    Arrays.fill(block.array(), (byte)0);
+                }
+                for (int i = 0; i < blockCount; ++i) {
+                    history.moveTo(first + i).getInts(ints);
+                    layout.put(block, i, history.getNameId(), history.getScore(),
+                            history.getKind5Count(), history.getMillis(), ints);
+                }
+                encoded.clear();
+                if (codec != null) {
+                    codec.encode(block, blockCount, encoded);
+                    encoded.flip();
+                }
+                last = channel.position();
+                while (encoded.hasRemaining()) {
+                    channel.write(encoded);
+                }
+            }
+            if (layout.isCompressed()) {
+                HistoryLayout.setLastBlock(raf, last);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Converts a history file in place, keeping the original next to it
+     * with ".bak" added to its name. Holds HistoryIO's lock throughout, so
+     * no game is saved to the file while it is rewritten.
+     *
+     * @return false if the file was already of the version and block size
+     * given
+     */
+    public static boolean migrate(File file, int version, int blockRecords)
+            throws IOException
+    {
+        synchronized (HistoryIO.class) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                HistoryLayout layout = HistoryLayout.read(raf);
+                if (layout.getVersion() == version
+                        && layout.getBlockRecords() == blockRecords) {
+                    return false;
+                }
+            }
+            File temporary = new File(file.getPath() + ".tmp");
+            convert(file, temporary, version, blockRecords);
+            Files.copy(file.toPath(), new File(file.getPath() + ".bak").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temporary.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Usage: HistoryConverter [historyFile [version [blockRecords]]]
+     * <p>
+     * Migrates the history file given, or the usual one, to the version
+     * given, or the current one, and prints its size before and after.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File file = args.length > 0 ? new File(args[0]) : getHistoryFile();
+        int version = args.length > 1 ? Integer.parseInt(args[1])
+                : HistoryIO.CURRENT_VERSION;
+        int blockRecords = args.length > 2 ? Integer.parseInt(args[2])
+                : HistoryLayout.DEFAULT_BLOCK_RECORDS;
+        long before = file.length();
+        long start = System.nanoTime();
+        if (migrate(file, version, blockRecords)) {
+            System.out.printf("%s: %d bytes to %d bytes in %.1f ms%n", file,
+                    before, file.length(), (System.nanoTime() - start) / 1e6);
+        } else {
+            System.out.printf("%s is already version %d in blocks of %d games%n",
+                    file, version, blockRecords);
+        }
+    }
+}
@@ -23,15 +23,19 @@
  */
 package com.davidjarski.javatzee.IO;
 
+import static com.davidjarski.javatzee.IO.HistoryLayout.COLUMN_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryLayout.INTS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.KIND5_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.MILLIS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.NAME_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.SCORE_COLUMN;
 import static com.davidjarski.javatzee.IO.IOUtility.CHARSET;
 import static com.davidjarski.javatzee.IO.IOUtility.LINE_SEPARATOR;
 import static com.davidjarski.javatzee.IO.IOUtility.getHistoryFile;
 import static com.davidjarski.javatzee.IO.IOUtility.getNameFile;
 import com.davidjarski.javatzee.history.GameRecord;
-import com.davidjarski.javatzee.players.Players;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -42,66 +46,76 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class HistoryIO
 {
-    public static final int CURRENT_VERSION = 1;
+    /**
+     * The version of new history files, compressed blocks of columns. Files
+     * of version 1, laid out in rows, and of version 2, in uncompressed
+     * blocks of columns, are still read and appended to, until
+     * HistoryConverter migrates them.
+     */
+    public static final int CURRENT_VERSION = HistoryLayout.COMPRESSED_VERSION;
+    static final int NAME_FILE_VERSION = 1;
     
-    private static final int COUNT_POSITION = 2;
+    static final int COUNT_POSITION = 2;
+    static final int HEADER_BYTE_COUNT = 6;
     private static final int BUFFER_SIZE = 1024;
-    private static final int PACKED_INT_COUNT = 5;
+    static final int PACKED_INT_COUNT = 5;
     /**
      * The number of bytes needed to store a single record. Used to determine
      * when to compact the ByteBuffer and read in more bytes.
      */
-    private static final int RECORD_BYTE_COUNT = 33;
+    static final int RECORD_BYTE_COUNT = 33;
+    /**
+     * The most records buffered before they are written to the channel.
+     */
+    private static final int WRITE_BUFFER_RECORDS = 1024;
         
     private static HashMap<String, Integer> nameMap;
     private static HashMap<Integer, String> indexMap;
     private static int nextId;
     private static boolean initialized;
-    private static int historyCount;
+    private static boolean indexing = true;
+    private static final HashMap<File, HistoryIndex> indexes = new HashMap<>();
     
     public static ArrayList<GameRecord> read() {
+        return read(getHistoryFile());
+    }
+    
+    /**
+     * Reading and writing are synchronized, since the game server saves
+     * games from many tables at once.
+     */
+    public static synchronized ArrayList<GameRecord> read(File file) {
         if (!initialized) {
             initialize();
         }
         ArrayList<GameRecord> records = null;
-        try (FileInputStream fis = new FileInputStream(getHistoryFile())) {
+        try (FileInputStream fis = new FileInputStream(file)) {
             FileChannel channel = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-            buffer.limit(6);
-            channel.read(buffer);
-            buffer.rewind();
-            if (buffer.getShort() != CURRENT_VERSION) {
-                // handle any update code here
-            }
-            int count = buffer.getInt();
-            records = new ArrayList<>(count);
-            buffer.clear();
-            channel.read(buffer);
-            buffer.rewind();
-            GameRecord record;
-            for (int i = 0; i < count; ++i) {
-                record = new GameRecord(
-                    indexMap.get((int)buffer.getShort()),   // name
-                    buffer.getShort(),                      // score
-                    buffer.get(),                           // fiveOfAKindCount
-                    buffer.getLong());                     // millis
-                int[] ints = new int[PACKED_INT_COUNT];
-                for (int j = 0; j < PACKED_INT_COUNT; ++j) {
-                    ints[j] = buffer.getInt();
-                }
-                record.setInts(ints);
-                if (buffer.remaining() < RECORD_BYTE_COUNT) {
-                    buffer.compact();
-                    channel.read(buffer);
-                    buffer.rewind();
-                }
-                records.add(record);
+            if (channel.size() < HEADER_BYTE_COUNT) {
+                return new ArrayList<>();
+            }
+            ByteBuffer header = ByteBuffer.allocate(BUFFER_SIZE);
+            header.limit((int)Math.min(channel.size(), BUFFER_SIZE));
+            channel.read(header, 0);
+            HistoryLayout layout = HistoryLayout.read(header);
+            int count = HistoryLayout.getCount(header);
+            channel.position(layout.getHeaderBytes());
+            if (layout.getVersion() == HistoryLayout.ROW_VERSION) {
+                records = readRows(channel, count);
+            } else if (layout.isCompressed()) {
+                records = readCompressed(channel, layout, count,
+                        HistoryLayout.getLastBlock(header));
+            } else {
+                // a write that was cut short may have left a partial block
+                count = Math.min(count, layout.getCapacity(channel.size()));
+                records = readColumns(channel, layout, count);
             }
         } catch (IOException ex) {
             Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
@@ -110,7 +124,197 @@ public class HistoryIO
         return records;
     }
     
+    private static ArrayList<GameRecord> readRows(FileChannel channel, int count)
+            throws IOException
+    {
+        ArrayList<GameRecord> records = new ArrayList<>(count);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        channel.read(buffer);
+        buffer.rewind();
+        GameRecord record;
+        for (int i = 0; i < count; ++i) {
+            record = new GameRecord(
+                indexMap.get((int)buffer.getShort()),   // name
+                buffer.getShort(),                      // score
+                buffer.get(),                           // fiveOfAKindCount
+                buffer.getLong());                     // millis
+            int[] ints = new int[PACKED_INT_COUNT];
+            for (int j = 0; j < PACKED_INT_COUNT; ++j) {
+                ints[j] = buffer.getInt();
+            }
+            record.setInts(ints);
+            if (buffer.remaining() < RECORD_BYTE_COUNT) {
+                buffer.compact();
+                channel.read(buffer);
+                buffer.rewind();
+            }
+            records.add(record);
+        }
+        return records;
+    }
+    
+    /**
+     * Reads the file a block at a time, picking each game's fields out of
+     * the block's columns.
+     */
+    private static ArrayList<GameRecord> readColumns(FileChannel channel,
+            HistoryLayout layout, int count) throws IOException
+    {
+        ArrayList<GameRecord> records = new ArrayList<>(count);
+        ByteBuffer block = ByteBuffer.allocate(layout.getBlockBytes());
+        for (int first = 0; first < count; first += layout.getBlockRecords()) {
+            block.clear();
+            while (block.hasRemaining() && channel.read(block) >= 0) {
+            }
+            addRecords(block, layout, Math.min(layout.getBlockRecords(), count - first),
+                    records);
+        }
+        return records;
+    }
+    
+    /**
+     * Reads the file a block at a time, decoding each block to its columns.
+     */
+    private static ArrayList<GameRecord> readCompressed(FileChannel channel,
+            HistoryLayout layout, int count, long lastBlock) throws IOException
+    {
+        ArrayList<GameRecord> records = new ArrayList<>(count);
+        HistoryCodec codec = new HistoryCodec(layout);
+        ByteBuffer encoded = ByteBuffer.allocate(
+                HistoryCodec.getMaxBlockBytes(layout.getBlockRecords()));
+        ByteBuffer block = ByteBuffer.allocate(layout.getBlockBytes());
+        for (long position : getBlocks(channel, layout, count, lastBlock)) {
+            if (!readBlock(channel, position, encoded)) {
+                break;
+            }
+            int games = codec.decode(encoded, 0, block);
+            addRecords(block, layout, Math.min(games, count - records.size()), records);
+        }
+        return records;
+    }
+
+    /**
+     * Finds the blocks of a version 3 file: the full blocks, one after
+     * another from the header, then the last block, wherever the header
+     * says it is.
+     *
+     * @return the positions of the blocks in order, leaving out any that a
+     * file cut short has lost
+     */
+    static long[] getBlocks(FileChannel channel, HistoryLayout layout, int count,
+            long lastBlock) throws IOException
+    {
+        if (count <= 0) {
+            return new long[0];
+        }
+        long[] blocks = getFullBlocks(channel, layout, count);
+        int found = blocks.length - 1;
+        if (found < (count - 1) / layout.getBlockRecords()) {
+            return Arrays.copyOf(blocks, found);
+        }
+        blocks[found] = lastBlock;
+        return blocks;
+    }
+
+    /**
+     * Steps through the full blocks before the last block of a version 3
+     * file, from each to the next by its length.
+     *
+     * @param count the number of games in the file
+     * @return the positions of the full blocks, followed by the position
+     * where they end; fewer if the file ends before they do
+     */
+    private static long[] getFullBlocks(FileChannel channel, HistoryLayout layout,
+            int count) throws IOException
+    {
+        int full = count > 0 ? (count - 1) / layout.getBlockRecords() : 0;
+        long[] positions = new long[full + 1];
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        long position = layout.getHeaderBytes();
+        for (int i = 0; i < full; ++i) {
+            length.clear();
+            if (!readFully(channel, position, length)) {
+                positions[i] = position;
+                return Arrays.copyOf(positions, i + 1);
+            }
+            if (length.getInt(0) < 0) {
+                throw new IOException("Damaged history block at " + position);
+            }
+            positions[i] = position;
+            position += Integer.BYTES + length.getInt(0);
+        }
+        positions[full] = position;
+        return positions;
+    }
+    
+    /**
+     * Reads the compressed block at the position into the buffer, leaving
+     * its limit at the end of the block.
+     *
+     * @return false if the file ends before the block does
+     */
+    static boolean readBlock(FileChannel channel, long position,
+            ByteBuffer encoded) throws IOException
+    {
+        encoded.clear();
+        encoded.limit(Integer.BYTES);
+        if (!readFully(channel, position, encoded)) {
+            return false;
+        }
+        int length = encoded.getInt(0);
+        if (length < 0 || length > encoded.capacity() - Integer.BYTES) {
+            throw new IOException("Damaged history block at " + position);
+        }
+        encoded.limit(Integer.BYTES + length);
+        return readFully(channel, position + Integer.BYTES, encoded);
+    }
+    
+    static boolean readFully(FileChannel channel, long position,
+            ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+    
+    /**
+     * Adds the first games of a block of columns to the list.
+     */
+    private static void addRecords(ByteBuffer block, HistoryLayout layout, int games,
+            ArrayList<GameRecord> records)
+    {
+        int[] starts = new int[COLUMN_COUNT];
+        for (int column = 0; column < COLUMN_COUNT; ++column) {
+            starts[column] = layout.getColumnStart(column);
+        }
+        for (int i = 0; i < games; ++i) {
+            int[] ints = new int[PACKED_INT_COUNT];
+            for (int j = 0; j < PACKED_INT_COUNT; ++j) {
+                ints[j] = block.getInt(starts[INTS_COLUMN + j] + 4 * i);
+            }
+            records.add(new GameRecord(
+                    indexMap.get((int)block.getShort(starts[NAME_COLUMN] + 2 * i)),
+                    block.getShort(starts[SCORE_COLUMN] + 2 * i),
+                    block.get(starts[KIND5_COLUMN] + i),
+                    block.getLong(starts[MILLIS_COLUMN] + 8 * i),
+                    ints));
+        }
+    }
+    
     public static void write(ArrayList<GameRecord> records) {
+        write(records, getHistoryFile());
+    }
+    
+    /**
+     * Appends the records to the given history file, creating the file
+     * header first if the file is empty.
+     */
+    public static synchronized void write(ArrayList<GameRecord> records, File file) {
         if (!initialized) {
             initialize();
         }
@@ -141,35 +345,286 @@ public class HistoryIO
                 Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
-        try (RandomAccessFile raf = new RandomAccessFile(getHistoryFile(), "rw")) {
-            FileChannel channel = raf.getChannel();
-            channel.position(raf.length());
-            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTE_COUNT * Players.MAX_PLAYER_COUNT);
-            index = 0;
-            
-            for (GameRecord record : records) {
-                buffer.putShort((short)ids[index++]);
-                buffer.putShort((short)record.getScore());
-                buffer.put((byte)record.getKind5Count());
-                buffer.putLong(record.getMillis());
-                int[] ints = record.getInts();
-                for (int i : ints) {
-                    buffer.putInt(i);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            int historyCount = 0;
+            HistoryLayout layout;
+            if (raf.length() < HEADER_BYTE_COUNT) {
+                // too short to have been mapped, so it can still be cut
+                layout = HistoryLayout.DEFAULT;
+                raf.setLength(0);
+                layout.writeHeader(raf, historyCount);
+            } else {
+                layout = HistoryLayout.read(raf);
+                raf.seek(COUNT_POSITION);
+                historyCount = raf.readInt();
+            }
+            if (layout.isCompressed()) {
+                // the count is written along with the position of the last block
+                writeCompressed(raf, layout, historyCount, ids, records);
+            } else {
+                if (layout.getVersion() == HistoryLayout.ROW_VERSION) {
+                    writeRows(raf, ids, records);
+                } else {
+                    writeColumns(raf, layout, historyCount, ids, records);
                 }
+                // write the count to the file
+                raf.seek(COUNT_POSITION);
+                raf.writeInt(historyCount + records.size());
             }
             
-            buffer.flip();
-            channel.write(buffer);
-            
-            // write the count to the file
-            raf.seek(COUNT_POSITION);
-            raf.writeInt( (historyCount += records.size()) );
+            if (indexing) {
+                HistoryIndex historyIndex = indexes.get(file);
+                if (historyIndex == null) {
+                    historyIndex = HistoryIndex.open(file);
+                    indexes.put(file, historyIndex);
+                } else {
+                    historyIndex.append(historyCount, ids, records);
+                }
+            }
         } catch (IOException ex) {
+            indexes.remove(file);  // read back from disk next time
             Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
         }
         
     }
     
+    private static void writeRows(RandomAccessFile raf, int[] ids,
+            ArrayList<GameRecord> records) throws IOException
+    {
+        FileChannel channel = raf.getChannel();
+        channel.position(raf.length());
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTE_COUNT
+                * Math.min(records.size(), WRITE_BUFFER_RECORDS));
+        int index = 0;
+        
+        for (GameRecord record : records) {
+            buffer.putShort((short)ids[index++]);
+            buffer.putShort((short)record.getScore());
+            buffer.put((byte)record.getKind5Count());
+            buffer.putLong(record.getMillis());
+            int[] ints = record.getInts();
+            for (int i : ints) {
+                buffer.putInt(i);
+            }
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                channel.write(buffer);
+                buffer.clear();
+            }
+        }
+        
+        buffer.flip();
+        channel.write(buffer);
+    }
+    
+    /**
+     * Fills in the games after the first in the blocks of the file, adding
+     * blocks as needed. Each column of a block gets one write of the new
+     * games' fields.
+     */
+    private static void writeColumns(RandomAccessFile raf, HistoryLayout layout,
+            int first, int[] ids, ArrayList<GameRecord> records) throws IOException
+    {
+        FileChannel channel = raf.getChannel();
+        int blockRecords = layout.getBlockRecords();
+        ByteBuffer buffer = ByteBuffer.allocate(
+                Long.BYTES * Math.min(records.size(), blockRecords));
+        int written = 0;
+        while (written < records.size()) {
+            int index = first + written;
+            int block = index / blockRecords;
+            int count = Math.min(blockRecords * (block + 1) - index,
+                    records.size() - written);
+            long end = layout.getBlockPosition(block + 1);
+            long size = channel.size();
+            if (size < end) {
+                // zeros to the end of a new block, written rather than set
+                // with setLength(), which fails while the file is mapped
+                write(channel, ByteBuffer.allocate((int)(end - size)), size);
+            }
+            for (int column = 0; column < COLUMN_COUNT; ++column) {
+                buffer.clear();
+                for (int i = written; i < written + count; ++i) {
+                    GameRecord record = records.get(i);
+                    switch (column) {
+                    case NAME_COLUMN:
+                        buffer.putShort((short)ids[i]);
+                        break;
+                    case SCORE_COLUMN:
+                        buffer.putShort((short)record.getScore());
+                        break;
+                    case KIND5_COLUMN:
+                        buffer.put((byte)record.getKind5Count());
+                        break;
+                    case MILLIS_COLUMN:
+                        buffer.putLong(record.getMillis());
+                        break;
+                    default:
+                        buffer.putInt(record.getInts()[column - INTS_COLUMN]);
+                        break;
+                    }
+                }
+                buffer.flip();
+                long position = layout.getPosition(index, column);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+            written += count;
+        }
+    }
+    
+    /**
+     * Decodes the last block of the file, if it has room for more games,
+     * adds the new games to it, and writes it, followed by any further
+     * blocks, where they overwrite nothing the header points to. Once they
+     * are on the disk, the header is switched to them with a single write.
+     * <p>
+     * The new blocks go right after the full blocks if they fit in front of
+     * the old last block, and after the old last block otherwise. A block
+     * that has been filled must follow the full blocks, so if it doesn't fit
+     * in front of the old last block, the old last block is first moved out
+     * of its way, with a switch of its own.
+     */
+    private static void writeCompressed(RandomAccessFile raf, HistoryLayout layout,
+            int first, int[] ids, ArrayList<GameRecord> records) throws IOException
+    {
+        if (records.isEmpty()) {
+            return;
+        }
+        FileChannel channel = raf.getChannel();
+        int blockRecords = layout.getBlockRecords();
+        HistoryCodec codec = new HistoryCodec(layout);
+        ByteBuffer encoded = ByteBuffer.allocate(HistoryCodec.getMaxBlockBytes(blockRecords));
+        ByteBuffer block = ByteBuffer.allocate(layout.getBlockBytes());
+        long last = HistoryLayout.getLastBlock(raf);
+        int lastGames = first % blockRecords;
+        int games = lastGames;
+        long position = layout.getHeaderBytes();
+        long lastEnd = position;  // the end of the old last block
+        if (first > 0) {
+            if (!readBlock(channel, last, encoded)) {
+                throw new IOException("History block cut short at " + last);
+            }
+            lastEnd = last + encoded.limit();
+            if (games > 0) {
+                codec.decode(encoded, 0, block);
+                long[] full = getFullBlocks(channel, layout, first);
+                position = full[full.length - 1];
+            } else {
+                position = lastEnd;
+            }
+        }
+        ByteBuffer oldLast = ByteBuffer.allocate(encoded.limit()).put(encoded.flip());
+
+        ArrayList<ByteBuffer> blocks = new ArrayList<>();
+        int size = 0;
+        int written = 0;
+        while (written < records.size()) {
+            int count = Math.min(blockRecords - games, records.size() - written);
+            for (int i = written; i < written + count; ++i) {
+                GameRecord record = records.get(i);
+                layout.put(block, games++, ids[i], record.getScore(),
+                        record.getKind5Count(), record.getMillis(), record.getInts());
+            }
+            written += count;
+            encoded.clear();
+            codec.encode(block, games, encoded);
+            encoded.flip();
+            blocks.add(ByteBuffer.allocate(encoded.remaining()).put(encoded).flip());
+            size += blocks.get(blocks.size() - 1).limit();
+            games = 0;
+        }
+
+        if (lastGames > 0 && position + size > last) {
+            if (lastGames + records.size() < blockRecords) {
+                // still not full, so it can go anywhere
+                position = lastEnd;
+            } else {
+                // the count stays the same until the new blocks are written
+                long moved = Math.max(lastEnd, position + size);
+                write(channel, oldLast.flip(), moved);
+                channel.force(false);
+                layout.setLastBlock(channel, first, moved);
+            }
+        }
+        for (ByteBuffer encodedBlock : blocks) {
+            last = position;
+            position = write(channel, encodedBlock, position);
+        }
+        channel.force(false);
+        layout.setLastBlock(channel, first + records.size(), last);
+    }
+
+    /**
+     * @return the position after the bytes written
+     */
+    private static long write(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+    
+    /**
+     * Turns the upkeep of the history indexes by write() on or off. It is
+     * on by default; with it off, the indexes are caught up the next time
+     * they are opened.
+     */
+    public static synchronized void setIndexing(boolean indexing) {
+        HistoryIO.indexing = indexing;
+    }
+    
+    public static HistoryIndex getIndex() {
+        return getIndex(getHistoryFile());
+    }
+    
+    /**
+     * @return the indexes of the history file, up to date with it, or null
+     * if they can't be read or built
+     */
+    public static synchronized HistoryIndex getIndex(File file) {
+        HistoryIndex historyIndex = indexes.get(file);
+        try {
+            if (historyIndex == null) {
+                historyIndex = HistoryIndex.open(file);
+                indexes.put(file, historyIndex);
+            } else {
+                historyIndex.update();
+            }
+        } catch (IOException ex) {
+            indexes.remove(file);
+            Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+        return historyIndex;
+    }
+    
+    /**
+     * @return the name with the given id in the name file, as stored in the
+     * records of the history
+     */
+    public static synchronized String getName(int id) {
+        if (!initialized) {
+            initialize();
+        }
+        return indexMap.get(id);
+    }
+    
+    /**
+     * @return the id of the name in the name file, or -1 if no game has
+     * been saved under it
+     */
+    public static synchronized int getNameId(String name) {
+        if (!initialized) {
+            initialize();
+        }
+        Integer id = nameMap.get(name);
+        return id == null ? -1 : id;
+    }
+    
     private static void initialize() {
         initialized = true;
         nameMap = new HashMap<>();
@@ -180,7 +635,7 @@ public class HistoryIO
                 new InputStreamReader(
                         new FileInputStream(nameFile), CHARSET) )) {
             
-            if (Integer.parseInt(reader.readLine()) != CURRENT_VERSION) {
+            if (Integer.parseInt(reader.readLine()) != NAME_FILE_VERSION) {
                 // handle any updates here
             }
             
@@ -193,16 +648,6 @@ public class HistoryIO
         } catch (IOException | NumberFormatException ex) {
             Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
         }
-        
-        try (DataInputStream dis = new DataInputStream(
-                new FileInputStream(getHistoryFile()))) {
-            if (dis.readShort() != CURRENT_VERSION) {
-                // handle any updates here
-            }
-            historyCount = dis.readInt();
-        } catch (IOException ex) {
-            Logger.getLogger(HistoryIO.class.getName()).log(Level.SEVERE, null, ex);
-        }
     }
     
     public static void main(String[] args) {
@@ -0,0 +1,464 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import com.davidjarski.javatzee.history.GameRecord;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes of a history file, for finding a player's games, the
+ * games in a range of scores or the games in a range of dates without going
+ * through every record. HistoryIO keeps them up to date as games are
+ * written, and they are rebuilt from the history whenever they are missing
+ * or don't match it.
+ * <p>
+ * Each index chains together the records with the same key: the player's
+ * name id, the score, or the day the game was played on (in UTC). For
+ * every record the chain file holds the index of the record before it with
+ * the same key in each of the three indexes, 12 bytes a record, and the
+ * keys file holds the newest record for every key. Finding the last 50
+ * games of a player follows 50 links back from the player's newest game,
+ * and a range of scores or dates follows the chain of each key in the
+ * range. Both files only ever grow at the end, apart from the keys file,
+ * which is small and replaced as a whole.
+ * <p>
+ * Records are given by their index in the history, to be read with a
+ * MappedHistory.Record. Every lookup returns the newest games first.
+ */
+public class HistoryIndex
+{
+    public static final int CURRENT_VERSION = 1;
+    private static final int NONE = -1;
+
+    private static final int PLAYER = 0;
+    private static final int SCORE = 1;
+    private static final int DAY = 2;
+    private static final int KEY_KINDS = 3;
+    private static final int ENTRY_BYTE_COUNT = 4 * KEY_KINDS;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    /**
+     * The most records indexed before their links are written to the file.
+     */
+    private static final int WRITE_BUFFER_RECORDS = 1024;
+
+    private final File historyFile;
+    private final File chainFile;
+    private final File keyFile;
+    private final ArrayList<TreeMap<Integer, Integer>> heads = new ArrayList<>();
+    private int count;  // the number of records indexed
+    private MappedByteBuffer chains;
+    private int mappedCount;
+
+    private HistoryIndex(File historyFile)
+    {
+        this.historyFile = historyFile;
+        String name = historyFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        chainFile = new File(historyFile.getParentFile(), base + ".idx");
+        keyFile = new File(historyFile.getParentFile(), base + ".keys");
+        for (int kind = 0; kind < KEY_KINDS; ++kind) {
+            heads.add(new TreeMap<>());
+        }
+    }
+
+    /**
+     * Opens the indexes of a history file, building them from the history
+     * if they are missing, and catching them up if they are behind.
+     */
+    public static HistoryIndex open(File historyFile) throws IOException
+    {
+        HistoryIndex index = new HistoryIndex(historyFile);
+        index.load();
+        index.update();
+        return index;
+    }
+
+    /**
+     * @return the number of games indexed
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Indexes any records added to the history by something other than
+     * HistoryIO.write(), or starts over if the history is no longer the
+     * one indexed.
+     */
+    public synchronized void update() throws IOException
+    {
+        try (HistoryReader history = HistoryReader.open(historyFile)) {
+            if (history.getCount() < count) {
+                clear();
+            }
+            if (history.getCount() == count) {
+                return;
+            }
+            ByteBuffer buffer = allocate(history.getCount() - count);
+            int first = count;
+            for (int i = first; i < history.getCount(); ++i) {
+                history.moveTo(i);
+                add(history.getNameId(), history.getScore(), history.getMillis(), buffer);
+                if (!buffer.hasRemaining()) {
+                    first = writeLinks(buffer, first);
+                }
+            }
+            writeLinks(buffer, first);
+        }
+        save();
+    }
+
+    /**
+     * Indexes records that have just been appended to the history.
+     *
+     * @param first the index of the first of them in the history
+     * @param nameIds the id of each record's name
+     */
+    synchronized void append(int first, int[] nameIds, ArrayList<GameRecord> records)
+            throws IOException
+    {
+        if (first != count) {
+            update();  // the index is behind, or ahead of a new history
+            return;
+        }
+        ByteBuffer buffer = allocate(records.size());
+        int index = 0;
+        for (GameRecord record : records) {
+            add(nameIds[index++], record.getScore(), record.getMillis(), buffer);
+            if (!buffer.hasRemaining()) {
+                first = writeLinks(buffer, first);
+            }
+        }
+        writeLinks(buffer, first);
+        save();
+    }
+
+    /**
+     * @return up to limit of the player's games, the newest first
+     */
+    public int[] getPlayerGames(String name, int limit)
+    {
+        int id = HistoryIO.getNameId(name);
+        return id == NONE ? new int[0] : getPlayerGames(id, limit);
+    }
+
+    /**
+     * @param nameId the player's name id, as in MappedHistory.Record
+     * @return up to limit of the player's games, the newest first
+     */
+    public synchronized int[] getPlayerGames(int nameId, int limit)
+    {
+        Games games = new Games(limit);
+        games.follow(heads.get(PLAYER).get(nameId), PLAYER);
+        return games.toArray();
+    }
+
+    /**
+     * @return up to limit of the games scoring from low to high, inclusive,
+     * the highest scores first, and the newest first for each score
+     */
+    public synchronized int[] getScoreRange(int low, int high, int limit)
+    {
+        Games games = new Games(limit);
+        if (low <= high) {
+            for (int head : heads.get(SCORE).subMap(low, true, high, true)
+                    .descendingMap().values()) {
+                games.follow(head, SCORE);
+            }
+        }
+        return games.toArray();
+    }
+
+    /**
+     * @return up to limit of the games played from one time to another,
+     * inclusive, in milliseconds, the newest first
+     */
+    public synchronized int[] getDateRange(long from, long to, int limit)
+            throws IOException
+    {
+        Games games = new Games(limit);
+        if (from > to) {
+            return games.toArray();
+        }
+        long firstDay = getDay(from);
+        long lastDay = getDay(to);
+        NavigableMap<Integer, Integer> days = heads.get(DAY).subMap(
+                (int)firstDay, true, (int)lastDay, true).descendingMap();
+        HistoryReader history = null;
+        try {
+            for (Map.Entry<Integer, Integer> day : days.entrySet()) {
+                if (day.getKey() != firstDay && day.getKey() != lastDay) {
+                    games.follow(day.getValue(), DAY);
+                    continue;
+                }
+                // only the days at the ends can hold games outside the range
+                if (history == null) {
+                    history = HistoryReader.open(historyFile);
+                }
+                for (int i = day.getValue(); i != NONE && !games.isFull(); i = getLink(i, DAY)) {
+                    long millis = history.moveTo(i).getMillis();
+                    if (millis >= from && millis <= to) {
+                        games.add(i);
+                    }
+                }
+            }
+        } finally {
+            if (history != null) {
+                history.close();
+            }
+        }
+        return games.toArray();
+    }
+
+    /**
+     * Gathers the record indexes of a lookup, up to a limit.
+     */
+    private class Games
+    {
+        private final int limit;
+        private int[] indexes = new int[16];
+        private int size;
+
+        Games(int limit)
+        {
+            this.limit = limit;
+        }
+
+        boolean isFull()
+        {
+            return size >= limit;
+        }
+
+        void add(int index)
+        {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, 2 * size);
+            }
+            indexes[size++] = index;
+        }
+
+        void follow(Integer head, int kind)
+        {
+            for (int i = head == null ? NONE : head; i != NONE && !isFull();
+                    i = getLink(i, kind)) {
+                add(i);
+            }
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(indexes, size);
+        }
+    }
+
+    private static long getDay(long millis)
+    {
+        return Math.floorDiv(millis, MILLIS_PER_DAY);
+    }
+
+    private ByteBuffer allocate(int records)
+    {
+        return ByteBuffer.allocate(ENTRY_BYTE_COUNT * Math.min(records, WRITE_BUFFER_RECORDS));
+    }
+
+    /**
+     * Links the next record into each of the chains.
+     */
+    private void add(int nameId, int score, long millis, ByteBuffer buffer)
+    {
+        int[] keys = {nameId, score, (int)getDay(millis)};
+        for (int kind = 0; kind < KEY_KINDS; ++kind) {
+            Integer previous = heads.get(kind).put(keys[kind], count);
+            buffer.putInt(previous == null ? NONE : previous);
+        }
+        ++count;
+    }
+
+    /**
+     * Writes the links in the buffer to the chain file, from the given
+     * record on.
+     *
+     * @return the index of the record after them
+     */
+    private int writeLinks(ByteBuffer buffer, int first) throws IOException
+    {
+        buffer.flip();
+        int records = buffer.remaining() / ENTRY_BYTE_COUNT;
+        try (FileChannel channel = FileChannel.open(chainFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            long position = (long)first * ENTRY_BYTE_COUNT;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        buffer.clear();
+        return first + records;
+    }
+
+    private int getLink(int record, int kind)
+    {
+        if (chains == null || mappedCount < count) {
+            try (FileChannel channel = FileChannel.open(chainFile.toPath(),
+                    StandardOpenOption.READ)) {
+                chains = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        (long)count * ENTRY_BYTE_COUNT);
+                mappedCount = count;
+            } catch (IOException ex) {
+                throw new IllegalStateException("History index can't be read", ex);
+            }
+        }
+        return chains.getInt(record * ENTRY_BYTE_COUNT + 4 * kind);
+    }
+
+    private void clear() throws IOException
+    {
+        count = 0;
+        chains = null;
+        for (TreeMap<Integer, Integer> map : heads) {
+            map.clear();
+        }
+        Files.deleteIfExists(chainFile.toPath());
+    }
+
+    /**
+     * Reads the newest record of every key, trimming any links written
+     * after them, or starts from nothing if the files are missing or don't
+     * agree.
+     */
+    private void load() throws IOException
+    {
+        if (!keyFile.exists() || !chainFile.exists()) {
+            clear();
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(keyFile)))) {
+            if (in.readShort() != CURRENT_VERSION) {
+                clear();
+                return;
+            }
+            count = in.readInt();
+            for (TreeMap<Integer, Integer> map : heads) {
+                for (int size = in.readInt(); size > 0; --size) {
+                    map.put(in.readInt(), in.readInt());
+                }
+            }
+        } catch (IOException ex) {
+            clear();  // rebuilt from the history
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(chainFile.toPath(),
+                StandardOpenOption.WRITE)) {
+            long length = (long)count * ENTRY_BYTE_COUNT;
+            if (channel.size() < length) {
+                clear();
+            } else {
+                channel.truncate(length);
+            }
+        }
+    }
+
+    /**
+     * Replaces the keys file, so it never holds half of an update.
+     */
+    private void save() throws IOException
+    {
+        File temporary = new File(keyFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary)))) {
+            out.writeShort(CURRENT_VERSION);
+            out.writeInt(count);
+            for (TreeMap<Integer, Integer> map : heads) {
+                out.writeInt(map.size());
+                for (Map.Entry<Integer, Integer> head : map.entrySet()) {
+                    out.writeInt(head.getKey());
+                    out.writeInt(head.getValue());
+                }
+            }
+        }
+        try {
+            Files.move(temporary.toPath(), keyFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary.toPath(), keyFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Usage: HistoryIndex [historyFile [name [low high]]]
+     * <p>
+     * Prints the last 50 games of the player, and how many games scored
+     * from low to high, with how long each lookup took.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File file = args.length > 0 ? new File(args[0]) : IOUtility.getHistoryFile();
+        long start = System.nanoTime();
+        HistoryIndex index = open(file);
+        System.out.printf("%d games indexed in %.1f ms%n", index.getCount(),
+                (System.nanoTime() - start) / 1e6);
+        MappedHistory history = MappedHistory.open(file);
+        MappedHistory.Record record = history.newRecord();
+        if (args.length > 1) {
+            start = System.nanoTime();
+            int[] games = index.getPlayerGames(args[1], 50);
+            long took = System.nanoTime() - start;
+            for (int game : games) {
+                System.out.println(record.moveTo(game).toGameRecord());
+            }
+            System.out.printf("last %d games of %s in %.2f ms%n", games.length,
+                    args[1], took / 1e6);
+        }
+        if (args.length > 3) {
+            int low = Integer.parseInt(args[2]);
+            int high = Integer.parseInt(args[3]);
+            start = System.nanoTime();
+            int[] games = index.getScoreRange(low, high, Integer.MAX_VALUE);
+            System.out.printf("%d games scored %d to %d, found in %.2f ms%n",
+                    games.length, low, high, (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
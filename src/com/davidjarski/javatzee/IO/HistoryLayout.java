@@ -0,0 +1,316 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.HistoryIO.COUNT_POSITION;
+import static com.davidjarski.javatzee.IO.HistoryIO.HEADER_BYTE_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryIO.RECORD_BYTE_COUNT;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Where the fields of each game are in a history file, in either of its
+ * layouts.
+ * <p>
+ * Version 1 files store the games row by row, each game's 33 bytes after
+ * the last's. Version 2 files store them in blocks of a fixed number of
+ * games, and within a block, column by column: the name ids of all the
+ * block's games, then all their scores, Javatzee counts, times, and each
+ * of the five packed ints in turn. A scan of the scores, or of the dates,
+ * then reads only the pages holding that column, a few percent of the file.
+ * The header of a version 2 file adds the number of games per block after
+ * the count. The last block is always written out in full, so every block
+ * is the same size and every field can be found from the game's index.
+ * <p>
+ * Since the columns come in the same order as the fields of a row, a row
+ * is simply a block of one game, and the same arithmetic finds a field in
+ * either layout.
+ * <p>
+ * Version 3 files hold the same blocks compressed by HistoryCodec, each as
+ * long as it needs to be. Their header adds the position of the last block,
+ * the only one games are added to, after the number of games per block.
+ * The full blocks lie one after another from the header, but the last
+ * block is never rewritten where it is: games are added by writing a new
+ * copy of it where it overwrites nothing in use, then switching the count
+ * and the position of the last block in the header with a single write.
+ * A save that is cut short then loses only the games it was saving. The
+ * space between the full blocks and the last block, and after the last
+ * block, holds old copies that are reused by later saves. A field is found
+ * by decoding its block to the columns of a version 2 block.
+ */
+final class HistoryLayout
+{
+    static final int ROW_VERSION = 1;
+    static final int COLUMN_VERSION = 2;
+    static final int COMPRESSED_VERSION = 3;
+
+    static final int NAME_COLUMN = 0;
+    static final int SCORE_COLUMN = 1;
+    static final int KIND5_COLUMN = 2;
+    static final int MILLIS_COLUMN = 3;
+    /**
+     * The first of the five columns of packed ints.
+     */
+    static final int INTS_COLUMN = 4;
+    static final int COLUMN_COUNT = 9;
+
+    private static final int[] OFFSETS = {0, 2, 4, 5, 13, 17, 21, 25, 29};
+    private static final int[] WIDTHS = {2, 2, 1, 8, 4, 4, 4, 4, 4};
+
+    private static final int BLOCK_RECORDS_POSITION = 6;
+    private static final int COLUMN_HEADER_BYTE_COUNT = 10;
+    private static final int LAST_BLOCK_POSITION = 10;
+    private static final int COMPRESSED_HEADER_BYTE_COUNT = 18;
+    /**
+     * The games per block of new files, about 33 KB, in which even the
+     * narrowest column fills a couple of KB.
+     */
+    static final int DEFAULT_BLOCK_RECORDS = 1024;
+    /**
+     * The most games per block, so a block can be read into one buffer.
+     */
+    static final int MAX_BLOCK_RECORDS = 1 << 16;
+
+    static final HistoryLayout ROWS = new HistoryLayout(ROW_VERSION, HEADER_BYTE_COUNT, 1);
+    /**
+     * The layout of new files.
+     */
+    static final HistoryLayout DEFAULT = compressed(DEFAULT_BLOCK_RECORDS);
+
+    private final int version;
+    private final int headerBytes;
+    private final int blockRecords;
+
+    private HistoryLayout(int version, int headerBytes, int blockRecords)
+    {
+        this.version = version;
+        this.headerBytes = headerBytes;
+        this.blockRecords = blockRecords;
+    }
+
+    static HistoryLayout columns(int blockRecords)
+    {
+        return create(COLUMN_VERSION, blockRecords);
+    }
+
+    static HistoryLayout compressed(int blockRecords)
+    {
+        return create(COMPRESSED_VERSION, blockRecords);
+    }
+
+    /**
+     * @param blockRecords the number of games per block, ignored for
+     * version 1
+     */
+    static HistoryLayout create(int version, int blockRecords)
+    {
+        if (version == ROW_VERSION) {
+            return ROWS;
+        }
+        if (version != COLUMN_VERSION && version != COMPRESSED_VERSION) {
+            throw new IllegalArgumentException("Unknown history version: " + version);
+        }
+        if (blockRecords < 1 || blockRecords > MAX_BLOCK_RECORDS) {
+            throw new IllegalArgumentException("Games per block must be from 1 to "
+                    + MAX_BLOCK_RECORDS + ": " + blockRecords);
+        }
+        return new HistoryLayout(version, version == COLUMN_VERSION
+                ? COLUMN_HEADER_BYTE_COUNT : COMPRESSED_HEADER_BYTE_COUNT, blockRecords);
+    }
+
+    /**
+     * @param header at least the first HEADER_BYTE_COUNT bytes of a file,
+     * or the whole header of a version 2 file
+     * @throws IOException if the file is of an unknown version or damaged
+     */
+    static HistoryLayout read(ByteBuffer header) throws IOException
+    {
+        int version = header.getShort(0);
+        switch (version) {
+        case ROW_VERSION:
+            return ROWS;
+        case COLUMN_VERSION:
+        case COMPRESSED_VERSION:
+            if (header.limit() < (version == COLUMN_VERSION
+                    ? COLUMN_HEADER_BYTE_COUNT : COMPRESSED_HEADER_BYTE_COUNT)) {
+                throw new IOException("History header is cut short");
+            }
+            int blockRecords = header.getInt(BLOCK_RECORDS_POSITION);
+            if (blockRecords < 1 || blockRecords > MAX_BLOCK_RECORDS) {
+                throw new IOException("Bad history block size: " + blockRecords);
+            }
+            return create(version, blockRecords);
+        default:
+            throw new IOException("Unknown history version: " + version);
+        }
+    }
+
+    static HistoryLayout read(RandomAccessFile raf) throws IOException
+    {
+        byte[] header = new byte[(int)Math.min(raf.length(), COMPRESSED_HEADER_BYTE_COUNT)];
+        raf.seek(0);
+        raf.readFully(header);
+        return read(ByteBuffer.wrap(header));
+    }
+
+    /**
+     * Writes the header at the start of the file.
+     */
+    void writeHeader(RandomAccessFile raf, int count) throws IOException
+    {
+        raf.seek(0);
+        raf.writeShort((short)version);
+        raf.writeInt(count);
+        if (version != ROW_VERSION) {
+            raf.writeInt(blockRecords);
+        }
+        if (version == COMPRESSED_VERSION) {
+            raf.writeLong(headerBytes);
+        }
+    }
+
+    /**
+     * @return the position of the last block of a version 3 file, or where
+     * it is to go if the file has no blocks yet
+     */
+    static long getLastBlock(RandomAccessFile raf) throws IOException
+    {
+        raf.seek(LAST_BLOCK_POSITION);
+        return raf.readLong();
+    }
+
+    static long getLastBlock(ByteBuffer header)
+    {
+        return header.getLong(LAST_BLOCK_POSITION);
+    }
+
+    static void setLastBlock(RandomAccessFile raf, long position) throws IOException
+    {
+        raf.seek(LAST_BLOCK_POSITION);
+        raf.writeLong(position);
+    }
+
+    /**
+     * Sets the count and the position of the last block of a version 3 file
+     * with a single write, so the header never holds one without the other.
+     */
+    void setLastBlock(FileChannel channel, int count, long position) throws IOException
+    {
+        ByteBuffer fields = ByteBuffer.allocate(COMPRESSED_HEADER_BYTE_COUNT - COUNT_POSITION);
+        fields.putInt(count).putInt(blockRecords).putLong(position).flip();
+        long at = COUNT_POSITION;
+        while (fields.hasRemaining()) {
+            at += channel.write(fields, at);
+        }
+    }
+
+    boolean isCompressed()
+    {
+        return version == COMPRESSED_VERSION;
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    int getHeaderBytes()
+    {
+        return headerBytes;
+    }
+
+    int getBlockRecords()
+    {
+        return blockRecords;
+    }
+
+    int getBlockBytes()
+    {
+        return blockRecords * RECORD_BYTE_COUNT;
+    }
+
+    /**
+     * @return the position of a block in an uncompressed file
+     */
+    long getBlockPosition(int block)
+    {
+        return headerBytes + (long)block * getBlockBytes();
+    }
+
+    /**
+     * @return the offset of a column from the start of its block
+     */
+    int getColumnStart(int column)
+    {
+        return blockRecords * OFFSETS[column];
+    }
+
+    static int getWidth(int column)
+    {
+        return WIDTHS[column];
+    }
+
+    /**
+     * @return the position of a field of the game at the index
+     */
+    long getPosition(int index, int column)
+    {
+        int block = index / blockRecords;
+        return getBlockPosition(block) + getColumnStart(column)
+                + (long)(index - block * blockRecords) * WIDTHS[column];
+    }
+
+    /**
+     * @return how many games an uncompressed file of the given size has
+     * room for, which may be fewer than its count if a write was cut short
+     */
+    int getCapacity(long size)
+    {
+        long blocks = Math.max(0, size - headerBytes) / getBlockBytes();
+        return (int)Math.min(Integer.MAX_VALUE, blocks * blockRecords);
+    }
+
+    /**
+     * Puts the fields of a game in their columns, in a block laid out as in
+     * a version 2 file.
+     */
+    void put(ByteBuffer block, int slot, int nameId, int score, int kind5Count,
+            long millis, int[] ints)
+    {
+        block.putShort(getColumnStart(NAME_COLUMN) + 2 * slot, (short)nameId);
+        block.putShort(getColumnStart(SCORE_COLUMN) + 2 * slot, (short)score);
+        block.put(getColumnStart(KIND5_COLUMN) + slot, (byte)kind5Count);
+        block.putLong(getColumnStart(MILLIS_COLUMN) + 8 * slot, millis);
+        for (int i = 0; i < HistoryIO.PACKED_INT_COUNT; ++i) {
+            block.putInt(getColumnStart(INTS_COLUMN + i) + 4 * slot, ints[i]);
+        }
+    }
+
+    static int getCount(ByteBuffer header)
+    {
+        return header.getInt(COUNT_POSITION);
+    }
+}
@@ -0,0 +1,237 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.HistoryIO.HEADER_BYTE_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryIO.PACKED_INT_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryLayout.INTS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.KIND5_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.MILLIS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.NAME_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.SCORE_COLUMN;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the games of a history file, of any version, with positional reads
+ * of a FileChannel. The history indexes and HistoryConverter read the
+ * history with it rather than with MappedHistory, since it leaves nothing
+ * of the file mapped once it is closed, and on Windows a file that is
+ * still mapped can't be resized or replaced.
+ * <p>
+ * Like a MappedHistory.Record, the reader is moved from game to game and
+ * read one field at a time. It reads the file in blocks, and decodes each
+ * column of a compressed block the first time it is read, so going through
+ * the games in order reads each part of the file once.
+ */
+final class HistoryReader implements Closeable
+{
+    /**
+     * About the most bytes of uncompressed blocks read at once.
+     */
+    private static final int WINDOW_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final HistoryLayout layout;
+    private final int count;
+    /**
+     * The positions of the compressed blocks, or null if the file isn't
+     * compressed.
+     */
+    private final long[] blocks;
+    // the fields are read from the blocks read in, or from a decoded block
+    private final ByteBuffer data;
+    private final ByteBuffer encoded;
+    private final HistoryCodec codec;
+    private final int windowBlocks;
+    private int firstBlock = -1;
+    private int decodedColumns;
+    // the position of the game's block in the data, and its place in it
+    private int start;
+    private int slot;
+
+    private HistoryReader(FileChannel channel, HistoryLayout layout, int count,
+            long[] blocks, ByteBuffer encoded)
+    {
+        this.channel = channel;
+        this.layout = layout;
+        this.count = count;
+        this.blocks = blocks;
+        if (blocks == null) {
+            windowBlocks = Math.max(1, WINDOW_BYTES / layout.getBlockBytes());
+            data = ByteBuffer.allocate(windowBlocks * layout.getBlockBytes());
+            this.encoded = null;
+            codec = null;
+        } else {
+            windowBlocks = 1;
+            data = ByteBuffer.allocate(layout.getBlockBytes());
+            this.encoded = encoded;
+            codec = new HistoryCodec(layout);
+        }
+    }
+
+    /**
+     * Opens a history file, which is kept open until the reader is closed.
+     *
+     * @throws IOException if the file can't be read or is damaged
+     */
+    static HistoryReader open(File file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return open(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static HistoryReader open(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        if (size < HEADER_BYTE_COUNT) {
+            return new HistoryReader(channel, HistoryLayout.ROWS, 0, null, null);
+        }
+        // the header of new files is the longest
+        ByteBuffer header = ByteBuffer.allocate((int)Math.min(size,
+                HistoryLayout.DEFAULT.getHeaderBytes()));
+        HistoryIO.readFully(channel, 0, header);
+        HistoryLayout layout = HistoryLayout.read(header);
+        int count = HistoryLayout.getCount(header);
+        if (!layout.isCompressed()) {
+            // a write that was cut short may have left a partial block
+            count = Math.min(count, layout.getCapacity(size));
+            return new HistoryReader(channel, layout, count, null, null);
+        }
+        long[] blocks = HistoryIO.getBlocks(channel, layout, count,
+                HistoryLayout.getLastBlock(header));
+        ByteBuffer encoded = ByteBuffer.allocate(
+                HistoryCodec.getMaxBlockBytes(layout.getBlockRecords()));
+        int games = 0;
+        if (blocks.length > 0) {
+            int full = blocks.length - 1;
+            games = full * layout.getBlockRecords();
+            // a file that was cut short may have lost its last block
+            if (HistoryIO.readBlock(channel, blocks[full], encoded)) {
+                games += HistoryCodec.getGames(encoded, 0);
+            }
+        }
+        return new HistoryReader(channel, layout, Math.min(count, games), blocks, encoded);
+    }
+
+    /**
+     * @return the number of games that can be read
+     */
+    int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Moves to the game at the given index, reading in its block if it
+     * isn't already.
+     *
+     * @throws IOException if the block can't be read
+     */
+    HistoryReader moveTo(int index) throws IOException
+    {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No game " + index + " of " + count);
+        }
+        int block = index / layout.getBlockRecords();
+        slot = index - block * layout.getBlockRecords();
+        if (blocks != null) {
+            if (block != firstBlock) {
+                if (!HistoryIO.readBlock(channel, blocks[block], encoded)) {
+                    throw new IOException("History block at " + blocks[block] + " is cut short");
+                }
+                firstBlock = block;
+                decodedColumns = 0;
+            }
+        } else {
+            if (firstBlock < 0 || block < firstBlock || block >= firstBlock + windowBlocks) {
+                // aligned, so a window is as useful going backwards as forwards
+                firstBlock = block - block % windowBlocks;
+                data.clear();
+                long position = layout.getBlockPosition(firstBlock);
+                data.limit((int)Math.min(data.capacity(), channel.size() - position));
+                if (!HistoryIO.readFully(channel, position, data)) {
+                    throw new IOException("History file is cut short at " + position);
+                }
+            }
+            start = (block - firstBlock) * layout.getBlockBytes();
+        }
+        return this;
+    }
+
+    private int getPosition(int column) throws IOException
+    {
+        if (codec != null && (decodedColumns & 1 << column) == 0) {
+            codec.decodeColumn(encoded, 0, column, data);
+            decodedColumns |= 1 << column;
+        }
+        return start + layout.getColumnStart(column) + slot * HistoryLayout.getWidth(column);
+    }
+
+    int getNameId() throws IOException
+    {
+        return data.getShort(getPosition(NAME_COLUMN));
+    }
+
+    int getScore() throws IOException
+    {
+        return data.getShort(getPosition(SCORE_COLUMN));
+    }
+
+    int getKind5Count() throws IOException
+    {
+        return data.get(getPosition(KIND5_COLUMN));
+    }
+
+    long getMillis() throws IOException
+    {
+        return data.getLong(getPosition(MILLIS_COLUMN));
+    }
+
+    /**
+     * Copies the packed ints of the score card into the first
+     * PACKED_INT_COUNT elements of the array.
+     */
+    void getInts(int[] array) throws IOException
+    {
+        for (int i = 0; i < PACKED_INT_COUNT; ++i) {
+            array[i] = data.getInt(getPosition(INTS_COLUMN + i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -159,7 +159,7 @@ class IOUtility
         }
 
         PreferencesIO.write(Preferences.getDefaultPreferences(), file);
-        PlayersIO.write(new String[]{Players.DEFAULT_PLAYER_NAME}, file);
+        PlayersIO.write(Players.getDefaultPlayers(), file);
         
     }
     
@@ -181,8 +181,7 @@ class IOUtility
     private static void createHistoryFile(File file) {
         try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
             file.createNewFile(); 
-            raf.writeShort((short)HistoryIO.CURRENT_VERSION);
-            raf.writeInt(0);
+            HistoryLayout.DEFAULT.writeHeader(raf, 0);
         } catch (IOException ex) {
             Logger.getLogger(IOUtility.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -204,13 +203,21 @@ class IOUtility
         return nameFile;
     }
 
+    /**
+     * Unlike the other files, the column values file isn't created here,
+     * since it takes a full solve to fill it in.
+     */
+    public static File getColumnValuesFile() {
+        return new File(getJavatzeeDataPath(), Resources.COLUMN_VALUES_FILENAME);
+    }
+
     private static void createNameFile(File file) {
         try (BufferedWriter writer = new BufferedWriter(
                 new OutputStreamWriter(
                         new FileOutputStream(file), CHARSET))) {
             
             file.createNewFile(); 
-            writer.write(HistoryIO.CURRENT_VERSION + LINE_SEPARATOR);
+            writer.write(HistoryIO.NAME_FILE_VERSION + LINE_SEPARATOR);
         } catch (IOException ex) {
             Logger.getLogger(IOUtility.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -0,0 +1,465 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.IO;
+
+import static com.davidjarski.javatzee.IO.HistoryIO.HEADER_BYTE_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryIO.PACKED_INT_COUNT;
+import static com.davidjarski.javatzee.IO.HistoryLayout.INTS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.KIND5_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.MILLIS_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.NAME_COLUMN;
+import static com.davidjarski.javatzee.IO.HistoryLayout.SCORE_COLUMN;
+import static com.davidjarski.javatzee.IO.IOUtility.getHistoryFile;
+import com.davidjarski.javatzee.history.GameRecord;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read-only view of a history file mapped into memory, for going through
+ * the games without reading them into a list of GameRecords first. Opening
+ * it only maps the file, so it takes about as long for millions of games as
+ * for a handful, and the pages are read in by the operating system as the
+ * records are touched.
+ * <p>
+ * The records are seen through a Record, a flyweight that is moved from
+ * record to record and reads its fields straight out of the mapped bytes.
+ * One Record can visit every game in the file without allocating anything.
+ * Records only read the buffer with absolute gets, so any number of them
+ * can be used at once, from any number of threads.
+ * <p>
+ * Files of either layout can be mapped. In the column layout of version 2
+ * files, each getter of a Record reads only its own column, so a scan
+ * that reads only the scores, or only the dates, only has the pages of
+ * that column read in. In the compressed blocks of version 3 files, a
+ * Record decodes a column of a block the first time one of its getters
+ * reads it, so a scan decodes each column it reads once per block, and
+ * none of the others.
+ * <p>
+ * The view is also Iterable, and can be streamed. Its spliterator splits
+ * the records into ranges of indexes, which, with every record or block
+ * the same width, are ranges of the file, so a parallel stream scans the history
+ * on every core without it ever being read into a list. Iterators and
+ * spliterators hand out a flyweight of their own, moved on to each record
+ * in turn, so a record must be read, or copied with toGameRecord(), before
+ * the next one is taken:
+ * <pre>
+ *     history.stream().parallel().filter(r -&gt; r.getKind5Count() &gt; 3)
+ *             .mapToInt(Record::getScore).max()
+ * </pre>
+ * <p>
+ * The view holds the games that were in the file when it was opened; games
+ * written after that aren't seen. A single mapping is limited to 2 GB, or
+ * about 65 million games.
+ */
+public class MappedHistory implements Iterable<MappedHistory.Record>
+{
+    /**
+     * The fewest records worth handing to another thread, about 32 KB.
+     */
+    private static final int MIN_SPLIT = 1024;
+
+    private final ByteBuffer buffer;
+    private final HistoryLayout layout;
+    private final int count;
+    /**
+     * The positions of the compressed blocks, or null if the file isn't
+     * compressed.
+     */
+    private final int[] blocks;
+
+    private MappedHistory(ByteBuffer buffer, HistoryLayout layout, int count, int[] blocks)
+    {
+        this.buffer = buffer;
+        this.layout = layout;
+        this.count = count;
+        this.blocks = blocks;
+    }
+
+    public static MappedHistory open() throws IOException
+    {
+        return open(getHistoryFile());
+    }
+
+    /**
+     * Maps a history file. The channel is closed again at once; the mapping
+     * stays valid until the view is garbage collected.
+     *
+     * @throws IOException if the file can't be read or is too large to map
+     */
+    public static MappedHistory open(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("History file is too large to map: " + size);
+            }
+            if (size < HEADER_BYTE_COUNT) {
+                return new MappedHistory(ByteBuffer.allocate(0), HistoryLayout.ROWS, 0, null);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            HistoryLayout layout = HistoryLayout.read(buffer);
+            int count = HistoryLayout.getCount(buffer);
+            if (layout.isCompressed()) {
+                return openCompressed(channel, buffer, layout, count);
+            }
+            // a write that was cut short may have left a partial record
+            count = Math.min(count, layout.getCapacity(size));
+            return new MappedHistory(buffer, layout, count, null);
+        }
+    }
+
+    /**
+     * Finds the compressed blocks, as HistoryIO does.
+     */
+    private static MappedHistory openCompressed(FileChannel channel, ByteBuffer buffer,
+            HistoryLayout layout, int count) throws IOException
+    {
+        long[] positions = HistoryIO.getBlocks(channel, layout, count,
+                HistoryLayout.getLastBlock(buffer));
+        int[] blocks = new int[positions.length];
+        int blockCount = 0;
+        int games = 0;
+        for (long position : positions) {
+            // a file that was cut short may end in a partial block
+            if (position > buffer.limit() - 2 * Integer.BYTES) {
+                break;
+            }
+            long end = position + Integer.BYTES + buffer.getInt((int)position);
+            if (end < position + 2 * Integer.BYTES || end > buffer.limit()) {
+                break;
+            }
+            blocks[blockCount++] = (int)position;
+            games += HistoryCodec.getGames(buffer, (int)position);
+        }
+        return new MappedHistory(buffer, layout, Math.min(count, games),
+                Arrays.copyOf(blocks, blockCount));
+    }
+
+    /**
+     * @return the number of games in the view
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return a new flyweight, on the first record
+     */
+    public Record newRecord()
+    {
+        return new Record();
+    }
+
+    /**
+     * @return an iterator over the records, which hands out the same
+     * flyweight each time, moved on to the next record
+     */
+    @Override
+    public Iterator<Record> iterator()
+    {
+        return new Iterator<Record>()
+        {
+            private final Record record = new Record();
+            private int next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < count;
+            }
+
+            @Override
+            public Record next()
+            {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return record.moveTo(next++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Record> spliterator()
+    {
+        return new RecordSpliterator(0, count);
+    }
+
+    /**
+     * @return a sequential stream of the records, which may be made parallel
+     */
+    public Stream<Record> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Reads every game into a GameRecord, as HistoryIO.read() does.
+     */
+    public GameRecord[] toGameRecords()
+    {
+        GameRecord[] records = new GameRecord[count];
+        Record record = newRecord();
+        for (int i = 0; i < count; ++i) {
+            records[i] = record.moveTo(i).toGameRecord();
+        }
+        return records;
+    }
+
+    /**
+     * Goes through a range of the records with its own flyweight, splitting
+     * off the first half of what is left for another thread.
+     */
+    private class RecordSpliterator implements Spliterator<Record>
+    {
+        private final Record record = new Record();
+        private int next;
+        private final int end;
+
+        RecordSpliterator(int next, int end)
+        {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Record> action)
+        {
+            if (next >= end) {
+                return false;
+            }
+            action.accept(record.moveTo(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Record> action)
+        {
+            for (; next < end; ++next) {
+                action.accept(record.moveTo(next));
+            }
+        }
+
+        @Override
+        public Spliterator<Record> trySplit()
+        {
+            int middle = (next + end) >>> 1;
+            // split between blocks, so no block is decoded by both halves
+            middle -= middle % layout.getBlockRecords();
+            if (middle - next < MIN_SPLIT) {
+                return null;
+            }
+            Spliterator<Record> first = new RecordSpliterator(next, middle);
+            next = middle;
+            return first;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * A movable view of one record of the history.
+     */
+    public final class Record
+    {
+        private int index;
+        // the position of the record's block, and its place in the block
+        private int start = layout.getHeaderBytes();
+        private int slot;
+        // what the fields are read from, the mapped file or a decoded block
+        private final ByteBuffer data;
+        private final HistoryCodec codec;
+        private int decoded;
+        private int decodedColumns;
+
+        private Record()
+        {
+            if (blocks == null) {
+                data = buffer;
+                codec = null;
+            } else {
+                data = ByteBuffer.allocate(layout.getBlockBytes());
+                codec = new HistoryCodec(layout);
+                start = 0;
+            }
+        }
+
+        /**
+         * @return this record, moved to the game at the given index
+         */
+        public Record moveTo(int index)
+        {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("No game " + index + " of " + count);
+            }
+            this.index = index;
+            int block = index / layout.getBlockRecords();
+            slot = index - block * layout.getBlockRecords();
+            if (codec == null) {
+                start = (int)layout.getBlockPosition(block);
+            } else if (block != decoded) {
+                decoded = block;
+                decodedColumns = 0;
+            }
+            return this;
+        }
+
+        /**
+         * @throws UncheckedIOException if the column is in a compressed
+         * block that is damaged
+         */
+        private int getPosition(int column)
+        {
+            if (codec != null && (decodedColumns & 1 << column) == 0) {
+                try {
+                    codec.decodeColumn(buffer, blocks[decoded], column, data);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                decodedColumns |= 1 << column;
+            }
+            return start + layout.getColumnStart(column)
+                    + slot * HistoryLayout.getWidth(column);
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * @return the id of the player's name, as numbered in the name file
+         */
+        public int getNameId()
+        {
+            return data.getShort(getPosition(NAME_COLUMN));
+        }
+
+        public String getName()
+        {
+            return HistoryIO.getName(getNameId());
+        }
+
+        public int getScore()
+        {
+            return data.getShort(getPosition(SCORE_COLUMN));
+        }
+
+        public int getKind5Count()
+        {
+            return data.get(getPosition(KIND5_COLUMN));
+        }
+
+        public long getMillis()
+        {
+            return data.getLong(getPosition(MILLIS_COLUMN));
+        }
+
+        /**
+         * @return one of the ints the score card is packed into, as in
+         * ScoreCard.getInts()
+         */
+        public int getInt(int i)
+        {
+            return data.getInt(getPosition(INTS_COLUMN + i));
+        }
+
+        /**
+         * Copies the packed ints of the score card into the first
+         * ScoreCard.INT_COUNT elements of the array.
+         */
+        public void getInts(int[] array)
+        {
+            for (int i = 0; i < PACKED_INT_COUNT; ++i) {
+                array[i] = getInt(i);
+            }
+        }
+
+        /**
+         * @return a copy of the record that stays put
+         */
+        public GameRecord toGameRecord()
+        {
+            int[] ints = new int[PACKED_INT_COUNT];
+            getInts(ints);
+            return new GameRecord(getName(), getScore(), getKind5Count(),
+                    getMillis(), ints);
+        }
+    }
+
+    /**
+     * Maps the history file given, or the usual one, and prints the number
+     * of games, the mean score and how long each took, followed by each
+     * player's mean score, worked out with a parallel stream.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        long start = System.nanoTime();
+        MappedHistory history = args.length > 0 ? open(new File(args[0])) : open();
+        long opened = System.nanoTime();
+        long sum = 0;
+        Record record = history.newRecord();
+        for (int i = 0; i < history.getCount(); ++i) {
+            sum += record.moveTo(i).getScore();
+        }
+        long scanned = System.nanoTime();
+        System.out.printf("%d games, mean score %.1f%n", history.getCount(),
+                history.getCount() == 0 ? 0.0 : (double)sum / history.getCount());
+        System.out.printf("opened in %.2f ms, scanned in %.2f ms%n",
+                (opened - start) / 1e6, (scanned - opened) / 1e6);
+        Map<Integer, Double> means = history.stream().parallel().collect(
+                Collectors.groupingByConcurrent(Record::getNameId,
+                        Collectors.averagingInt(Record::getScore)));
+        System.out.printf("per player in %.2f ms%n", (System.nanoTime() - scanned) / 1e6);
+        for (Map.Entry<Integer, Double> mean : means.entrySet()) {
+            System.out.printf("%-20s %7.1f%n", HistoryIO.getName(mean.getKey()),
+                    mean.getValue());
+        }
+    }
+}
@@ -24,8 +24,10 @@
 package com.davidjarski.javatzee.IO;
 
 import com.davidjarski.javatzee.IO.IOUtility.Block;
+import static com.davidjarski.javatzee.IO.IOUtility.getBoolean;
 import static com.davidjarski.javatzee.IO.IOUtility.getString;
 import static com.davidjarski.javatzee.IO.IOUtility.getUserFile;
+import static com.davidjarski.javatzee.IO.IOUtility.putBoolean;
 import static com.davidjarski.javatzee.IO.IOUtility.putString;
 import com.davidjarski.javatzee.players.Players;
 import java.io.File;
@@ -39,18 +41,21 @@ import java.util.logging.Logger;
 
 public class PlayersIO
 {
-    public static final int CURRENT_VERSION = 1;
+    /* version 2 follows each name with a flag that is set when the player
+       is controlled by the computer
+    */
+    public static final int CURRENT_VERSION = 2;
     
     /* this class simply calls the overloaded version (avoids code duplication
        in the Utility.createUserFile() method, which stores default values).
     */
-    public static void write(String[] names) {
-        write(names, getUserFile());
+    public static void write(Players players) {
+        write(players, getUserFile());
     }
     
-    public static String[] read() {
+    public static Players read() {
         File file = getUserFile();
-        String[] names = null;
+        Players players = null;
         try (FileInputStream fis = new FileInputStream(file)) {
             FileChannel channel = fis.getChannel();
             channel.position(Block.PLAYERS.position);
@@ -59,32 +64,37 @@ public class PlayersIO
             buffer.rewind();
 
             int fileVersion = buffer.getShort();
-            if (fileVersion == CURRENT_VERSION) {
-                names = new String[buffer.get()];
+            if (fileVersion == CURRENT_VERSION || fileVersion == 1) {
+                String[] names = new String[buffer.get()];
+                boolean[] computers = new boolean[names.length];
                 for (int i = 0; i < names.length; ++i) {
                     names[i] = getString(buffer);
+                    if (fileVersion == CURRENT_VERSION) {
+                        computers[i] = getBoolean(buffer);
+                    }
                 }
+                players = Players.create(names, computers);
             } else {
                 // add update code here when/if necessary
             }
             
         } catch (IOException ex) {
             Logger.getLogger(PlayersIO.class.getName()).log(Level.SEVERE, null, ex);
-            names = new String[]{Players.DEFAULT_PLAYER_NAME};
         } 
-        return names;
+        return players == null ? Players.getDefaultPlayers() : players;
     }
     
-    static void write(String[] names, File file) {
+    static void write(Players players, File file) {
         try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
             FileChannel channel = raf.getChannel();
             channel.position(Block.PLAYERS.position);
             ByteBuffer buffer = ByteBuffer.allocate(Block.PLAYERS.size);
             
             buffer.putShort((short)CURRENT_VERSION);
-            buffer.put((byte)names.length);
-            for (String name : names) {
-                putString(buffer, name);
+            buffer.put((byte)players.getNumberOfPlayers());
+            for (int i = 0; i < players.getNumberOfPlayers(); ++i) {
+                putString(buffer, players.getName(i));
+                putBoolean(buffer, players.isComputer(i));
             }
             
             buffer.flip();
@@ -43,4 +43,5 @@ public class Resources
     public static final String USER_FILENAME = "config.dat";
     public static final String HISTORY_FILENAME = "history.dat";
     public static final String NAME_FILENAME = "names.dat";
+    public static final String COLUMN_VALUES_FILENAME = "columnvalues.dat";
 }
@@ -0,0 +1,190 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.dice;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.JumpableGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * The single source of randomness for all dice.
+ * <p>
+ * The algorithm and an optional seed can be chosen with the
+ * <code>javatzee.random.algorithm</code> and <code>javatzee.random.seed</code>
+ * system properties, or with configure() before any dice are rolled. When a
+ * seed is set, the generators returned by create() form a reproducible
+ * sequence of independent streams.
+ * <p>
+ * Dice that are rolled from a single thread, such as the graphical dice on the
+ * event dispatch thread, should use current(), which gives every thread its
+ * own generator so that no thread contends with another for shared state.
+ * Parallel workers should each take one of the generators returned by split().
+ */
+public class DiceRandom
+{
+    public static final String ALGORITHM_PROPERTY = "javatzee.random.algorithm";
+    public static final String SEED_PROPERTY = "javatzee.random.seed";
+
+    private static Algorithm algorithm;
+    private static RandomGenerator seedSource;  // null unless a seed was set
+
+    private static final ThreadLocal<RandomGenerator> current =
+            new ThreadLocal<RandomGenerator>()
+    {
+        @Override
+        protected RandomGenerator initialValue() {
+            return create();
+        }
+    };
+
+    static {
+        algorithm = Algorithm.create(System.getProperty(ALGORITHM_PROPERTY));
+        String seed = System.getProperty(SEED_PROPERTY);
+        if (seed != null) {
+            try {
+                seedSource = algorithm.create(Long.parseLong(seed.trim()));
+            } catch (NumberFormatException ex) {
+                // use an unseeded source
+            }
+        }
+    }
+
+    public enum Algorithm
+    {
+        L64X128("L64X128MixRandom"),
+        XOSHIRO("Xoshiro256PlusPlus"),
+        SPLITTABLE("SplittableRandom"),
+        LEGACY("Random");
+
+        private final String generatorName;
+
+        public static Algorithm create(String name) {
+            try {
+                return valueOf(name);
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                return getDefault();
+            }
+        }
+
+        public static Algorithm getDefault() {
+            return L64X128;
+        }
+
+        Algorithm(String generatorName) {
+            this.generatorName = generatorName;
+        }
+
+        public RandomGenerator create() {
+            return RandomGeneratorFactory.of(generatorName).create();
+        }
+
+        public RandomGenerator create(long seed) {
+            return RandomGeneratorFactory.of(generatorName).create(seed);
+        }
+
+        /**
+         * @return the name of the algorithm in java.util.random
+         */
+        public String getGeneratorName() {
+            return generatorName;
+        }
+    }
+
+    private DiceRandom() { }
+
+    /**
+     * Uses the algorithm for all new generators, unseeded. Threads that have
+     * already called current() keep the generator they have.
+     */
+    public static synchronized void configure(Algorithm algorithm)
+    {
+        DiceRandom.algorithm = algorithm;
+        seedSource = null;
+    }
+
+    /**
+     * Uses the algorithm for all new generators, seeding each one from a
+     * sequence that starts with the given seed.
+     */
+    public static synchronized void configure(Algorithm algorithm, long seed)
+    {
+        DiceRandom.algorithm = algorithm;
+        seedSource = algorithm.create(seed);
+    }
+
+    public static synchronized Algorithm getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * @return a new generator with its own state
+     */
+    public static synchronized RandomGenerator create()
+    {
+        if (seedSource == null) {
+            return algorithm.create();
+        }
+        return algorithm.create(seedSource.nextLong());
+    }
+
+    /**
+     * @return the generator belonging to the calling thread
+     */
+    public static RandomGenerator current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Creates independent generators for parallel workers from a single root
+     * generator, so that a run seeded with one value is reproducible no matter
+     * how its work is scheduled. Splittable generators are split and jumpable
+     * generators jumped; any other generator is used to seed new ones.
+     */
+    public static RandomGenerator[] split(RandomGenerator root, int count)
+    {
+        RandomGenerator[] generators = new RandomGenerator[count];
+        for (int i = 0; i < count; ++i) {
+            if (root instanceof SplittableGenerator) {
+                generators[i] = ((SplittableGenerator)root).split();
+            } else if (root instanceof JumpableGenerator) {
+                generators[i] = ((JumpableGenerator)root).copyAndJump();
+            } else {
+                generators[i] = getAlgorithm().create(root.nextLong());
+            }
+        }
+        return generators;
+    }
+
+    /**
+     * @return count independent generators split from a root generator of
+     * the current algorithm with the given seed
+     */
+    public static RandomGenerator[] split(long seed, int count)
+    {
+        return split(getAlgorithm().create(seed), count);
+    }
+}
@@ -0,0 +1,234 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.dice;
+
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.nio.IntBuffer;
+import java.util.random.RandomGenerator;
+
+/**
+ * Rolls dice in bulk into primitive buffers, for simulations that need far
+ * more rolls than rolling Die objects one at a time can provide.
+ * <p>
+ * Each 64-bit random word is split into four 16-bit chunks. A chunk below
+ * <code>CHUNK_LIMIT</code> (about 95% of them) is reduced modulo 7776 to the
+ * face code of five dice, with every code equally likely. A face code is a
+ * whole hand for PackedHand, so one chunk rolls five dice.
+ * <p>
+ * A DiceRoller keeps track of how many hands it has rolled in bulk and how
+ * long that took, so the throughput of a simulation can be reported. It is not
+ * thread safe; give each thread its own roller.
+ */
+public class DiceRoller
+{
+    private static final int FACE_CODE_COUNT = PackedHand.FACE_CODE_COUNT;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int CHUNKS_PER_WORD = Long.SIZE / CHUNK_BITS;
+    // the largest multiple of FACE_CODE_COUNT that fits in a chunk
+    private static final int CHUNK_LIMIT =
+            (1 << CHUNK_BITS) / FACE_CODE_COUNT * FACE_CODE_COUNT;
+    private static final int FACES_PER_CODE = PackedHand.DICE_COUNT;
+    private static final int FACE_COUNT = 6;
+
+    private final RandomGenerator random;
+    private long word;
+    private int chunksLeft;
+    private int faceCode;       // faces not yet handed out by nextFace()
+    private int facesLeft;
+    private long handsRolled;
+    private long nanos;
+
+    public DiceRoller()
+    {
+        this(DiceRandom.create());
+    }
+
+    public DiceRoller(RandomGenerator random)
+    {
+        this.random = random;
+    }
+
+    /**
+     * @return the face code (0-7775) of five newly rolled dice
+     */
+    public int nextFaceCode()
+    {
+        while (true) {
+            if (chunksLeft == 0) {
+                word = random.nextLong();
+                chunksLeft = CHUNKS_PER_WORD;
+            }
+            int chunk = (int)word & CHUNK_MASK;
+            word >>>= CHUNK_BITS;
+            --chunksLeft;
+            if (chunk < CHUNK_LIMIT) {
+                return chunk % FACE_CODE_COUNT;
+            }
+        }
+    }
+
+    /**
+     * @return a newly rolled PackedHand
+     */
+    public int nextHand()
+    {
+        return PackedHand.fromFaceCode(nextFaceCode());
+    }
+
+    /**
+     * @return the face (1-6) of a single newly rolled die
+     */
+    public int nextFace()
+    {
+        if (facesLeft == 0) {
+            faceCode = nextFaceCode();
+            facesLeft = FACES_PER_CODE;
+        }
+        int face = faceCode % FACE_COUNT + 1;
+        faceCode /= FACE_COUNT;
+        --facesLeft;
+        return face;
+    }
+
+    /**
+     * Fills <code>count</code> elements of the array, starting at
+     * <code>offset</code>, with newly rolled PackedHands.
+     */
+    public void fillHands(int[] hands, int offset, int count)
+    {
+        long start = System.nanoTime();
+        for (int i = offset, end = offset + count; i < end; ++i) {
+            hands[i] = PackedHand.fromFaceCode(nextFaceCode());
+        }
+        record(count, start);
+    }
+
+    public void fillHands(int[] hands)
+    {
+        fillHands(hands, 0, hands.length);
+    }
+
+    /**
+     * Puts <code>count</code> newly rolled PackedHands at the buffer's
+     * current position, advancing the position.
+     */
+    public void fillHands(IntBuffer buffer, int count)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            buffer.put(PackedHand.fromFaceCode(nextFaceCode()));
+        }
+        record(count, start);
+    }
+
+    /**
+     * Fills <code>count</code> elements of the array, starting at
+     * <code>offset</code>, with the faces (1-6) of newly rolled dice.
+     */
+    public void fillFaces(int[] faces, int offset, int count)
+    {
+        long start = System.nanoTime();
+        int i = offset;
+        int end = offset + count;
+        // hand out any faces left over from a previous call first
+        while (i < end && facesLeft > 0) {
+            faces[i++] = nextFace();
+        }
+        while (end - i >= FACES_PER_CODE) {
+            int code = nextFaceCode();
+            for (int j = 0; j < FACES_PER_CODE; ++j) {
+                faces[i++] = code % FACE_COUNT + 1;
+                code /= FACE_COUNT;
+            }
+        }
+        while (i < end) {
+            faces[i++] = nextFace();
+        }
+        record((count + FACES_PER_CODE - 1) / FACES_PER_CODE, start);
+    }
+
+    public void fillFaces(int[] faces)
+    {
+        fillFaces(faces, 0, faces.length);
+    }
+
+    /**
+     * Puts the faces (1-6) of <code>count</code> newly rolled dice at the
+     * buffer's current position, advancing the position.
+     */
+    public void fillFaces(IntBuffer buffer, int count)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            buffer.put(nextFace());
+        }
+        record((count + FACES_PER_CODE - 1) / FACES_PER_CODE, start);
+    }
+
+    private void record(int hands, long start)
+    {
+        nanos += System.nanoTime() - start;
+        handsRolled += hands;
+    }
+
+    /**
+     * @return the number of hands rolled by the fill methods, counting every
+     * five faces as one hand
+     */
+    public long getHandsRolled()
+    {
+        return handsRolled;
+    }
+
+    /**
+     * @return the rate at which the fill methods have rolled hands, or 0 if
+     * nothing has been rolled yet
+     */
+    public double getHandsPerSecond()
+    {
+        return nanos == 0 ? 0 : handsRolled * 1e9 / nanos;
+    }
+
+    public void resetStatistics()
+    {
+        handsRolled = 0;
+        nanos = 0;
+    }
+
+    public static void main(String[] args)
+    {
+        DiceRoller roller = new DiceRoller();
+        int[] hands = new int[1 << 20];
+        for (int i = 0; i < 20; ++i) {
+            // the first passes only warm up the JIT compiler
+            if (i == 10) {
+                roller.resetStatistics();
+            }
+            roller.fillHands(hands);
+        }
+        System.out.printf("%,d hands at %,.0f hands per second%n",
+                roller.getHandsRolled(), roller.getHandsPerSecond());
+    }
+}
@@ -25,6 +25,7 @@ package com.davidjarski.javatzee.dice;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import javax.swing.Timer;
@@ -32,6 +33,7 @@ import javax.swing.Timer;
 public class JAnimatedDie extends JGraphicalDie
 {
     public static final String PROP_ROLLING_DIE = "ROLLING_DIE";
+    public static final String PROP_LOCKED_DIE = "LOCKED_DIE";
     public static final int DEFAULT_DELAY = 90;
     public static final int DEFAULT_ROLLS = 5;
     
@@ -40,6 +42,8 @@ public class JAnimatedDie extends JGraphicalDie
     private static int numRolls;
     private static int delay = 90;
     private Timer timer;
+    private boolean animated = true;
+    private int nextFace;  // the face to land on, or 0 for a random one
     
     public JAnimatedDie()
     {
@@ -54,7 +58,7 @@ public class JAnimatedDie extends JGraphicalDie
                 if (++rollCount < numRolls) {
                     rollForAnimation();
                 } else if (rollCount == numRolls) {
-                    JAnimatedDie.super.roll();
+                    land();
                 } else {
                     rollCount = 0;
                     setEnabled(true);
@@ -70,18 +74,50 @@ public class JAnimatedDie extends JGraphicalDie
     public void roll()
     {
         if (isEnabled() && !isLocked()) {
-            if (numRolls > 1) {
+            if (animated && numRolls > 1) {
                 // let any listeners know that the die is now rolling
                 propertySupport.firePropertyChange(
                         PROP_ROLLING_DIE, Boolean.FALSE, Boolean.TRUE);
                 setEnabled(false);
                 startAnimation();
             } else {
-                super.roll();
+                land();
             }
+        } else {
+            nextFace = 0;
+        }
+    }
+
+    /**
+     * Rolls the die just as roll() does, but lands it on the given face, for
+     * dice rolled somewhere else, such as by a game server.
+     */
+    public void rollTo(int face) {
+        nextFace = face;
+        roll();
+    }
+
+    private void land() {
+        if (nextFace == 0) {
+            super.roll();
+        } else {
+            setValue(nextFace);
+            nextFace = 0;
         }
     }
     
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * Lets this die be rolled without the animation, whatever the number of
+     * rolls, so it shows its new face at once.
+     */
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+    }
+    
     public static int getNumberOfRolls() {
         return numRolls;
     }
@@ -109,8 +145,17 @@ public class JAnimatedDie extends JGraphicalDie
         timer.start();
     }
     
+    @Override
+    public void mousePressed(MouseEvent e)
+    {
+        boolean wasLocked = isLocked();
+        super.mousePressed(e);
+        // let any listeners know that the die was locked or unlocked by a click
+        propertySupport.firePropertyChange(PROP_LOCKED_DIE, wasLocked, isLocked());
+    }
+
     private void rollForAnimation() {
-        int differentValue = (int)(Math.random() * 5) + 1;
+        int differentValue = DiceRandom.current().nextInt(5) + 1;
         if (differentValue == getValue()) {
             ++differentValue;
         }
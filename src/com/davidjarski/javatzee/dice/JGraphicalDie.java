@@ -121,7 +121,7 @@ public class JGraphicalDie extends JLabel implements MouseListener, Die
     }
 
     public JGraphicalDie() {
-        value = (int) (Math.random() * 5) + 1; // no sixes on instantiation, for looks
+        value = DiceRandom.current().nextInt(5) + 1; // no sixes on instantiation, for looks
         setOpaque(false);
         addMouseListener(this);
         
@@ -147,7 +147,7 @@ public class JGraphicalDie extends JLabel implements MouseListener, Die
     @Override
     public void roll() {
         if (!locked) {
-            value = (int) (Math.random() * 6) + 1;
+            value = DiceRandom.current().nextInt(6) + 1;
             repaint();
         }
     }
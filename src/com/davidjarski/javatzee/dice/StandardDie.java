@@ -22,26 +22,35 @@
  * THE SOFTWARE.
  */
 package com.davidjarski.javatzee.dice;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class StandardDie implements Die {
 	private int min;
 	private int max;
 	private int value;
-	private Random rand;
+	private RandomGenerator rand;  // null to use the rolling thread's generator
 	
 	public StandardDie() {
 		this(1, 6);
 	}
 	
 	public StandardDie(int min, int max) {
+		this(min, max, null);
+	}
+	
+	public StandardDie(RandomGenerator rand) {
+		this(1, 6, rand);
+	}
+	
+	public StandardDie(int min, int max, RandomGenerator rand) {
 		this.min = min;
 		this.max = max;
-		this.rand = new Random();
+		this.rand = rand;
 	}
 	
 	public void roll() {
-		value = rand.nextInt(max - min + 1) + min;
+		RandomGenerator generator = (rand != null) ? rand : DiceRandom.current();
+		value = generator.nextInt(max - min + 1) + min;
 	}
 	
 	public int getValue() {
@@ -0,0 +1,165 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.engine;
+
+import com.davidjarski.javatzee.hand.Hand;
+
+/**
+ * A complete headless Triple Javatzee game for one or more players sharing a
+ * single hand of dice. Players take turns in order, the same way they do on
+ * the ScorePad.
+ */
+public class Game
+{
+    private final ScoreCard[] cards;
+    private final Turn turn;
+    private final Hand hand;
+    private int currentPlayer;
+    private int boxesScored;
+    private boolean undoAvailable;  // only the last score entered can be undone
+
+    public Game(int numPlayers)
+    {
+        this(numPlayers, new Hand());
+    }
+
+    public Game(int numPlayers, Hand hand)
+    {
+        if (numPlayers < 1) {
+            throw new IllegalArgumentException("A game needs at least one player.");
+        }
+        this.hand = hand;
+        cards = new ScoreCard[numPlayers];
+        for (int i = 0; i < numPlayers; ++i) {
+            cards[i] = new ScoreCard();
+        }
+        turn = new Turn();
+        reset();
+    }
+
+    public void reset()
+    {
+        for (ScoreCard card : cards) {
+            card.reset();
+        }
+        currentPlayer = 0;
+        boxesScored = 0;
+        undoAvailable = false;
+        turn.reset();
+        turn.handleNewTurn();
+    }
+
+    /**
+     * Rolls every die that isn't locked.
+     *
+     * @return false if no roll was left or every die was locked
+     */
+    public boolean roll(int lockedMask)
+    {
+        if (!turn.canRoll(lockedMask)) {
+            return false;
+        }
+        turn.roll(lockedMask);
+        hand.roll(lockedMask);
+        return true;
+    }
+
+    /**
+     * Scores the current hand for the current player and passes the dice to
+     * the next player.
+     *
+     * @return the score entered in the box
+     * @throws IllegalStateException if the dice haven't been rolled this turn
+     * or the box has already been scored
+     */
+    public int score(int column, int row)
+    {
+        if (!turn.isRollInProgress()) {
+            throw new IllegalStateException("The dice haven't been rolled");
+        }
+        int score = cards[currentPlayer].score(column, row, hand);
+        currentPlayer = (currentPlayer + 1) % cards.length;
+        undoAvailable = true;
+        if (++boxesScored == ScoreCard.NUM_BOXES * cards.length) {
+            turn.handleGameOver();
+        } else {
+            turn.handleNewTurn();
+        }
+        return score;
+    }
+
+    /**
+     * Removes the last score entered and gives the turn back to the player
+     * who entered it, with the same roll count.
+     *
+     * @return false if there was nothing to undo
+     */
+    public boolean undo()
+    {
+        if (!undoAvailable) {
+            return false;
+        }
+        currentPlayer = currentPlayer == 0 ? cards.length - 1 : currentPlayer - 1;
+        cards[currentPlayer].undo();
+        undoAvailable = false;
+        --boxesScored;
+        turn.undo();
+        return true;
+    }
+
+    public boolean isGameOver()
+    {
+        return boxesScored == ScoreCard.NUM_BOXES * cards.length;
+    }
+
+    public int getCurrentPlayerNumber()
+    {
+        return currentPlayer;
+    }
+
+    public int getNumPlayers()
+    {
+        return cards.length;
+    }
+
+    public ScoreCard getCurrentCard()
+    {
+        return cards[currentPlayer];
+    }
+
+    public ScoreCard getCard(int player)
+    {
+        return cards[player];
+    }
+
+    public Turn getTurn()
+    {
+        return turn;
+    }
+
+    public Hand getHand()
+    {
+        return hand;
+    }
+}
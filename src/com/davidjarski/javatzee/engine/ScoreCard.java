@@ -0,0 +1,524 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.engine;
+
+import com.davidjarski.javatzee.hand.Hand;
+import com.davidjarski.javatzee.hand.HandTable;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * The scoring state and rules for one player's Triple Javatzee scorecard.
+ * <p>
+ * All state is kept in primitive arrays so that a card can be reset and reused
+ * for any number of games without creating garbage. Boxes are addressed by
+ * column (0-2) and row (<code>ONES_ROW</code> through <code>CHANCE_ROW</code>).
+ */
+public class ScoreCard
+{
+    public static final int COLUMNS = 3;
+    public static final int ROWS = 13;
+    public static final int NUM_BOXES = COLUMNS * ROWS;    // total number of score boxes
+    /**
+     * The number of packed ints returned by getInts()
+     */
+    public static final int INT_COUNT = 5;
+
+    public static final int ONES_ROW = 0;
+    public static final int TWOS_ROW = 1;
+    public static final int THREES_ROW = 2;
+    public static final int FOURS_ROW = 3;
+    public static final int FIVES_ROW = 4;
+    public static final int SIXES_ROW = 5;
+    public static final int KIND3_ROW = 6;
+    public static final int KIND4_ROW = 7;
+    public static final int FULL_HOUSE_ROW = 8;
+    public static final int SHORT_STRAIGHT_ROW = 9;
+    public static final int LONG_STRAIGHT_ROW = 10;
+    public static final int KIND5_ROW = 11;
+    public static final int CHANCE_ROW = 12;
+    public static final int KIND5_BONUS_ROW = 13;
+
+    /**
+     * Returned by getLastColumn() when there is no move to undo.
+     */
+    public static final int NONE = -1;
+
+    private static final int COUNT_SHIFT = 3;
+    private static final int VALUE_SHIFT = 6;
+    private static final int BONUS_SHIFT = 4;
+
+    private static final int COUNT_MASK = 0x07;
+    private static final int VALUE_MASK = 0x3F;
+    private static final int BONUS_MASK = 0x0F;
+
+    private static final int ONES_TWOS_THREES = 0;
+    private static final int FOURS_FIVES_SIXES = 1;
+    private static final int KIND3 = 2;
+    private static final int KIND4_FULL_SHORT_LONG_KIND5 = 3;
+    private static final int CHANCE_BONUS = 4;
+
+    private static final int TRUE = 1;
+    private static final int FALSE = 0;
+
+    private static final int[] COLUMN_MULTIPLIERS =
+            {COLUMN1_MULTIPLIER, COLUMN2_MULTIPLIER, COLUMN3_MULTIPLIER};
+
+    private final int[] scores;             // indexed by column * ROWS + row
+    private final int[] upperSubtotals;
+    private final int[] lowerTotals;
+    private final int[] kind5Bonuses;       // number of bonuses in each column
+    private long filled;                    // one bit per box, same indexing as scores
+    private int boxesScored;
+    private int kind5Count;    // number of javatzees a player has scored
+    private boolean kind5BonusEnabled;
+    private int lastBox;               // used to keep track of player's last move
+    private int lastKind5BonusColumn;  // for use with undo method
+    private boolean lastBoxWasKind5;   // for use with undo method
+
+    public ScoreCard()
+    {
+        scores = new int[NUM_BOXES];
+        upperSubtotals = new int[COLUMNS];
+        lowerTotals = new int[COLUMNS];
+        kind5Bonuses = new int[COLUMNS];
+        reset();
+    }
+
+    public ScoreCard(ScoreCard other)
+    {
+        this();
+        copyFrom(other);
+    }
+
+    /**
+     * Makes this card an exact copy of the other, including the move that
+     * can be undone, without allocating anything.
+     */
+    public void copyFrom(ScoreCard other)
+    {
+        System.arraycopy(other.scores, 0, scores, 0, NUM_BOXES);
+        System.arraycopy(other.upperSubtotals, 0, upperSubtotals, 0, COLUMNS);
+        System.arraycopy(other.lowerTotals, 0, lowerTotals, 0, COLUMNS);
+        System.arraycopy(other.kind5Bonuses, 0, kind5Bonuses, 0, COLUMNS);
+        filled = other.filled;
+        boxesScored = other.boxesScored;
+        kind5Count = other.kind5Count;
+        kind5BonusEnabled = other.kind5BonusEnabled;
+        lastBox = other.lastBox;
+        lastKind5BonusColumn = other.lastKind5BonusColumn;
+        lastBoxWasKind5 = other.lastBoxWasKind5;
+    }
+
+    public static int getMultiplier(int column)
+    {
+        return COLUMN_MULTIPLIERS[column];
+    }
+
+    public static boolean isUpper(int row)
+    {
+        return row <= SIXES_ROW;
+    }
+
+    /**
+     * Calculates the score the hand would receive in a box of the given row,
+     * without taking any bonuses into account.
+     */
+    public static int getScoreOfHand(int row, Hand hand)
+    {
+        return HandTable.getScore(hand.getEntry(), row);
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < NUM_BOXES; ++i) {
+            scores[i] = 0;
+        }
+        for (int column = 0; column < COLUMNS; ++column) {
+            upperSubtotals[column] = 0;
+            lowerTotals[column] = 0;
+            kind5Bonuses[column] = 0;
+        }
+        filled = 0;
+        boxesScored = 0;
+        kind5Count = 0;
+        kind5BonusEnabled = false;
+        clearLastBoxScored();
+    }
+
+    /**
+     * Enters the score of the hand in the given box, applying the Javatzee
+     * bonus if it has been earned.
+     *
+     * @return the score entered in the box, not including any bonus
+     * @throws IllegalStateException if the box has already been scored
+     */
+    public int score(int column, int row, Hand hand)
+    {
+        return score(column, row, hand.getEntry());
+    }
+
+    /**
+     * Enters the score of a hand given by its HandTable entry, for use with
+     * packed hands.
+     *
+     * @see #score(int, int, Hand)
+     */
+    public int score(int column, int row, int entry)
+    {
+        int box = column * ROWS + row;
+        if (isFilled(box)) {
+            throw new IllegalStateException("Box has already been scored");
+        }
+        lastBoxWasKind5 = false;
+        lastKind5BonusColumn = NONE;
+        int score = HandTable.getScore(entry, row);
+        if (row == KIND5_ROW && score > 0) {
+            lastBoxWasKind5 = true;
+            /* kind5Count can only be incremented here until
+             * kind5BonusEnabled becomes true */
+            ++kind5Count;
+        }
+        scores[box] = score;
+        filled |= 1L << box;
+        ++boxesScored;
+        lastBox = box;
+        if (kind5Count >= 3 && HandTable.is(entry, HandTable.FIVE_OF_A_KIND)
+                && score > 0) {
+            if (kind5BonusEnabled) {
+                ++kind5Bonuses[column];
+                lastKind5BonusColumn = column;
+                lastBoxWasKind5 = true;
+                ++kind5Count;
+            } else {
+                kind5BonusEnabled = true;
+            }
+        }
+        addToColumn(column, row, score);
+        return score;
+    }
+
+    /**
+     * Removes the last score entered, along with any Javatzee bonus it earned.
+     * Only a single move can be undone.
+     *
+     * @return the column of the box that was cleared, or NONE if there was
+     * nothing to undo
+     */
+    public int undo()
+    {
+        if (lastBox == NONE) {
+            return NONE;
+        }
+        int column = lastBox / ROWS;
+        int row = lastBox % ROWS;
+
+        // handle five of a kind bonus, if applicable
+        if (lastBoxWasKind5) {
+            if (--kind5Count == 2) {
+                kind5BonusEnabled = false;
+            }
+            if (lastKind5BonusColumn != NONE) {
+                --kind5Bonuses[lastKind5BonusColumn];
+            }
+        }
+        addToColumn(column, row, -scores[lastBox]);
+        scores[lastBox] = 0;
+        filled &= ~(1L << lastBox);
+        --boxesScored;
+        clearLastBoxScored();
+        return column;
+    }
+
+    private void addToColumn(int column, int row, int score)
+    {
+        if (isUpper(row)) {
+            upperSubtotals[column] += score;
+        } else {
+            lowerTotals[column] += score;
+        }
+    }
+
+    public void clearLastBoxScored()
+    {
+        lastBox = NONE;
+        lastKind5BonusColumn = NONE;
+        lastBoxWasKind5 = false;
+    }
+
+    public int getLastColumn()
+    {
+        return lastBox == NONE ? NONE : lastBox / ROWS;
+    }
+
+    public int getLastRow()
+    {
+        return lastBox == NONE ? NONE : lastBox % ROWS;
+    }
+
+    public boolean isFilled(int column, int row)
+    {
+        return isFilled(column * ROWS + row);
+    }
+
+    private boolean isFilled(int box)
+    {
+        return (filled & 1L << box) != 0;
+    }
+
+    /**
+     * @return a bit mask with bit <code>column * ROWS + row</code> set for
+     * every box that has been scored
+     */
+    public long getFilledMask()
+    {
+        return filled;
+    }
+
+    public int getScore(int column, int row)
+    {
+        if (row == KIND5_BONUS_ROW) {
+            return getKind5Bonus(column);
+        }
+        return scores[column * ROWS + row];
+    }
+
+    public int getUpperSubtotal(int column)
+    {
+        return upperSubtotals[column];
+    }
+
+    public int getUpperBonus(int column)
+    {
+        return upperSubtotals[column] < UPPER_PAR ? 0 : UPPER_BONUS;
+    }
+
+    public int getUpperTotal(int column)
+    {
+        return upperSubtotals[column] + getUpperBonus(column);
+    }
+
+    public int getLowerTotal(int column)
+    {
+        return lowerTotals[column];
+    }
+
+    public int getKind5Bonus(int column)
+    {
+        return kind5Bonuses[column] * KIND5_VALUE;
+    }
+
+    public int getCombinedTotal(int column)
+    {
+        return getUpperTotal(column) + lowerTotals[column] + getKind5Bonus(column);
+    }
+
+    public int getMultipliedTotal(int column)
+    {
+        return getCombinedTotal(column) * COLUMN_MULTIPLIERS[column];
+    }
+
+    public int getGrandTotal()
+    {
+        int total = 0;
+        for (int column = 0; column < COLUMNS; ++column) {
+            total += getMultipliedTotal(column);
+        }
+        return total;
+    }
+
+    public int getKind5Count()
+    {
+        return kind5Count;
+    }
+
+    public boolean isKind5BonusEnabled()
+    {
+        return kind5BonusEnabled;
+    }
+
+    public int getBoxesScored()
+    {
+        return boxesScored;
+    }
+
+    public boolean isGameOver()
+    {
+        return boxesScored == NUM_BOXES;
+    }
+
+    public int[] getInts()
+    {
+        int[] array = new int[INT_COUNT];
+        getInts(array);
+        return array;
+    }
+
+    /**
+     * Packs the scores of all boxes into the first INT_COUNT elements of the
+     * array. The bit-packing scheme is located in the main directory of the
+     * repository.
+     */
+    public void getInts(int[] array)
+    {
+        int ones = 0;
+        int fours = 0;
+        int kind3 = 0;
+        int kind4 = 0;
+        int chance = 0;
+        int count;
+
+        for (int col = 0; col < COLUMNS; ++col) {
+            int base = col * ROWS;
+            // ones, twos, threes
+            for (int row = ONES_ROW; row <= THREES_ROW; ++row) {
+                count = scores[base + row] / (row + 1);
+                ones = ones << COUNT_SHIFT | count;
+            }
+            // fours, fives, sixes
+            for (int row = FOURS_ROW; row <= SIXES_ROW; ++row) {
+                count = scores[base + row] / (row + 1);
+                fours = fours << COUNT_SHIFT | count;
+            }
+            // three of a kind
+            kind3 = kind3 << VALUE_SHIFT | scores[base + KIND3_ROW];
+            // four of a kind, full house, short/long straights, five of a kind
+            kind4 = kind4 << VALUE_SHIFT | scores[base + KIND4_ROW];
+            for (int row = FULL_HOUSE_ROW; row <= KIND5_ROW; ++row) {
+                kind4 = kind4 << 1 | (scores[base + row] > 0 ? TRUE : FALSE);
+            }
+            // chance, five of a kind bonus
+            chance = chance << VALUE_SHIFT | scores[base + CHANCE_ROW];
+            chance = chance << BONUS_SHIFT | kind5Bonuses[col];
+        }
+        array[ONES_TWOS_THREES] = ones;
+        array[FOURS_FIVES_SIXES] = fours;
+        array[KIND3] = kind3;
+        array[KIND4_FULL_SHORT_LONG_KIND5] = kind4;
+        array[CHANCE_BONUS] = chance;
+    }
+
+    /**
+     * Restores a completed card from the ints produced by getInts(). The
+     * Javatzee count is restored from the scored Javatzee boxes and bonuses.
+     */
+    public void setInts(int[] ints)
+    {
+        reset();
+        int ones = ints[ONES_TWOS_THREES];
+        int fours = ints[FOURS_FIVES_SIXES];
+        int kind3 = ints[KIND3];
+        int kind4 = ints[KIND4_FULL_SHORT_LONG_KIND5];
+        int chance = ints[CHANCE_BONUS];
+
+        for (int col = COLUMNS - 1; col >= 0; --col) {
+            int base = col * ROWS;
+            // threes, twos, ones
+            for (int row = THREES_ROW; row >= ONES_ROW; --row) {
+                scores[base + row] = (ones & COUNT_MASK) * (row + 1);
+                ones >>= COUNT_SHIFT;
+            }
+            // sixes, fives, fours
+            for (int row = SIXES_ROW; row >= FOURS_ROW; --row) {
+                scores[base + row] = (fours & COUNT_MASK) * (row + 1);
+                fours >>= COUNT_SHIFT;
+            }
+            // three of a kind
+            scores[base + KIND3_ROW] = kind3 & VALUE_MASK;
+            kind3 >>= VALUE_SHIFT;
+            // five of a kind, long/short straights, full house, four of a kind
+            for (int row = KIND5_ROW; row >= FULL_HOUSE_ROW; --row) {
+                scores[base + row] = (kind4 & TRUE) == TRUE ? getFixedValue(row) : 0;
+                kind4 >>= 1;
+            }
+            scores[base + KIND4_ROW] = kind4 & VALUE_MASK;
+            kind4 >>= VALUE_SHIFT;
+            // five of a kind bonus, chance
+            kind5Bonuses[col] = chance & BONUS_MASK;
+            chance >>= BONUS_SHIFT;
+            scores[base + CHANCE_ROW] = chance & VALUE_MASK;
+            chance >>= VALUE_SHIFT;
+        }
+        fillAll();
+    }
+
+    /**
+     * Populates every box with a random score, for demonstration purposes.
+     */
+    public void doDummyGame(RandomGenerator random)
+    {
+        reset();
+        for (int col = 0; col < COLUMNS; ++col) {
+            int base = col * ROWS;
+            for (int row = ONES_ROW; row <= SIXES_ROW; ++row) {
+                scores[base + row] = (random.nextInt(5) + 1) * (row + 1);
+            }
+            scores[base + KIND3_ROW] = random.nextInt(31);
+            scores[base + KIND4_ROW] = random.nextInt(31);
+            scores[base + CHANCE_ROW] = random.nextInt(31);
+            scores[base + FULL_HOUSE_ROW] = random.nextDouble() < 0.7 ? FULL_HOUSE_VALUE : 0;
+            scores[base + SHORT_STRAIGHT_ROW] = random.nextDouble() < 0.7 ? SHORT_STRAIGHT_VALUE : 0;
+            scores[base + LONG_STRAIGHT_ROW] = random.nextDouble() < 0.7 ? LONG_STRAIGHT_VALUE : 0;
+            scores[base + KIND5_ROW] = random.nextDouble() < 0.5 ? KIND5_VALUE : 0;
+        }
+        fillAll();
+    }
+
+    private static int getFixedValue(int row)
+    {
+        switch (row) {
+        case FULL_HOUSE_ROW:
+            return FULL_HOUSE_VALUE;
+        case SHORT_STRAIGHT_ROW:
+            return SHORT_STRAIGHT_VALUE;
+        case LONG_STRAIGHT_ROW:
+            return LONG_STRAIGHT_VALUE;
+        case KIND5_ROW:
+            return KIND5_VALUE;
+        default:
+            throw new IllegalArgumentException("Row has no fixed value");
+        }
+    }
+
+    /**
+     * Marks every box as scored and recalculates the totals and Javatzee count
+     * from the current box scores.
+     */
+    private void fillAll()
+    {
+        for (int column = 0; column < COLUMNS; ++column) {
+            int base = column * ROWS;
+            for (int row = ONES_ROW; row <= CHANCE_ROW; ++row) {
+                addToColumn(column, row, scores[base + row]);
+            }
+            if (scores[base + KIND5_ROW] > 0) {
+                ++kind5Count;
+            }
+            kind5Count += kind5Bonuses[column];
+        }
+        filled = (1L << NUM_BOXES) - 1;
+        boxesScored = NUM_BOXES;
+        kind5BonusEnabled = kind5Count >= 3;
+    }
+}
@@ -0,0 +1,113 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.engine;
+
+/**
+ * Keeps track of the rolls taken during a turn and which dice were locked,
+ * so that a turn can be restored after an undo.
+ * <p>
+ * Locked dice are represented as a bit mask, with bit <code>i</code> set when
+ * die <code>i</code> is locked.
+ */
+public class Turn
+{
+    public static final int DICE_COUNT = 5;
+    public static final int MAX_ROLL_COUNT = 3;
+    public static final int DISABLED = Integer.MIN_VALUE;
+    public static final int ALL_LOCKED = (1 << DICE_COUNT) - 1;
+
+    private int rollCount = DISABLED;
+    private int lastRollCount;
+    private int lockedMask;
+
+    public void reset()
+    {
+        rollCount = DISABLED;
+        lastRollCount = 0;
+        lockedMask = 0;
+    }
+
+    public void handleNewTurn()
+    {
+        rollCount = 0;
+    }
+
+    public void handleGameOver()
+    {
+        rollCount = DISABLED;
+    }
+
+    /**
+     * Makes sure a roll is left and that at least one die is unlocked.
+     * Otherwise we could increment the roll count even though no dice were
+     * rolled.
+     */
+    public boolean canRoll(int lockedMask)
+    {
+        return rollCount < MAX_ROLL_COUNT && (lockedMask & ALL_LOCKED) != ALL_LOCKED;
+    }
+
+    /**
+     * Records the start of a roll with the given dice locked.
+     *
+     * @return true if this is the first roll of the turn
+     */
+    public boolean roll(int lockedMask)
+    {
+        this.lockedMask = lockedMask;
+        lastRollCount = ++rollCount;
+        return rollCount == 1;
+    }
+
+    /**
+     * Restores the roll count of the turn that was just scored.
+     *
+     * @return the mask of dice that were locked for the last roll
+     */
+    public int undo()
+    {
+        rollCount = lastRollCount;
+        return lockedMask;
+    }
+
+    public int getRollCount()
+    {
+        return rollCount;
+    }
+
+    public int getRollsLeft()
+    {
+        return rollCount < 0 ? 0 : MAX_ROLL_COUNT - rollCount;
+    }
+
+    public boolean isRollInProgress()
+    {
+        return rollCount > 0;
+    }
+
+    public int getLockedMask()
+    {
+        return lockedMask;
+    }
+}
@@ -25,6 +25,7 @@ package com.davidjarski.javatzee.hand;
 
 import com.davidjarski.javatzee.dice.Die;
 import com.davidjarski.javatzee.dice.StandardDie;
+import java.util.random.RandomGenerator;
 
 public class Hand
 {
@@ -37,157 +38,129 @@ public class Hand
     public static final int SIXES = 5;
 
     private Die[] hand;
-    private int[] counts;
-    private boolean longStraight;
-    private boolean shortStraight;
-    private boolean fullHouse;
-    private boolean threeOfAKind;
-    private boolean fourOfAKind;
-    private boolean fiveOfAKind;
+    private int histogram;  // the count of each face, packed as in HandTable
+    private int entry;      // the HandTable entry of the current values
 
     public Hand()
     {
         hand = new StandardDie[5];
-        counts = new int[6];
         for (int i = 0; i < hand.length; ++i) {
             hand[i] = new StandardDie();
         }
     }
 
+    /**
+     * Creates a hand whose dice all draw from the given generator, so that
+     * the rolls can be reproduced from its seed.
+     */
+    public Hand(RandomGenerator random)
+    {
+        hand = new StandardDie[5];
+        for (int i = 0; i < hand.length; ++i) {
+            hand[i] = new StandardDie(random);
+        }
+    }
+
     public Hand(Die[] hand) throws IllegalArgumentException
     {
         if (hand.length != 5) {
             throw new IllegalArgumentException("hand must have exactly 5 elements.");
         }
         this.hand = hand;
-        counts = new int[6];
     }
 
     public void roll()
     {
-
-        // set all counts to 0
-        for (int i = 0; i < counts.length; ++i) {
-            counts[i] = 0;
-        }
         // roll all the dice
         for (Die die : hand) {
             die.roll();
         }
-        // populate counts array
+        handleRoll();
+    }
+
+    /**
+     * Rolls only the dice whose bit is clear in the mask, with bit
+     * <code>i</code> standing for die <code>i</code>.
+     */
+    public void roll(int lockedMask)
+    {
         for (int i = 0; i < hand.length; ++i) {
-            ++counts[hand[i].getValue() - 1];
+            if ((lockedMask & 1 << i) == 0) {
+                hand[i].roll();
+            }
         }
-        setHandTypes();
+        handleRoll();
     }
-    
+
     public void handleRoll() {
-        // set all counts to 0
-        for (int i = 0; i < counts.length; ++i) {
-            counts[i] = 0;
-        }
-        // populate counts array
+        // populate the count histogram
+        int counts = 0;
         for (int i = 0; i < hand.length; ++i) {
-            ++counts[hand[i].getValue() - 1];
-        }
-        setHandTypes();
-    }
-
-    private void setHandTypes()
-    {
-        int consecutive = 0; // keeps track of straights
-        int maxConsecutive = 0; // the most numbers in a row
-        boolean hasCountOfTwo = false; // used for testing for fullhouse
-
-        clearHandTypes();
-        for (int i = 0; i < counts.length; ++i) {
-            if (counts[i] == 0) {
-                consecutive = 0;
-            } else {
-                switch (counts[i]) {
-                    case 2:
-                        hasCountOfTwo = true;
-                        break;
-                    case 5:
-                        fiveOfAKind = true;
-                    case 4:
-                        fourOfAKind = true;
-                    case 3:
-                        threeOfAKind = true;
-                        break;
-                }
-                if (++consecutive > maxConsecutive) {
-                    maxConsecutive = consecutive;
-                }
-            }
+            counts += 1 << (HandTable.COUNT_BITS * (hand[i].getValue() - 1));
         }
+        histogram = counts;
+        entry = HandTable.getEntry(counts);
+    }
 
-        // check for straights
-        if (maxConsecutive >= 4) {
-            shortStraight = true;
-            if (maxConsecutive == 5) {
-                longStraight = true;
-            }
-        }
+    public int getValue(int index)
+    {
+        return hand[index].getValue();
+    }
 
-        // check for a full house
-        if (fiveOfAKind || (threeOfAKind && hasCountOfTwo)) {
-            fullHouse = true;
-        }
+    public int getCount(int index)
+    {
+        return HandTable.getCount(histogram, index);
     }
 
-    private void clearHandTypes()
+    /**
+     * @return the count of each face, packed as described in HandTable
+     */
+    public int getHistogram()
     {
-        shortStraight = false;
-        longStraight = false;
-        threeOfAKind = false;
-        fourOfAKind = false;
-        fiveOfAKind = false;
-        fullHouse = false;
+        return histogram;
     }
 
-    public int getCount(int index)
+    /**
+     * @return the HandTable entry for the current values of the dice
+     */
+    public int getEntry()
     {
-        return counts[index];
+        return entry;
     }
 
     public int getSum()
     {
-        int sum = 0;
-        for (int i = 0; i < hand.length; ++i) {
-            sum += hand[i].getValue();
-        }
-        return sum;
+        return HandTable.getSum(entry);
     }
 
     public boolean isLongStraight()
     {
-        return longStraight;
+        return HandTable.is(entry, HandTable.LONG_STRAIGHT);
     }
 
     public boolean isShortStraight()
     {
-        return shortStraight;
+        return HandTable.is(entry, HandTable.SHORT_STRAIGHT);
     }
 
     public boolean isFullHouse()
     {
-        return fullHouse;
+        return HandTable.is(entry, HandTable.FULL_HOUSE);
     }
 
     public boolean isThreeOfAKind()
     {
-        return threeOfAKind;
+        return HandTable.is(entry, HandTable.THREE_OF_A_KIND);
     }
 
     public boolean isFourOfAKind()
     {
-        return fourOfAKind;
+        return HandTable.is(entry, HandTable.FOUR_OF_A_KIND);
     }
 
     public boolean isFiveOfAKind()
     {
-        return fiveOfAKind;
+        return HandTable.is(entry, HandTable.FIVE_OF_A_KIND);
     }
 
     public String toString()
@@ -201,11 +174,11 @@ public class Hand
         }
         builder.append("] (");
 
-        for (int i = 0; i < counts.length; ++i) {
+        for (int i = 0; i < HandTable.FACE_COUNT; ++i) {
             if (i != 0) {
                 builder.append(',');
             }
-            builder.append(counts[i]);
+            builder.append(getCount(i));
         }
         builder.append(')');
 
@@ -215,13 +188,14 @@ public class Hand
     public static void main(String[] args)
     {
         Hand hand = new Hand();
+        hand.roll();
         System.out.println(hand);
         System.out.println("Sum: " + hand.getSum());
-        System.out.println("Short Straight: " + hand.shortStraight);
-        System.out.println("Long Straight: " + hand.longStraight);
-        System.out.println("Three of a Kind: " + hand.threeOfAKind);
-        System.out.println("Four of a Kind: " + hand.fourOfAKind);
-        System.out.println("Five of a Kind: " + hand.fiveOfAKind);
-        System.out.println("Full House: " + hand.fullHouse);
+        System.out.println("Short Straight: " + hand.isShortStraight());
+        System.out.println("Long Straight: " + hand.isLongStraight());
+        System.out.println("Three of a Kind: " + hand.isThreeOfAKind());
+        System.out.println("Four of a Kind: " + hand.isFourOfAKind());
+        System.out.println("Five of a Kind: " + hand.isFiveOfAKind());
+        System.out.println("Full House: " + hand.isFullHouse());
     }
 }
@@ -25,6 +25,7 @@ package com.davidjarski.javatzee.hand;
 
 import com.davidjarski.javatzee.dice.Die;
 import com.davidjarski.javatzee.dice.JAnimatedDie;
+import com.davidjarski.javatzee.engine.Turn;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -37,24 +38,28 @@ public class HandPanel extends JPanel implements PropertyChangeListener
 {
     public static final String PROP_NEW_ROLL = "NEW_ROLL";
     public static final String PROP_HAND_ROLLING = "HAND_ROLLING";
+    public static final String PROP_LOCKED_DICE = "LOCKED_DICE";
+    public static final String PROP_ROLL_REQUESTED = "ROLL_REQUESTED";
     
     private JAnimatedDie[] dice;
     private final Hand hand;
+    private final Turn turn;
     private int rollingDiceCount;
-    private int rollCount = Integer.MIN_VALUE;
     private boolean disabledDice;
     private boolean rolling;
     private final PropertyChangeSupport propertySupport;
     private final Dimension size;
-    private final boolean[] lockedDice;
-    private int lastRollCount;
     private boolean newGame;
     private boolean gameOver;
+    private boolean userControlled = true;
+    private boolean animated = true;
+    private boolean remote;         // set when a game server rolls the dice
+    private boolean rollRequested;
     
     private int animationDelay = 90;
     
-    private static final int MAX_ROLL_COUNT = 3;
-    private static final int DISABLED = Integer.MIN_VALUE;
+    private static final int MAX_ROLL_COUNT = Turn.MAX_ROLL_COUNT;
+    private static final int DISABLED = Turn.DISABLED;
 
 
     /**
@@ -64,33 +69,16 @@ public class HandPanel extends JPanel implements PropertyChangeListener
     {
         initComponents();
         propertySupport = new PropertyChangeSupport(this);
-        lockedDice = new boolean[5];
+        turn = new Turn();
         rollButton.addActionListener(new ActionListener()
         {
             @Override
             public void actionPerformed(ActionEvent evt)
             {
-                if (rollingDiceCount == 0 && rollCount < MAX_ROLL_COUNT) {
-
-                    /* Make sure that at least one die is unlocked. Otherwise
-                     * we could increment the roll count even though no dice
-                     * were rolled.
-                     */
-                    boolean unlockedDieExists = false;
-                    for (JAnimatedDie die : dice) {
-                        if (!die.isLocked()) {
-                            unlockedDieExists = true;
-                            break;
-                        }
-                    }
-
-                    if (unlockedDieExists) {
-                        if (disabledDice) {
-                            enableDice();
-                        }
-                        incrementRollCount();
-                        rollDice();
-                    }
+                if (userControlled && remote) {
+                    requestRoll();
+                } else if (userControlled) {
+                    roll();
                 }
             }
         });
@@ -99,6 +87,7 @@ public class HandPanel extends JPanel implements PropertyChangeListener
         hand = new Hand(dice);
         for (JAnimatedDie die : dice) {
             die.addPropertyChangeListener(JAnimatedDie.PROP_ROLLING_DIE, this);
+            die.addPropertyChangeListener(JAnimatedDie.PROP_LOCKED_DIE, this);
         }
         updatePanelState();
         rollButton.setText("Begin Game");
@@ -113,51 +102,163 @@ public class HandPanel extends JPanel implements PropertyChangeListener
         dice[0].setLocked(true);
     }
 
+    /**
+     * Rolls the unlocked dice, just as the roll button does.
+     */
+    public void roll()
+    {
+        if (rollingDiceCount == 0 && turn.canRoll(getLockedMask())) {
+            if (disabledDice) {
+                enableDice();
+            }
+            incrementRollCount();
+            rollDice();
+        }
+    }
+
+    /**
+     * Rolls the unlocked dice to the faces of a hand rolled somewhere else,
+     * such as by the server of a network game. The dice are animated and
+     * the roll is handled just as for any other roll.
+     *
+     * @param packedHand the faces of all five dice, as a PackedHand; those
+     * of the locked dice must not have changed
+     */
+    public void roll(int packedHand)
+    {
+        rollRequested = false;
+        if (rollingDiceCount == 0 && turn.canRoll(getLockedMask())) {
+            if (disabledDice) {
+                enableDice();
+            }
+            rollButton.setEnabled(true);
+            incrementRollCount();
+            for (int i = 0; i < dice.length; ++i) {
+                dice[i].rollTo(PackedHand.getFace(packedHand, i));
+            }
+            handleUnanimatedRoll();
+        }
+    }
+
+    /**
+     * Leaves the rolling to someone else, such as the server of a network
+     * game. The roll button then fires PROP_ROLL_REQUESTED with the locked
+     * mask instead of rolling, and the dice are rolled when the faces are
+     * known, with roll(int).
+     */
+    public void setRemote(boolean remote)
+    {
+        this.remote = remote;
+        rollRequested = false;
+    }
+
+    public boolean isRemote()
+    {
+        return remote;
+    }
+
+    private void requestRoll()
+    {
+        if (!rollRequested && rollingDiceCount == 0 && turn.canRoll(getLockedMask())) {
+            rollRequested = true;
+            rollButton.setEnabled(false);  // until the dice come back
+            propertySupport.firePropertyChange(PROP_ROLL_REQUESTED, null, getLockedMask());
+        }
+    }
+
+    /**
+     * Lets the roll button roll the dice, or not while the computer is
+     * playing.
+     */
+    public void setUserControlled(boolean userControlled)
+    {
+        this.userControlled = userControlled;
+    }
+
     public Hand getHand()
     {
         return hand;
     }
     
+    public Turn getTurn()
+    {
+        return turn;
+    }
+    
+    /**
+     * @return true while the dice are rolling, before the new hand is known
+     */
+    public boolean isRolling() {
+        return rolling;
+    }
+    
     public boolean isRollInProgress() {
-        return rollCount > 0;
+        return turn.isRollInProgress();
     }
     
     public void handleGameOver() {
-        rollCount = DISABLED;
+        turn.handleGameOver();
         gameOver = true;
         updatePanelState();
     }
 
     public void handleNewTurn()
     {
-        rollCount = 0;
+        turn.handleNewTurn();
         updatePanelState();
         rollButton.setEnabled(true);
     }
     
     public void handleUndo() {
-        for (int i = 0; i < lockedDice.length; ++i) {
-            if (lockedDice[i]) {
+        int lockedMask = turn.undo();
+        for (int i = 0; i < dice.length; ++i) {
+            if ((lockedMask & 1 << i) != 0) {
                 dice[i].setLocked(true);
             }
         }
         enableDice();
-        rollCount = lastRollCount;
         updatePanelState();
     }
     
-    public void rollDice() {
+    /**
+     * @return a mask with bit <code>i</code> set if die <code>i</code> is locked
+     */
+    public int getLockedMask() {
+        int mask = 0;
+        for (int i = 0; i < dice.length; ++i) {
+            if (dice[i].isLocked()) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Locks exactly the dice in the mask, with bit <code>i</code> standing for
+     * die <code>i</code>.
+     */
+    public void setLockedMask(int lockedMask) {
         for (int i = 0; i < dice.length; ++i) {
-            lockedDice[i] = dice[i].isLocked();
+            dice[i].setLocked((lockedMask & 1 << i) != 0);
         }
+    }
+    
+    public void rollDice() {
         for (Die die : dice) {
             die.roll();
         }
+        handleUnanimatedRoll();
+    }
+
+    private void handleUnanimatedRoll() {
         /* handle the roll here if we aren't animating the roll. otherwise the
            the roll is handled by the property change listener */
-        if (JAnimatedDie.getNumberOfRolls() == 1) {
+        if (!animated || JAnimatedDie.getNumberOfRolls() == 1) {
+            // listeners still hear the roll start and end, just all at once
+            setRolling(true);
             hand.handleRoll();
             updatePanelState();
+            setRolling(false);
         }
     }
     
@@ -168,14 +269,15 @@ public class HandPanel extends JPanel implements PropertyChangeListener
     }
     
     public void reset() {
-        rollCount = DISABLED;
+        rollRequested = false;
+        turn.reset();
         newGame = true;
         updatePanelState();
     }
 
     private void updatePanelState()
     {
-        switch (rollCount) {
+        switch (turn.getRollCount()) {
         case 0:
             rollButton.setText("New Roll");
             for (JAnimatedDie die : dice) {
@@ -198,7 +300,7 @@ public class HandPanel extends JPanel implements PropertyChangeListener
         case DISABLED:
             if (newGame) {
                 rollButton.setText("Begin Game");
-                rollCount = 0;
+                turn.handleNewTurn();
                 disableDice();
                 for (JAnimatedDie die : dice) {
                     die.setLocked(false);
@@ -222,6 +324,21 @@ public class HandPanel extends JPanel implements PropertyChangeListener
         }
     }
     
+    /**
+     * Turns the rolling animation of the dice on or off, whatever the number
+     * of animation rolls in the preferences.
+     */
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+        for (JAnimatedDie die : dice) {
+            die.setAnimated(animated);
+        }
+    }
+
+    public boolean isAnimated() {
+        return animated;
+    }
+    
     public int getAnimationDelay() {
         return animationDelay;
     }
@@ -256,6 +373,10 @@ public class HandPanel extends JPanel implements PropertyChangeListener
                 setRolling(true);
             }
             break;
+        case JAnimatedDie.PROP_LOCKED_DIE:
+            // pass on the new mask, so listeners don't need to ask for it
+            propertySupport.firePropertyChange(PROP_LOCKED_DICE, null, getLockedMask());
+            break;
         }
     }
     
@@ -267,8 +388,7 @@ public class HandPanel extends JPanel implements PropertyChangeListener
     
     private void incrementRollCount()
     {
-        lastRollCount = ++rollCount;
-        if (rollCount == 1) {
+        if (turn.roll(getLockedMask())) {
             propertySupport.firePropertyChange(PROP_NEW_ROLL, 0, 1);
         }
     }
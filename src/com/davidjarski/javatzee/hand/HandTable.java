@@ -0,0 +1,224 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.hand;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.*;
+
+/**
+ * Precomputed classification of every possible hand of five six-sided dice.
+ * <p>
+ * A hand is identified by its count histogram, which packs the number of dice
+ * showing each face into <code>COUNT_BITS</code> bits, starting with the ones
+ * in the lowest bits. Since the counts always add up to five, the count of
+ * sixes is redundant and is left out of the table key. There are only 252
+ * distinct hands, so every entry is computed once when the class is loaded.
+ * <p>
+ * An entry packs the category bits, the sum of the dice and the index of the
+ * hand (0-251), so that classifying a hand costs a single array load. The
+ * score of a hand for every row of the score card is available from the index.
+ */
+public class HandTable
+{
+    public static final int THREE_OF_A_KIND = 0x01;
+    public static final int FOUR_OF_A_KIND = 0x02;
+    public static final int FIVE_OF_A_KIND = 0x04;
+    public static final int FULL_HOUSE = 0x08;
+    public static final int SHORT_STRAIGHT = 0x10;
+    public static final int LONG_STRAIGHT = 0x20;
+
+    public static final int DICE_COUNT = 5;
+    public static final int FACE_COUNT = 6;
+    public static final int HAND_COUNT = 252;  // number of multisets of 5 dice
+    public static final int COUNT_BITS = 3;
+    public static final int COUNT_MASK = 0x07;
+
+    private static final int KEY_BITS = COUNT_BITS * (FACE_COUNT - 1);
+    private static final int KEY_MASK = (1 << KEY_BITS) - 1;
+
+    private static final int CATEGORY_MASK = 0x3F;
+    private static final int SUM_SHIFT = 6;
+    private static final int SUM_MASK = 0x1F;
+    private static final int INDEX_SHIFT = 11;
+
+    private static final int[] ENTRIES = new int[1 << KEY_BITS];
+    private static final int[] HISTOGRAMS = new int[HAND_COUNT];
+    private static final byte[] SCORES = new byte[HAND_COUNT * ScoreCard.ROWS];
+
+    static {
+        int index = 0;
+        int[] counts = new int[FACE_COUNT];
+        // visit every packed value, skipping those that hold more than five dice
+        for (int histogram = 0; histogram <= KEY_MASK; ++histogram) {
+            int total = 0;
+            for (int face = 0; face < FACE_COUNT - 1; ++face) {
+                counts[face] = histogram >>> (COUNT_BITS * face) & COUNT_MASK;
+                total += counts[face];
+            }
+            if (total > DICE_COUNT) {
+                continue;
+            }
+            counts[FACE_COUNT - 1] = DICE_COUNT - total;
+            HISTOGRAMS[index] = histogram
+                    | counts[FACE_COUNT - 1] << (COUNT_BITS * (FACE_COUNT - 1));
+            ENTRIES[histogram] = classify(counts) | index << INDEX_SHIFT;
+            for (int row = 0; row < ScoreCard.ROWS; ++row) {
+                SCORES[index * ScoreCard.ROWS + row] =
+                        (byte)calculateScore(row, counts, ENTRIES[histogram]);
+            }
+            ++index;
+        }
+    }
+
+    private HandTable() { }
+
+    /**
+     * @param histogram the count histogram of a hand, with or without the
+     * count of sixes
+     * @return the packed table entry of the hand
+     */
+    public static int getEntry(int histogram)
+    {
+        return ENTRIES[histogram & KEY_MASK];
+    }
+
+    public static int getCategories(int entry)
+    {
+        return entry & CATEGORY_MASK;
+    }
+
+    public static boolean is(int entry, int category)
+    {
+        return (entry & category) != 0;
+    }
+
+    public static int getSum(int entry)
+    {
+        return entry >>> SUM_SHIFT & SUM_MASK;
+    }
+
+    public static int getIndex(int entry)
+    {
+        return entry >>> INDEX_SHIFT;
+    }
+
+    /**
+     * @return the score of the hand in a box of the given ScoreCard row,
+     * without any bonuses
+     */
+    public static int getScore(int entry, int row)
+    {
+        return SCORES[(entry >>> INDEX_SHIFT) * ScoreCard.ROWS + row];
+    }
+
+    /**
+     * @return the full count histogram, including the count of sixes, of the
+     * hand with the given index
+     */
+    public static int getHistogram(int index)
+    {
+        return HISTOGRAMS[index];
+    }
+
+    public static int getCount(int histogram, int face)
+    {
+        return histogram >>> (COUNT_BITS * face) & COUNT_MASK;
+    }
+
+    private static int classify(int[] counts)
+    {
+        int categories = 0;
+        int sum = 0;
+        int consecutive = 0; // keeps track of straights
+        int maxConsecutive = 0; // the most numbers in a row
+        boolean hasCountOfTwo = false; // used for testing for fullhouse
+
+        for (int i = 0; i < counts.length; ++i) {
+            sum += counts[i] * (i + 1);
+            if (counts[i] == 0) {
+                consecutive = 0;
+            } else {
+                if (counts[i] == 2) {
+                    hasCountOfTwo = true;
+                }
+                if (counts[i] >= 3) {
+                    categories |= THREE_OF_A_KIND;
+                }
+                if (counts[i] >= 4) {
+                    categories |= FOUR_OF_A_KIND;
+                }
+                if (counts[i] == 5) {
+                    categories |= FIVE_OF_A_KIND;
+                }
+                if (++consecutive > maxConsecutive) {
+                    maxConsecutive = consecutive;
+                }
+            }
+        }
+
+        // check for straights
+        if (maxConsecutive >= 4) {
+            categories |= SHORT_STRAIGHT;
+            if (maxConsecutive == 5) {
+                categories |= LONG_STRAIGHT;
+            }
+        }
+
+        // check for a full house
+        if ((categories & FIVE_OF_A_KIND) != 0
+                || ((categories & THREE_OF_A_KIND) != 0 && hasCountOfTwo)) {
+            categories |= FULL_HOUSE;
+        }
+        return categories | sum << SUM_SHIFT;
+    }
+
+    private static int calculateScore(int row, int[] counts, int entry)
+    {
+        switch (row) {
+        case ScoreCard.ONES_ROW:
+        case ScoreCard.TWOS_ROW:
+        case ScoreCard.THREES_ROW:
+        case ScoreCard.FOURS_ROW:
+        case ScoreCard.FIVES_ROW:
+        case ScoreCard.SIXES_ROW:
+            return counts[row] * (row + 1);
+        case ScoreCard.KIND3_ROW:
+            return is(entry, THREE_OF_A_KIND) ? getSum(entry) : 0;
+        case ScoreCard.KIND4_ROW:
+            return is(entry, FOUR_OF_A_KIND) ? getSum(entry) : 0;
+        case ScoreCard.FULL_HOUSE_ROW:
+            return is(entry, FULL_HOUSE) ? FULL_HOUSE_VALUE : 0;
+        case ScoreCard.SHORT_STRAIGHT_ROW:
+            return is(entry, SHORT_STRAIGHT) ? SHORT_STRAIGHT_VALUE : 0;
+        case ScoreCard.LONG_STRAIGHT_ROW:
+            return is(entry, LONG_STRAIGHT) ? LONG_STRAIGHT_VALUE : 0;
+        case ScoreCard.KIND5_ROW:
+            return is(entry, FIVE_OF_A_KIND) ? KIND5_VALUE : 0;
+        case ScoreCard.CHANCE_ROW:
+            return getSum(entry);
+        default:
+            throw new IllegalArgumentException("Illegal score box row");
+        }
+    }
+}
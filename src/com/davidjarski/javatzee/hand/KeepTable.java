@@ -0,0 +1,271 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.hand;
+
+/**
+ * Shared tables of the dice that can be kept from a hand, and of the hands
+ * that rerolling the rest of the dice can lead to, for strategy code that
+ * would otherwise enumerate them for every decision.
+ * <p>
+ * Kept dice are identified by their count histogram, packed as in HandTable,
+ * or by a kept index from 0 to <code>KEPT_COUNT - 1</code>. The order of the
+ * dice doesn't matter, so the 32 ways of keeping dice from a hand come down
+ * to at most 32, and often far fewer, sets of kept dice, and there are only
+ * 462 sets across all of the hands. Hands are identified by their HandTable
+ * index.
+ * <p>
+ * The keeps of a hand and the outcomes of a set of kept dice are stored in
+ * flat lists, and are visited by position:
+ * <pre>
+ *     for (int i = KeepTable.getFirstOutcome(kept); i &lt; KeepTable.getOutcomeLimit(kept); ++i) {
+ *         sum += KeepTable.getOutcomeProbability(i) * values[KeepTable.getOutcomeHand(i)];
+ *     }
+ * </pre>
+ * The tables are built the first time they are used and never change, so
+ * they can be read from any thread.
+ */
+public class KeepTable
+{
+    /**
+     * The number of sets of up to five dice.
+     */
+    public static final int KEPT_COUNT = 462;
+    /**
+     * The kept index of keeping no dice at all.
+     */
+    public static final int NOTHING_KEPT = 0;
+
+    private static final int HAND_COUNT = HandTable.HAND_COUNT;
+    private static final int DICE_COUNT = HandTable.DICE_COUNT;
+    private static final int FACE_COUNT = HandTable.FACE_COUNT;
+    private static final int COUNT_BITS = HandTable.COUNT_BITS;
+    private static final int HISTOGRAM_COUNT = 1 << COUNT_BITS * FACE_COUNT;
+
+    private KeepTable() { }
+
+    /**
+     * Builds the tables when KeepTable is first used.
+     */
+    private static class Tables
+    {
+        static final int[] KEPT_HISTOGRAMS = new int[KEPT_COUNT];
+        static final byte[] KEPT_SIZES = new byte[KEPT_COUNT];
+        // the kept index of every histogram, or -1 if it holds more than five dice
+        static final short[] KEPT_INDICES = new short[HISTOGRAM_COUNT];
+        // the hands that can result from rerolling the dice that aren't kept
+        static final int[] OUTCOME_START = new int[KEPT_COUNT + 1];
+        static final short[] OUTCOME_HANDS;
+        static final short[] OUTCOME_WEIGHTS;
+        static final double[] OUTCOME_PROBABILITIES;
+        // the different sets of dice that can be kept from each hand
+        static final int[] KEEP_START = new int[HAND_COUNT + 1];
+        static final short[] KEEPS;
+
+        static {
+            int kept = 0;
+            for (int histogram = 0; histogram < HISTOGRAM_COUNT; ++histogram) {
+                KEPT_INDICES[histogram] = -1;
+                int size = 0;
+                for (int face = 0; face < FACE_COUNT; ++face) {
+                    size += HandTable.getCount(histogram, face);
+                }
+                if (size <= DICE_COUNT) {
+                    KEPT_SIZES[kept] = (byte)size;
+                    KEPT_HISTOGRAMS[kept] = histogram;
+                    KEPT_INDICES[histogram] = (short)kept++;
+                }
+            }
+
+            int[] factorials = {1, 1, 2, 6, 24, 120};
+            int outcomeCount = 0;
+            for (int i = 0; i < KEPT_COUNT; ++i) {
+                for (int j = 0; j < KEPT_COUNT; ++j) {
+                    if (KEPT_SIZES[i] + KEPT_SIZES[j] == DICE_COUNT) {
+                        ++outcomeCount;
+                    }
+                }
+            }
+            OUTCOME_HANDS = new short[outcomeCount];
+            OUTCOME_WEIGHTS = new short[outcomeCount];
+            OUTCOME_PROBABILITIES = new double[outcomeCount];
+            int outcome = 0;
+            for (int i = 0; i < KEPT_COUNT; ++i) {
+                OUTCOME_START[i] = outcome;
+                int rolled = DICE_COUNT - KEPT_SIZES[i];
+                for (int j = 0; j < KEPT_COUNT; ++j) {
+                    if (KEPT_SIZES[j] != rolled) {
+                        continue;
+                    }
+                    // multinomial coefficient over the number of ordered rolls
+                    int permutations = factorials[rolled];
+                    for (int face = 0; face < FACE_COUNT; ++face) {
+                        permutations /= factorials[HandTable.getCount(KEPT_HISTOGRAMS[j], face)];
+                    }
+                    int entry = HandTable.getEntry(KEPT_HISTOGRAMS[i] + KEPT_HISTOGRAMS[j]);
+                    OUTCOME_HANDS[outcome] = (short)HandTable.getIndex(entry);
+                    OUTCOME_WEIGHTS[outcome] = (short)permutations;
+                    OUTCOME_PROBABILITIES[outcome++] = permutations / Math.pow(FACE_COUNT, rolled);
+                }
+            }
+            OUTCOME_START[KEPT_COUNT] = outcome;
+
+            int keepCount = 0;
+            short[][] keeps = new short[HAND_COUNT][];
+            for (int hand = 0; hand < HAND_COUNT; ++hand) {
+                int histogram = HandTable.getHistogram(hand);
+                // every histogram with no more of any face than the hand has
+                int total = 1;
+                for (int face = 0; face < FACE_COUNT; ++face) {
+                    total *= HandTable.getCount(histogram, face) + 1;
+                }
+                keeps[hand] = new short[total];
+                for (int i = 0; i < total; ++i) {
+                    int sub = 0;
+                    int rest = i;
+                    for (int face = 0; face < FACE_COUNT; ++face) {
+                        int radix = HandTable.getCount(histogram, face) + 1;
+                        sub |= rest % radix << COUNT_BITS * face;
+                        rest /= radix;
+                    }
+                    keeps[hand][i] = KEPT_INDICES[sub];
+                }
+                keepCount += total;
+            }
+            KEEPS = new short[keepCount];
+            int keep = 0;
+            for (int hand = 0; hand < HAND_COUNT; ++hand) {
+                KEEP_START[hand] = keep;
+                System.arraycopy(keeps[hand], 0, KEEPS, keep, keeps[hand].length);
+                keep += keeps[hand].length;
+            }
+            KEEP_START[HAND_COUNT] = keep;
+        }
+    }
+
+    /**
+     * @return the kept index of the count histogram, or -1 if the histogram
+     * holds more than five dice
+     */
+    public static int getKeptIndex(int histogram)
+    {
+        return Tables.KEPT_INDICES[histogram];
+    }
+
+    /**
+     * @return the kept index of the dice of the packed hand that are in the
+     * keep mask
+     */
+    public static int getKeptIndex(int packedHand, int keepMask)
+    {
+        return Tables.KEPT_INDICES[PackedHand.getKeptHistogram(packedHand, keepMask)];
+    }
+
+    public static int getKeptHistogram(int kept)
+    {
+        return Tables.KEPT_HISTOGRAMS[kept];
+    }
+
+    /**
+     * @return the number of dice kept
+     */
+    public static int getKeptSize(int kept)
+    {
+        return Tables.KEPT_SIZES[kept];
+    }
+
+    /**
+     * @return the number of different sets of dice that can be kept from the
+     * hand, including none and all of them
+     */
+    public static int getKeepCount(int hand)
+    {
+        return Tables.KEEP_START[hand + 1] - Tables.KEEP_START[hand];
+    }
+
+    /**
+     * @return the position of the first of the keeps of the hand, which is
+     * always NOTHING_KEPT; the last is the whole hand
+     */
+    public static int getFirstKeep(int hand)
+    {
+        return Tables.KEEP_START[hand];
+    }
+
+    /**
+     * @return the position just after the last of the keeps of the hand
+     */
+    public static int getKeepLimit(int hand)
+    {
+        return Tables.KEEP_START[hand + 1];
+    }
+
+    /**
+     * @return the kept index of the keep at the position
+     */
+    public static int getKeep(int position)
+    {
+        return Tables.KEEPS[position];
+    }
+
+    /**
+     * @return the number of different hands rerolling the dice that aren't
+     * kept can lead to
+     */
+    public static int getOutcomeCount(int kept)
+    {
+        return Tables.OUTCOME_START[kept + 1] - Tables.OUTCOME_START[kept];
+    }
+
+    public static int getFirstOutcome(int kept)
+    {
+        return Tables.OUTCOME_START[kept];
+    }
+
+    public static int getOutcomeLimit(int kept)
+    {
+        return Tables.OUTCOME_START[kept + 1];
+    }
+
+    /**
+     * @return the HandTable index of the hand of the outcome at the position
+     */
+    public static int getOutcomeHand(int position)
+    {
+        return Tables.OUTCOME_HANDS[position];
+    }
+
+    /**
+     * @return the number of the ordered rolls of the rerolled dice, out of
+     * 6 to the power of the number rerolled, that lead to the outcome
+     */
+    public static int getOutcomeWeight(int position)
+    {
+        return Tables.OUTCOME_WEIGHTS[position];
+    }
+
+    public static double getOutcomeProbability(int position)
+    {
+        return Tables.OUTCOME_PROBABILITIES[position];
+    }
+}
@@ -0,0 +1,238 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.hand;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Static operations on hands packed into a single int, for strategy and
+ * simulation code that can't afford to create objects for every hand.
+ * <p>
+ * The low 18 bits hold the count histogram described in HandTable, so a
+ * packed hand can be classified without unpacking it. The faces of the five
+ * dice are stored above the histogram as a base-6 number, with die 0 in the
+ * least significant digit; this takes 13 bits, leaving the sign bit clear.
+ * A die is selected with a mask in which bit <code>i</code> stands for die
+ * <code>i</code>, the same way locked dice are represented in engine.Turn.
+ */
+public class PackedHand
+{
+    public static final int DICE_COUNT = HandTable.DICE_COUNT;
+    public static final int ALL_DICE = (1 << DICE_COUNT) - 1;
+    /**
+     * The number of distinct face codes, one for each ordered roll of the
+     * five dice.
+     */
+    public static final int FACE_CODE_COUNT = 7776;
+
+    private static final int FACE_COUNT = HandTable.FACE_COUNT;
+    private static final int COUNT_BITS = HandTable.COUNT_BITS;
+    private static final int HISTOGRAM_BITS = COUNT_BITS * FACE_COUNT;
+    private static final int HISTOGRAM_MASK = (1 << HISTOGRAM_BITS) - 1;
+    private static final int FACE_SHIFT = HISTOGRAM_BITS;
+    private static final int[] PLACE_VALUES = {1, 6, 36, 216, 1296};
+    private static final int[] HANDS = new int[FACE_CODE_COUNT];
+
+    static {
+        for (int code = 0; code < FACE_CODE_COUNT; ++code) {
+            int histogram = 0;
+            for (int die = 0; die < DICE_COUNT; ++die) {
+                histogram += 1 << (COUNT_BITS * (code / PLACE_VALUES[die] % FACE_COUNT));
+            }
+            HANDS[code] = code << FACE_SHIFT | histogram;
+        }
+    }
+
+    private PackedHand() { }
+
+    /**
+     * @param faces the face (1-6) of each of the five dice
+     */
+    public static int of(int... faces)
+    {
+        if (faces.length != DICE_COUNT) {
+            throw new IllegalArgumentException("hand must have exactly 5 elements.");
+        }
+        int digits = 0;
+        int histogram = 0;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            digits += (faces[die] - 1) * PLACE_VALUES[die];
+            histogram += 1 << (COUNT_BITS * (faces[die] - 1));
+        }
+        return digits << FACE_SHIFT | histogram;
+    }
+
+    public static int of(Hand hand)
+    {
+        int digits = 0;
+        int histogram = 0;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            int face = hand.getValue(die) - 1;
+            digits += face * PLACE_VALUES[die];
+            histogram += 1 << (COUNT_BITS * face);
+        }
+        return digits << FACE_SHIFT | histogram;
+    }
+
+    /**
+     * @param code the faces of the dice as a base-6 number in the range
+     * 0 to FACE_CODE_COUNT - 1, as stored in a packed hand
+     */
+    public static int fromFaceCode(int code)
+    {
+        return HANDS[code];
+    }
+
+    public static int getFaceCode(int hand)
+    {
+        return hand >>> FACE_SHIFT;
+    }
+
+    /**
+     * Rolls all five dice.
+     */
+    public static int roll(RandomGenerator random)
+    {
+        int digits = 0;
+        int histogram = 0;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            int face = random.nextInt(FACE_COUNT);
+            digits += face * PLACE_VALUES[die];
+            histogram += 1 << (COUNT_BITS * face);
+        }
+        return digits << FACE_SHIFT | histogram;
+    }
+
+    /**
+     * Rolls the dice that aren't in the keep mask.
+     */
+    public static int reroll(int hand, int keepMask, RandomGenerator random)
+    {
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            if ((keepMask & 1 << die) == 0) {
+                hand = setFace(hand, die, random.nextInt(FACE_COUNT) + 1);
+            }
+        }
+        return hand;
+    }
+
+    /**
+     * @return the hand with the given die showing a new face
+     */
+    public static int setFace(int hand, int die, int face)
+    {
+        int old = getFace(hand, die);
+        return hand + (face - old) * (PLACE_VALUES[die] << FACE_SHIFT)
+                + (1 << (COUNT_BITS * (face - 1))) - (1 << (COUNT_BITS * (old - 1)));
+    }
+
+    public static int getFace(int hand, int die)
+    {
+        return (hand >>> FACE_SHIFT) / PLACE_VALUES[die] % FACE_COUNT + 1;
+    }
+
+    public static int getHistogram(int hand)
+    {
+        return hand & HISTOGRAM_MASK;
+    }
+
+    /**
+     * @return the count histogram of only the dice in the keep mask
+     */
+    public static int getKeptHistogram(int hand, int keepMask)
+    {
+        int histogram = 0;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            if ((keepMask & 1 << die) != 0) {
+                histogram += 1 << (COUNT_BITS * (getFace(hand, die) - 1));
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * The inverse of getKeptHistogram: picks out dice of the hand that make
+     * up the histogram, taking the lowest numbered die first when a face is
+     * showing on more than one.
+     *
+     * @return the keep mask, or -1 if the hand doesn't hold all of the dice
+     * in the histogram
+     */
+    public static int getKeepMask(int hand, int keptHistogram)
+    {
+        int mask = 0;
+        int remaining = keptHistogram;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            int shift = COUNT_BITS * (getFace(hand, die) - 1);
+            if ((remaining >>> shift & HandTable.COUNT_MASK) != 0) {
+                remaining -= 1 << shift;
+                mask |= 1 << die;
+            }
+        }
+        return remaining == 0 ? mask : -1;
+    }
+
+    /**
+     * @return the HandTable entry of the hand
+     */
+    public static int classify(int hand)
+    {
+        return HandTable.getEntry(hand);
+    }
+
+    public static int getCount(int hand, int face)
+    {
+        return HandTable.getCount(hand, face);
+    }
+
+    public static int getSum(int hand)
+    {
+        return HandTable.getSum(classify(hand));
+    }
+
+    public static boolean is(int hand, int category)
+    {
+        return HandTable.is(classify(hand), category);
+    }
+
+    /**
+     * @return the score of the hand in a box of the given ScoreCard row
+     */
+    public static int getScore(int hand, int row)
+    {
+        return HandTable.getScore(classify(hand), row);
+    }
+
+    public static String toString(int hand)
+    {
+        StringBuilder builder = new StringBuilder("[");
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            if (die != 0) {
+                builder.append(',');
+            }
+            builder.append(getFace(hand, die));
+        }
+        return builder.append(']').toString();
+    }
+}
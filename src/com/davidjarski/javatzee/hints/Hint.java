@@ -0,0 +1,92 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.hints;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+
+/**
+ * The best play for a hand, as worked out by the HintCalculator, along with
+ * the expected value of scoring the hand in each open box.
+ */
+public class Hint
+{
+    private final boolean score;
+    private final int keptHistogram;
+    private final double keepValue;
+    private final int bestBox;
+    private final double[] boxValues;
+
+    Hint(boolean score, int keptHistogram, double keepValue, int bestBox,
+            double[] boxValues)
+    {
+        this.score = score;
+        this.keptHistogram = keptHistogram;
+        this.keepValue = keepValue;
+        this.bestBox = bestBox;
+        this.boxValues = boxValues;
+    }
+
+    /**
+     * @return true if the hand should be scored now rather than rerolled
+     */
+    public boolean isScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return the count histogram of the dice to keep, packed as in HandTable
+     */
+    public int getKeptHistogram()
+    {
+        return keptHistogram;
+    }
+
+    /**
+     * @return the expected gain of keeping the dice and rerolling the rest,
+     * or of scoring the hand in the best box
+     */
+    public double getKeepValue()
+    {
+        return keepValue;
+    }
+
+    /**
+     * @return the box with the highest value, numbered
+     * <code>column * ScoreCard.ROWS + row</code>
+     */
+    public int getBestBox()
+    {
+        return bestBox;
+    }
+
+    /**
+     * @return the expected gain of scoring the hand in the box, or NaN if
+     * the box has already been scored
+     */
+    public double getBoxValue(int column, int row)
+    {
+        return boxValues[column * ScoreCard.ROWS + row];
+    }
+}
@@ -0,0 +1,167 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.hints;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.strategy.CardEvaluator;
+import com.davidjarski.javatzee.strategy.ColumnValues;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_PAR;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Works out hints on a background thread, so the dice animation and the
+ * score pad stay responsive, and remembers the most recent ones. The column
+ * values are loaded the first time a hint is asked for, which can take a
+ * while if they haven't been solved yet.
+ */
+public class HintCalculator
+{
+    private static final int CACHE_SIZE = 256;
+    private static final int SUBTOTAL_BITS = 6;
+    private static final int HISTOGRAM_BITS = HandTable.COUNT_BITS * HandTable.FACE_COUNT;
+
+    private final ExecutorService executor;
+    private final Map<Key, Hint> cache;
+    private CardEvaluator evaluator;  // only used on the executor's thread
+
+    public HintCalculator()
+    {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Hint Calculator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cache = new LinkedHashMap<Key, Hint>(CACHE_SIZE, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Hint> eldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Works out the hint for the hand in the background, then passes it to
+     * the callback on the event dispatch thread. The card is copied first, so
+     * it can go on changing.
+     *
+     * @param hand the packed hand
+     */
+    public void calculate(ScoreCard card, int hand, int rollsLeft, Consumer<Hint> callback)
+    {
+        final ScoreCard copy = new ScoreCard(card);
+        executor.execute(() -> {
+            Hint hint = getHint(copy, hand, rollsLeft);
+            SwingUtilities.invokeLater(() -> callback.accept(hint));
+        });
+    }
+
+    /**
+     * Works out the hint on the calling thread, using the cache.
+     */
+    public Hint getHint(ScoreCard card, int hand, int rollsLeft)
+    {
+        int histogram = PackedHand.getHistogram(hand);
+        Key key = new Key(card, histogram, rollsLeft);
+        synchronized (cache) {
+            Hint hint = cache.get(key);
+            if (hint != null) {
+                return hint;
+            }
+        }
+        Hint hint = createHint(card, hand, rollsLeft);
+        synchronized (cache) {
+            cache.put(key, hint);
+        }
+        return hint;
+    }
+
+    private synchronized Hint createHint(ScoreCard card, int hand, int rollsLeft)
+    {
+        if (evaluator == null) {
+            evaluator = new CardEvaluator(ColumnValues.getInstance());
+        }
+        evaluator.evaluate(card);
+        int index = HandTable.getIndex(PackedHand.classify(hand));
+        double[] boxValues = new double[ScoreCard.NUM_BOXES];
+        for (int column = 0; column < ScoreCard.COLUMNS; ++column) {
+            for (int row = 0; row < ColumnValues.ROWS; ++row) {
+                boxValues[column * ScoreCard.ROWS + row] = evaluator.isOpen(column, row)
+                        ? evaluator.getBoxValue(index, column, row) : Double.NaN;
+            }
+        }
+        int histogram = PackedHand.getHistogram(hand);
+        int kept = rollsLeft > 0 ? evaluator.getBestKeep(index, rollsLeft) : histogram;
+        boolean score = kept == histogram;
+        double keepValue = score ? evaluator.getHandValue(index, 0)
+                : evaluator.getKeepValue(kept, rollsLeft);
+        return new Hint(score, kept, keepValue, evaluator.getBestBox(index), boxValues);
+    }
+
+    /**
+     * Everything a hint depends on: the open boxes, the upper subtotals up to
+     * UPPER_PAR, whether the Javatzee bonus is enabled or about to be, the
+     * dice showing regardless of their order, and the rolls left.
+     */
+    private static class Key
+    {
+        private final long filled;
+        private final long state;
+
+        Key(ScoreCard card, int histogram, int rollsLeft)
+        {
+            filled = card.getFilledMask();
+            long packed = Math.min(card.getKind5Count(), ColumnValues.BONUS_KIND5_COUNT);
+            for (int column = 0; column < ScoreCard.COLUMNS; ++column) {
+                packed = packed << SUBTOTAL_BITS
+                        | Math.min(card.getUpperSubtotal(column), UPPER_PAR);
+            }
+            state = (packed << HISTOGRAM_BITS | histogram) << 2 | rollsLeft;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)other;
+            return filled == key.filled && state == key.state;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(filled * 31 + state);
+        }
+    }
+}
@@ -23,10 +23,26 @@
  */
 package com.davidjarski.javatzee.hints;
 
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
 import com.davidjarski.javatzee.hand.Hand;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.strategy.RerollOdds;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.border.TitledBorder;
 
 public class HintPanel extends javax.swing.JPanel
 {
@@ -38,6 +54,19 @@ public class HintPanel extends javax.swing.JPanel
     private final Font standardFont;
     private final Dimension boxPreferredSize;
     private final Dimension boxMinimumSize;
+    private final JCheckBox bestPlayBox;
+    private final JLabel bestPlayLabel;
+    private final JLabel[] oddsLabels;     // in the order of RerollOdds.CATEGORIES
+    private final double[] odds;
+    private HintCalculator calculator;
+    private ScoreCard lastCard;     // the card of the last best play shown
+    private int lastRollsLeft;
+    private int hintRequest;        // used to ignore hints for earlier rolls
+
+    private static final int SHOWN_BOX_COUNT = 5;
+    private static final String[] ROW_NAMES = {"Ones", "Twos", "Threes",
+        "Fours", "Fives", "Sixes", "3 of a Kind", "4 of a Kind", "Full House",
+        "Sm Straight", "Lg Straight", "Javatzee", "Chance"};
 
     /**
      * Creates new form HintBox
@@ -49,15 +78,60 @@ public class HintPanel extends javax.swing.JPanel
         boxPreferredSize = threeOfAKindBox.getPreferredSize();
         boxMinimumSize = threeOfAKindBox.getMinimumSize();
 
-        sumPanel.setPreferredSize(new Dimension(
-                checkBoxPanel.getPreferredSize().width,
-                sumPanel.getPreferredSize().height));
-
         standardFont = javatzeeBox.getFont().deriveFont(Font.PLAIN);
         selectedFont = standardFont.deriveFont(Font.BOLD);
         standardColor = Color.BLACK;
         selectedColor = new Color(139, 0, 0); // dark red
 
+        // the odds of each hand go to the right of its check box
+        odds = new double[RerollOdds.CATEGORIES.length];
+        oddsLabels = new JLabel[RerollOdds.CATEGORIES.length];
+        FontMetrics metrics = getFontMetrics(standardFont);
+        Dimension oddsSize = new Dimension(metrics.stringWidth("100.0%"), metrics.getHeight());
+        for (int i = 0; i < oddsLabels.length; ++i) {
+            oddsLabels[i] = new JLabel();
+            oddsLabels[i].setFont(standardFont);
+            oddsLabels[i].setHorizontalAlignment(JLabel.TRAILING);
+            oddsLabels[i].setPreferredSize(oddsSize);
+            GridBagConstraints constraints = new GridBagConstraints();
+            constraints.gridx = 1;
+            constraints.gridy = i;
+            constraints.anchor = GridBagConstraints.LINE_END;
+            constraints.insets = new Insets(i == 0 ? 5 : 0, 10, 0, 0);
+            checkBoxPanel.add(oddsLabels[i], constraints);
+        }
+        sumPanel.setPreferredSize(new Dimension(
+                checkBoxPanel.getPreferredSize().width,
+                sumPanel.getPreferredSize().height));
+
+        bestPlayBox = new JCheckBox("Show Best Play");
+        bestPlayBox.setFont(standardFont);
+        bestPlayBox.addActionListener(evt -> {
+            if (bestPlayBox.isSelected() && lastCard != null) {
+                updateBestPlay(lastCard, lastRollsLeft);
+            } else {
+                clearBestPlay();
+            }
+        });
+        bestPlayLabel = new JLabel();
+        bestPlayLabel.setFont(standardFont);
+        JPanel bestPlayPanel = new JPanel(new GridBagLayout());
+        bestPlayPanel.setBorder(BorderFactory.createTitledBorder(
+                BorderFactory.createEtchedBorder(), "Best Play",
+                TitledBorder.CENTER, TitledBorder.TOP, new Font("Dialog", Font.BOLD, 13)));
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.LINE_START;
+        bestPlayPanel.add(bestPlayBox, constraints);
+        constraints.gridy = 1;
+        constraints.insets = new Insets(5, 5, 5, 5);
+        bestPlayPanel.add(bestPlayLabel, constraints);
+        constraints = new GridBagConstraints();
+        constraints.gridx = 0;
+        constraints.gridy = 2;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.insets = new Insets(10, 0, 0, 0);
+        add(bestPlayPanel, constraints);
+
         reset();
     }
     
@@ -75,6 +149,8 @@ public class HintPanel extends javax.swing.JPanel
         threeOfAKindBox.setPreferredSize(boxPreferredSize);
         threeOfAKindBox.setMinimumSize(boxMinimumSize);
         handSumLabel.setText(null);
+        clearOdds();
+        clearBestPlay();
     }
 
     public void updateDisplay() {
@@ -90,6 +166,105 @@ public class HintPanel extends javax.swing.JPanel
         handSumLabel.setText(Integer.toString(hand.getSum()));
     }
 
+    /**
+     * Shows the chance of finishing the turn with each kind of hand if the
+     * unlocked dice are rolled, or clears the odds if there are no rolls
+     * left. This is cheap enough to call every time a die is locked.
+     */
+    public void updateOdds(int lockedMask, int rollsLeft) {
+        if (hand == null || rollsLeft <= 0 || rollsLeft >= Turn.MAX_ROLL_COUNT) {
+            clearOdds();
+            return;
+        }
+        RerollOdds.getOdds(PackedHand.of(hand), lockedMask, rollsLeft, odds);
+        for (int i = 0; i < oddsLabels.length; ++i) {
+            oddsLabels[i].setText(String.format("%.1f%%", odds[i] * 100));
+        }
+    }
+
+    public void clearOdds() {
+        for (JLabel label : oddsLabels) {
+            label.setText(null);
+        }
+    }
+
+    /**
+     * Shows the best dice to keep and the expected value of scoring in each
+     * open box, if the best play is being shown. The hint is worked out in
+     * the background and shown when it's ready, unless the dice have been
+     * rolled again in the meantime.
+     */
+    public void updateBestPlay(ScoreCard card, int rollsLeft) {
+        final int request = ++hintRequest;
+        lastCard = card;
+        lastRollsLeft = rollsLeft;
+        if (!bestPlayBox.isSelected() || card == null || card.isGameOver()) {
+            bestPlayLabel.setText(null);
+            return;
+        }
+        if (calculator == null) {
+            calculator = new HintCalculator();
+        }
+        final int packedHand = PackedHand.of(hand);
+        bestPlayLabel.setText("Calculating...");
+        calculator.calculate(card, packedHand, rollsLeft, hint -> {
+            if (request == hintRequest) {
+                showBestPlay(hint);
+            }
+        });
+    }
+
+    public void clearBestPlay() {
+        ++hintRequest;
+        lastCard = null;
+        bestPlayLabel.setText(null);
+    }
+
+    private void showBestPlay(Hint hint) {
+        StringBuilder html = new StringBuilder("<html>");
+        if (hint.isScore()) {
+            html.append("Score ").append(getBoxName(hint.getBestBox()));
+        } else if (hint.getKeptHistogram() == 0) {
+            html.append("Reroll all the dice");
+        } else {
+            html.append("Keep");
+            for (int face = 0; face < HandTable.FACE_COUNT; ++face) {
+                for (int i = HandTable.getCount(hint.getKeptHistogram(), face); i > 0; --i) {
+                    html.append(' ').append(face + 1);
+                }
+            }
+        }
+        html.append(String.format(" (%+.1f)", hint.getKeepValue()));
+
+        // the open boxes, best first
+        List<Integer> boxes = new ArrayList<>();
+        for (int box = 0; box < ScoreCard.NUM_BOXES; ++box) {
+            if (!Double.isNaN(getBoxValue(hint, box))) {
+                boxes.add(box);
+            }
+        }
+        boxes.sort((left, right) -> Double.compare(getBoxValue(hint, right),
+                getBoxValue(hint, left)));
+        html.append("<table cellpadding=0>");
+        for (int i = 0; i < Math.min(SHOWN_BOX_COUNT, boxes.size()); ++i) {
+            int box = boxes.get(i);
+            html.append("<tr><td>").append(getBoxName(box)).append("</td><td align=right>")
+                    .append(String.format("%+.1f", getBoxValue(hint, box)))
+                    .append("</td></tr>");
+        }
+        html.append("</table></html>");
+        bestPlayLabel.setText(html.toString());
+    }
+
+    private static double getBoxValue(Hint hint, int box) {
+        return hint.getBoxValue(box / ScoreCard.ROWS, box % ScoreCard.ROWS);
+    }
+
+    private static String getBoxName(int box) {
+        int column = box / ScoreCard.ROWS;
+        return ROW_NAMES[box % ScoreCard.ROWS] + " x" + ScoreCard.getMultiplier(column);
+    }
+
     private void setBoxAppearance(DisabledCheckBox box, boolean selected) {
         box.setSelected(selected);
         if (selected) {
@@ -24,6 +24,8 @@
 package com.davidjarski.javatzee.history;
 
 import com.davidjarski.javatzee.IO.HighScoresIO;
+import com.davidjarski.javatzee.IO.HistoryIO;
+import com.davidjarski.javatzee.stats.ScoreSketch;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -36,6 +38,7 @@ public class HighScores
     private final ArrayList<GameRecord> list;
     private final Comparator comparator;
     private int size;
+    private ScoreSketch statistics;  // of every game played, once asked for
     
     
     public HighScores() {
@@ -53,6 +56,9 @@ public class HighScores
     }
     
     public boolean addConditionally(GameRecord record) {
+        if (statistics != null) {
+            statistics.add(record.getScore());
+        }
         if (size < HIGH_SCORE_COUNT) {
             saveHighScore(record);
             ++size;
@@ -65,6 +71,21 @@ public class HighScores
         return false;
     }
     
+    /**
+     * @return the distribution of the scores of every game in the history,
+     * which is read the first time this is called and kept up to date as
+     * games are added after that
+     */
+    public ScoreSketch getStatistics() {
+        if (statistics == null) {
+            statistics = new ScoreSketch();
+            for (GameRecord record : HistoryIO.read()) {
+                statistics.add(record.getScore());
+            }
+        }
+        return statistics;
+    }
+    
     public void loadHighScores() {
         HighScoresIO.read(list);
         size = list.size();
@@ -0,0 +1,158 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.main;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.HandPanel;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.scorepad.ScorePad;
+import com.davidjarski.javatzee.strategy.ColumnValues;
+import com.davidjarski.javatzee.strategy.Decision;
+import com.davidjarski.javatzee.strategy.DecisionEngine;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Plays the turns of the seats in the ScorePad that are controlled by the
+ * computer, through the same HandPanel and ScorePad calls a person's clicks
+ * make, so the dice are animated and the score pad moves on to the next
+ * player as usual.
+ * <p>
+ * Decisions are made on a background thread and carried out on the event
+ * dispatch thread. All the other methods must be called on the event
+ * dispatch thread.
+ */
+public class ComputerPlayer
+{
+    private final HandPanel handPanel;
+    private final ScorePad scorePad;
+    private final ExecutorService executor;
+    private DecisionEngine strategy;  // only used on the executor's thread
+    private int request;        // used to ignore decisions that are out of date
+    private boolean enabled = true;
+
+    public ComputerPlayer(HandPanel handPanel, ScorePad scorePad)
+    {
+        this.handPanel = handPanel;
+        this.scorePad = scorePad;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Computer Player");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes the next move if it's the computer's turn: the first roll of the
+     * turn, or the decision on a hand that has just been rolled. Any
+     * decision still being worked out is forgotten.
+     */
+    public void play()
+    {
+        final int current = ++request;
+        boolean computerTurn = scorePad.isComputerTurn() && !scorePad.isGameOver();
+        handPanel.setUserControlled(!computerTurn);
+        if (!computerTurn || !enabled) {
+            return;
+        }
+        Turn turn = handPanel.getTurn();
+        if (turn.getRollCount() == 0) {
+            // wait for the rest of the last score's events, which may end the game
+            SwingUtilities.invokeLater(() -> {
+                if (current == request) {
+                    handPanel.roll();
+                }
+            });
+            return;
+        }
+        final ScoreCard card = new ScoreCard(scorePad.getScoreCard());
+        final int hand = PackedHand.of(handPanel.getHand());
+        final int rollsLeft = turn.getRollsLeft();
+        executor.execute(() -> {
+            try {
+                Decision decision = getStrategy().decide(card, hand, rollsLeft);
+                SwingUtilities.invokeLater(() -> {
+                    if (current == request) {
+                        carryOut(decision);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                Logger.getLogger(ComputerPlayer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        });
+    }
+
+    /**
+     * Forgets any decision still being worked out, such as when a new game
+     * is started or the game is over.
+     */
+    public void cancel()
+    {
+        ++request;
+        handPanel.setUserControlled(true);
+    }
+
+    /**
+     * With the computer player disabled, the seats it would play are left to
+     * someone else, such as the other players of a network game, and the
+     * user still only has the dice on the turns of the other seats.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        ++request;
+    }
+
+    /**
+     * Sets the longest the computer should think over a decision, in
+     * milliseconds; with 0 it plays on the engine's estimate alone, which is
+     * much faster and only a little weaker.
+     */
+    public void setTimeBudget(long timeBudget)
+    {
+        executor.execute(() -> getStrategy().setTimeBudget(timeBudget));
+    }
+
+    private void carryOut(Decision decision)
+    {
+        if (decision.isScore()) {
+            scorePad.setScoreBox(decision.getColumn(), decision.getRow());
+        } else {
+            handPanel.setLockedMask(decision.getKeepMask());
+            handPanel.roll();
+        }
+    }
+
+    private DecisionEngine getStrategy()
+    {
+        if (strategy == null) {
+            strategy = new DecisionEngine(ColumnValues.getInstance());
+        }
+        return strategy;
+    }
+}
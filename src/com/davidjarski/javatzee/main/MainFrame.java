@@ -37,10 +37,14 @@ import com.davidjarski.javatzee.players.Players;
 import com.davidjarski.javatzee.preferences.Preferences;
 import com.davidjarski.javatzee.preferences.PreferencesDialog;
 import com.davidjarski.javatzee.scorepad.ScorePanel;
+import com.davidjarski.javatzee.server.GameServer;
+import com.davidjarski.javatzee.strategy.DecisionEngine;
 import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
@@ -49,10 +53,14 @@ import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.swing.AbstractAction;
 import javax.swing.Box;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 public class MainFrame extends javax.swing.JFrame
@@ -67,6 +75,17 @@ public class MainFrame extends javax.swing.JFrame
     private static final String HELP_ACTION = "HELP";
     private static final String HISTORY_ACTION = "HISTORY";
     private static final String RECORD_ACTION = "RECORD";
+    private static final String TURBO_ACTION = "TURBO";
+    private static final String JOIN_ACTION = "JOIN";
+    /**
+     * Set this system property to true to start in turbo mode.
+     */
+    public static final String TURBO_PROPERTY = "javatzee.turbo";
+    /**
+     * Set this system property to host:port to join a network game on the
+     * binary port of a GameServer at startup.
+     */
+    public static final String SERVER_PROPERTY = "javatzee.server";
     
     private static final String APPLICATION_NAME = "Triple Javatzee";
     private static final String HIGH_SCORES_TITLE = "All-Time High Scores";
@@ -75,6 +94,8 @@ public class MainFrame extends javax.swing.JFrame
     
     private static final int MESSAGE_DELAY = 500;
     
+    private ComputerPlayer computerPlayer;
+    private NetworkGame networkGame;
     private JButton highScoresButton;
     private JButton newGameButton;
     private JButton preferencesButton;
@@ -88,6 +109,10 @@ public class MainFrame extends javax.swing.JFrame
     private HistoryDialog historyDialog;
     private final HighScores highScores;
     private boolean orderedWindows;
+    private boolean turbo;
+    private int turboGames;  // the games finished since turbo mode was turned on
+    private boolean networkPlayers;  // set while the score pad shows a network table
+    private boolean leavingTable;
 
     /**
      * Creates new form MainFrame
@@ -100,6 +125,8 @@ public class MainFrame extends javax.swing.JFrame
         highScores = new HighScores();
         initComponents();
         initMenu();
+        computerPlayer = new ComputerPlayer(handPanel, scorePad);
+        networkGame = new NetworkGame(handPanel, scorePad);
         handPanel.setAnimationDelay(preferences.getDelay());
         
         setTitle(APPLICATION_NAME);
@@ -108,8 +135,11 @@ public class MainFrame extends javax.swing.JFrame
         scorePad.setPlayers(players);
         handPanel.addPropertyChangeListener(HandPanel.PROP_HAND_ROLLING, this);
         handPanel.addPropertyChangeListener(HandPanel.PROP_NEW_ROLL, this);
+        handPanel.addPropertyChangeListener(HandPanel.PROP_LOCKED_DICE, this);
         scorePad.addPropertyChangeListener(ScorePanel.PROP_GAME_OVER, this);
         scorePad.addPropertyChangeListener(ScorePanel.PROP_SCORE_ENTERED, this);
+        networkGame.addPropertyChangeListener(NetworkGame.PROP_TABLE_STARTED, this);
+        networkGame.addPropertyChangeListener(NetworkGame.PROP_CONNECTED, this);
         
         addWindowListener(new java.awt.event.WindowAdapter()
         {
@@ -130,16 +160,127 @@ public class MainFrame extends javax.swing.JFrame
             
         });
         
+        // turbo mode has no button, only a shortcut
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_T, InputEvent.CTRL_DOWN_MASK),
+                TURBO_ACTION);
+        getRootPane().getActionMap().put(TURBO_ACTION, new AbstractAction()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // the other players wouldn't wait for it
+                if (!networkGame.isConnected()) {
+                    setTurbo(!turbo);
+                }
+            }
+        });
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_J, InputEvent.CTRL_DOWN_MASK),
+                JOIN_ACTION);
+        getRootPane().getActionMap().put(JOIN_ACTION, new AbstractAction()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String server = JOptionPane.showInputDialog(MainFrame.this,
+                        "Game server (host:port)",
+                        "localhost:" + GameServer.DEFAULT_BINARY_PORT);
+                if (server != null) {
+                    joinNetworkGame(server);
+                }
+            }
+        });
+        
         pack();
         setLocationRelativeTo(null);
         
         startNewGame();
+        if (Boolean.getBoolean(TURBO_PROPERTY)) {
+            setTurbo(true);
+        }
+        if (System.getProperty(SERVER_PROPERTY) != null) {
+            joinNetworkGame(System.getProperty(SERVER_PROPERTY));
+        }
     }
     
     public void startNewGame() {
+        if (networkPlayers && !networkGame.isConnected()) {
+            networkPlayers = false;
+            scorePad.setPlayers(players);
+            pack();
+        }
+        computerPlayer.cancel();
         handPanel.reset();
         scorePad.reset();
         hintPanel.reset();
+        computerPlayer.play();
+    }
+
+    public boolean isTurbo() {
+        return turbo;
+    }
+
+    /**
+     * Turbo mode has the computer play every seat, game after game, as fast
+     * as it can, for demonstrations and soak tests. The dice aren't animated
+     * and the score pad is repainted about once a frame, but the scores and
+     * finished games go through the usual events, so the history and high
+     * scores are saved just as they are for any other game.
+     */
+    public void setTurbo(boolean turbo) {
+        this.turbo = turbo;
+        turboGames = 0;
+        handPanel.setAnimated(!turbo);
+        scorePad.setAutoPlay(turbo);
+        scorePad.setDeferringUpdates(turbo);
+        computerPlayer.setTimeBudget(turbo ? 0 : DecisionEngine.DEFAULT_TIME_BUDGET);
+        updateTitle();
+        computerPlayer.cancel();
+        if (scorePad.isGameOver()) {
+            if (turbo) {
+                startNewGame();
+            }
+        } else if (!handPanel.isRolling()) {
+            // otherwise the end of the roll gets the computer going
+            if (!turbo && handPanel.getTurn().getRollCount() > 0) {
+                scorePad.handleNewTurn();  // let a person score the hand
+            }
+            computerPlayer.play();
+        }
+    }
+
+    /**
+     * Joins a table on the binary port of a GameServer, as the first of the
+     * players' names. The game starts once the server has filled the table,
+     * and the window goes back to the usual players when it is over.
+     *
+     * @param server the host and port, as host:port
+     */
+    public void joinNetworkGame(String server) {
+        int colon = server.lastIndexOf(':');
+        try {
+            String host = colon < 0 ? server : server.substring(0, colon);
+            int port = colon < 0 ? GameServer.DEFAULT_BINARY_PORT
+                    : Integer.parseInt(server.substring(colon + 1).trim());
+            if (turbo) {
+                setTurbo(false);
+            }
+            networkGame.connect(host.trim(), port, players.getName(0));
+        } catch (IOException | NumberFormatException ex) {
+            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+            JOptionPane.showMessageDialog(this, "Couldn't join a game at " + server,
+                    "Network Game", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void updateTitle() {
+        if (turbo) {
+            setTitle(APPLICATION_NAME + " - Turbo, " + turboGames
+                    + (turboGames == 1 ? " game" : " games"));
+        } else if (networkGame.isConnected()) {
+            setTitle(APPLICATION_NAME + " - Network Game");
+        } else {
+            setTitle(APPLICATION_NAME);
+        }
     }
 
     private void initMenu()
@@ -237,6 +378,9 @@ public class MainFrame extends javax.swing.JFrame
                 scorePad.undoLastScoreEntered();
                 undoButton.setEnabled(false);
                 handPanel.handleUndo();
+                hintPanel.updateOdds(handPanel.getLockedMask(),
+                        handPanel.getTurn().getRollsLeft());
+                computerPlayer.play();
             }
             break;
         case NEW_GAME_ACTION:
@@ -250,7 +394,14 @@ public class MainFrame extends javax.swing.JFrame
             {
                 return; // //user chose not to start a new game
             }
-            startNewGame();
+            if (networkGame.isConnected()) {
+                // the new game is started when the connection is closed
+                leavingTable = true;
+                networkGame.close();
+                leavingTable = false;
+            } else {
+                startNewGame();
+            }
             break;
         case ENTER_USERS_ACTION:
             new PlayerNamesDialog(this, true, this).setVisible(true);
@@ -300,13 +451,55 @@ public class MainFrame extends javax.swing.JFrame
                 hintPanel.reset();
             } else {
                 hintPanel.updateDisplay();
+                hintPanel.updateOdds(handPanel.getLockedMask(),
+                        handPanel.getTurn().getRollsLeft());
+                if (!turbo) {
+                    hintPanel.updateBestPlay(scorePad.getScoreCard(),
+                            handPanel.getTurn().getRollsLeft());
+                }
+                computerPlayer.play();
             }
             break;
+        case HandPanel.PROP_LOCKED_DICE:
+            hintPanel.updateOdds((Integer) evt.getNewValue(),
+                    handPanel.getTurn().getRollsLeft());
+            break;
         case ScorePanel.PROP_SCORE_ENTERED:
+            hintPanel.clearBestPlay();
+            hintPanel.clearOdds();
             handPanel.handleNewTurn();
-            undoButton.setEnabled(true);
+            // the server only takes moves forward
+            undoButton.setEnabled(!networkGame.isConnected());
+            computerPlayer.play();
+            break;
+        case NetworkGame.PROP_TABLE_STARTED:
+            networkPlayers = true;
+            scorePad.setPlayers((Players)evt.getNewValue());
+            pack();
+            startNewGame();
+            break;
+        case NetworkGame.PROP_CONNECTED:
+            boolean connected = (Boolean)evt.getNewValue();
+            computerPlayer.setEnabled(!connected);
+            updateTitle();
+            if (connected) {
+                // wait for the table to fill up
+                computerPlayer.cancel();
+                handPanel.reset();
+                scorePad.reset();
+                hintPanel.reset();
+                handPanel.setUserControlled(false);
+            } else if (!scorePad.isGameOver()) {
+                if (!leavingTable) {
+                    JOptionPane.showMessageDialog(this,
+                            "The connection to the game server was lost.",
+                            "Network Game", JOptionPane.WARNING_MESSAGE);
+                }
+                startNewGame();
+            }
             break;
         case ScorePanel.PROP_GAME_OVER:
+            computerPlayer.cancel();
             handPanel.handleGameOver();
             undoButton.setEnabled(false);
             historyButton.setEnabled(true);
@@ -333,7 +526,16 @@ public class MainFrame extends javax.swing.JFrame
                 } else {
                 }
             }
-            if (names != null) {
+            if (turbo) {
+                ++turboGames;
+                updateTitle();
+                // after the rest of the game over events, as for a new roll
+                SwingUtilities.invokeLater(() -> {
+                    if (this.turbo && scorePad.isGameOver()) {
+                        startNewGame();
+                    }
+                });
+            } else if (names != null) {
                 displayHighScoreMessage(names);
             }
             break;
@@ -364,6 +566,7 @@ public class MainFrame extends javax.swing.JFrame
                 players = (Players)newValue;
                 scorePad.setPlayers(players);
                 pack();
+                startNewGame();
             } catch (ClassCastException ex) {
                 Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
             }
@@ -0,0 +1,289 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.main;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.HandPanel;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.players.Players;
+import com.davidjarski.javatzee.scorepad.ScorePad;
+import com.davidjarski.javatzee.scorepad.ScorePanel;
+import com.davidjarski.javatzee.server.Protocol;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Plays at a table of a GameServer through the HandPanel and ScorePad, over
+ * the server's binary protocol. The server rolls all the dice: the user's
+ * rolls are sent to it as the dice to keep, and every roll at the table,
+ * the user's own included, comes back to be shown with the usual animation.
+ * The scores are kept by the server too: the box the user clicks is sent to
+ * it, and every score, the user's own included, is entered when it comes
+ * back, just as the computer enters its own through the ScorePad, so the
+ * window handles them like any others.
+ * <p>
+ * Frames are read on a background thread and handled in order on the event
+ * dispatch thread, each waiting for the dice of the one before it to stop
+ * rolling. All the other methods must be called on the event dispatch
+ * thread.
+ */
+public class NetworkGame implements PropertyChangeListener
+{
+    /**
+     * Fired once every player at the table is known, with the players as
+     * the new value. The seats of the other players are marked as the
+     * computer's, since their moves don't come from this window.
+     */
+    public static final String PROP_TABLE_STARTED = "TABLE_STARTED";
+    /**
+     * Fired when the game is joined, and when the connection is closed,
+     * whether by the game ending or by the server going away.
+     */
+    public static final String PROP_CONNECTED = "CONNECTED";
+
+    private static final Logger LOGGER = Logger.getLogger(NetworkGame.class.getName());
+
+    private final HandPanel handPanel;
+    private final ScorePad scorePad;
+    private final PropertyChangeSupport propertySupport;
+    private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+    private SocketChannel channel;
+    private int seat;            // the user's seat
+    private int turnSeat;        // the seat whose turn it is
+    private String[] names;
+
+    public NetworkGame(HandPanel handPanel, ScorePad scorePad)
+    {
+        this.handPanel = handPanel;
+        this.scorePad = scorePad;
+        propertySupport = new PropertyChangeSupport(this);
+        handPanel.addPropertyChangeListener(HandPanel.PROP_ROLL_REQUESTED, this);
+        handPanel.addPropertyChangeListener(HandPanel.PROP_HAND_ROLLING, this);
+        scorePad.addPropertyChangeListener(ScorePanel.PROP_SCORE_REQUESTED, this);
+    }
+
+    /**
+     * Connects to the binary port of a GameServer and asks for a seat. The
+     * table starts once the server has filled it.
+     *
+     * @throws IOException if the server can't be reached
+     */
+    public void connect(String host, int port, String name) throws IOException
+    {
+        close();
+        SocketChannel connecting = SocketChannel.open(new InetSocketAddress(host, port));
+        connecting.socket().setTcpNoDelay(true);
+        channel = connecting;
+        seat = -1;
+        turnSeat = -1;
+        names = null;
+        send(Protocol.join(name));
+        Thread thread = new Thread(() -> read(connecting), "Network Game");
+        thread.setDaemon(true);
+        thread.start();
+        propertySupport.firePropertyChange(PROP_CONNECTED, false, true);
+    }
+
+    public boolean isConnected()
+    {
+        return channel != null;
+    }
+
+    /**
+     * Leaves the table, if there is one. The server plays the rest of the
+     * user's game.
+     */
+    public void close()
+    {
+        if (channel == null) {
+            return;
+        }
+        send(Protocol.quit());
+        disconnect();
+    }
+
+    private void disconnect()
+    {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+        channel = null;
+        frames.clear();
+        handPanel.setRemote(false);
+        scorePad.setRemote(false);
+        propertySupport.firePropertyChange(PROP_CONNECTED, true, false);
+    }
+
+    /**
+     * Reads frames until the channel is closed, on the reading thread.
+     */
+    private void read(SocketChannel reading)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Protocol.MAX_FRAME_LENGTH);
+        try {
+            while (reading.read(buffer) >= 0) {
+                buffer.flip();
+                ByteBuffer frame;
+                while ((frame = Protocol.nextFrame(buffer)) != null) {
+                    ByteBuffer copy = ByteBuffer.allocate(frame.remaining()).put(frame).flip();
+                    SwingUtilities.invokeLater(() -> receive(reading, copy));
+                }
+                buffer.compact();
+            }
+        } catch (IOException ex) {
+            // closed, by either end
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (channel == reading) {
+                disconnect();
+            }
+        });
+    }
+
+    private void receive(SocketChannel reading, ByteBuffer frame)
+    {
+        if (channel == reading) {
+            frames.add(frame);
+            handleFrames();
+        }
+    }
+
+    private void handleFrames()
+    {
+        while (channel != null && !frames.isEmpty() && !handPanel.isRolling()) {
+            handle(frames.poll());
+        }
+    }
+
+    private void handle(ByteBuffer frame)
+    {
+        switch (frame.get()) {
+        case Protocol.SEATED:
+            frame.getInt();  // the table number
+            int seating = frame.get();
+            seat = Protocol.getSeat(seating);
+            names = new String[Protocol.getSeats(seating)];
+            break;
+        case Protocol.PLAYER:
+            int player = frame.get();
+            names[player] = Protocol.getString(frame);
+            if (player == names.length - 1) {
+                startTable();
+            }
+            break;
+        case Protocol.TURN:
+            turnSeat = frame.get();
+            break;
+        case Protocol.ROLLED:
+            int roll = Protocol.getRoll(frame);
+            handPanel.setLockedMask(Protocol.getLockedMask(roll));
+            handPanel.roll(PackedHand.fromFaceCode(Protocol.getFaceCode(roll)));
+            break;
+        case Protocol.SCORED:
+            int score = frame.getInt();
+            scorePad.setScoreBox(Protocol.getColumn(score), Protocol.getRow(score));
+            break;
+        case Protocol.LEFT:
+            // the server plays the rest of their game
+            break;
+        case Protocol.OVER:
+            disconnect();
+            break;
+        case Protocol.ERROR:
+            LOGGER.log(Level.SEVERE, "Game server: {0}", Protocol.getErrorMessage(frame.get()));
+            break;
+        }
+    }
+
+    private void startTable()
+    {
+        boolean[] others = new boolean[names.length];
+        for (int i = 0; i < others.length; ++i) {
+            others[i] = i != seat;
+        }
+        handPanel.setRemote(true);
+        scorePad.setRemote(true);
+        propertySupport.firePropertyChange(PROP_TABLE_STARTED, null,
+                Players.create(names, others));
+    }
+
+    private void send(ByteBuffer frame)
+    {
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt)
+    {
+        if (channel == null) {
+            return;
+        }
+        switch (evt.getPropertyName()) {
+        case HandPanel.PROP_ROLL_REQUESTED:
+            send(Protocol.roll((Integer)evt.getNewValue()));
+            break;
+        case HandPanel.PROP_HAND_ROLLING:
+            if (evt.getNewValue() == Boolean.FALSE) {
+                // after the rest of the roll's listeners
+                SwingUtilities.invokeLater(this::handleFrames);
+            }
+            break;
+        case ScorePanel.PROP_SCORE_REQUESTED:
+            if (turnSeat == seat) {
+                int box = (Integer)evt.getNewValue();
+                send(Protocol.score(box / ScoreCard.ROWS, box % ScoreCard.ROWS));
+            }
+            break;
+        }
+    }
+
+    public void addPropertyChangeListener(String propertyName,
+            PropertyChangeListener listener)
+    {
+        propertySupport.addPropertyChangeListener(propertyName, listener);
+    }
+
+    public void removePropertyChangeListener(String propertyName,
+            PropertyChangeListener listener)
+    {
+        propertySupport.removePropertyChangeListener(propertyName, listener);
+    }
+}
@@ -25,9 +25,12 @@ package com.davidjarski.javatzee.players;
 
 import com.davidjarski.javatzee.main.DialogListener;
 import com.davidjarski.javatzee.main.Utility;
+import java.awt.GridBagConstraints;
+import java.awt.Insets;
 import java.awt.Point;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import javax.swing.JCheckBox;
 import javax.swing.JTextField;
 
 public class PlayerNamesDialog extends javax.swing.JDialog
@@ -41,6 +44,7 @@ public class PlayerNamesDialog extends javax.swing.JDialog
     
     private DialogListener dialogListener;
     private JTextField[] textFields;
+    private JCheckBox[] computerBoxes;
     private Players players = Players.getPlayers();
     private int usedFields;
     
@@ -53,6 +57,8 @@ public class PlayerNamesDialog extends javax.swing.JDialog
         Utility.lockComponentSize(lblErrorMessage);
         lblErrorMessage.setText(null);
         initTextFields();
+        initComputerBoxes();
+        pack();
         
         Point p = parent.getLocation();
         int xOffset = (parent.getWidth() - getWidth()) / 2;
@@ -110,6 +116,24 @@ public class PlayerNamesDialog extends javax.swing.JDialog
         txtPlayer1.requestFocus();
     }
     
+    /**
+     * Adds a check box after each name, for letting the computer play.
+     */
+    private void initComputerBoxes() {
+        computerBoxes = new JCheckBox[textFields.length];
+        for (int i = 0; i < computerBoxes.length; ++i) {
+            computerBoxes[i] = new JCheckBox("Computer");
+            computerBoxes[i].setFont(txtPlayer1.getFont());
+            computerBoxes[i].setSelected(i < players.getNumberOfPlayers()
+                    && players.isComputer(i));
+            GridBagConstraints constraints = new GridBagConstraints();
+            constraints.gridx = 2;
+            constraints.gridy = i;
+            constraints.insets = new Insets(i == 0 ? 0 : 5, 10, 0, 0);
+            pnlNames.add(computerBoxes[i], constraints);
+        }
+    }
+    
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -282,6 +306,9 @@ public class PlayerNamesDialog extends javax.swing.JDialog
         for (JTextField textField : textFields) {
             textField.setText("");
         }
+        for (JCheckBox computerBox : computerBoxes) {
+            computerBox.setSelected(false);
+        }
         txtPlayer1.requestFocus();
     }//GEN-LAST:event_btnClearActionPerformed
 
@@ -296,13 +323,15 @@ public class PlayerNamesDialog extends javax.swing.JDialog
         }
         if (nameCount > 0) {
             String[] names = new String[nameCount];
+            boolean[] computers = new boolean[nameCount];
             int i = 0;
-            for (JTextField textField : textFields) {
-                if (!textField.getText().isEmpty()) {
-                    names[i++] = textField.getText();
+            for (int field = 0; field < textFields.length; ++field) {
+                if (!textFields[field].getText().isEmpty()) {
+                    computers[i] = computerBoxes[field].isSelected();
+                    names[i++] = textFields[field].getText();
                 }
             }
-            if (players.set(names) && chkSaveSettings.isSelected()) {
+            if (players.set(names, computers) && chkSaveSettings.isSelected()) {
                 Players.savePlayers(players);
             }
 
@@ -24,6 +24,7 @@
 package com.davidjarski.javatzee.players;
 
 import com.davidjarski.javatzee.IO.PlayersIO;
+import java.util.Arrays;
 
 public class Players
 {
@@ -42,6 +43,7 @@ public class Players
     private static Players players;
 
     private String[] names;
+    private boolean[] computers;    // the seats played by the computer
 
     public static Players getCopy(Players original) {
         Players copy = new Players();
@@ -49,12 +51,28 @@ public class Players
         for (int i = 0; i < copy.names.length; ++i) {
             copy.names[i] = original.names[i];
         }
+        copy.computers = original.computers.clone();
         return copy;
     }
 
     public static Players getDefaultPlayers() {
         Players players = new Players();
         players.names = new String[]{DEFAULT_PLAYER_NAME};
+        players.computers = new boolean[1];
+        return players;
+    }
+
+    /**
+     * @param computers which of the players are controlled by the computer,
+     * one for each name
+     */
+    public static Players create(String[] names, boolean[] computers) {
+        if (names.length != computers.length) {
+            throw new IllegalArgumentException("Every player must have a name");
+        }
+        Players players = new Players();
+        players.names = names;
+        players.computers = computers.clone();
         return players;
     }
 
@@ -64,8 +82,7 @@ public class Players
 
     public static Players loadSavedPlayers() {
         if (savedPlayers == null) {
-            savedPlayers = new Players();
-            savedPlayers.names = PlayersIO.read();
+            savedPlayers = PlayersIO.read();
         }
         players = savedPlayers;
         return players;
@@ -73,7 +90,7 @@ public class Players
 
     public static void savePlayers(Players players) {
         savedPlayers = getCopy(players);
-        PlayersIO.write(players.names);
+        PlayersIO.write(players);
     }
 
     private Players() { }
@@ -86,6 +103,13 @@ public class Players
         return names.length;
     }
 
+    /**
+     * @return true if the player's turns are played by the computer
+     */
+    public boolean isComputer(int index) {
+        return computers[index];
+    }
+
     public boolean set(String[] names) {
         if (names.length <= MAX_PLAYER_COUNT
                 && getLongestLength(names) <= MAX_CHARACTERS) {
@@ -101,6 +125,7 @@ public class Players
             } else {
                 // different length array, so definitely a change in names
                 this.names = names;
+                computers = Arrays.copyOf(computers, names.length);
                 return true;
             }
                    
@@ -109,6 +134,25 @@ public class Players
         return false;
     }
     
+    /**
+     * Sets the names along with which of the players are controlled by the
+     * computer.
+     *
+     * @return true if anything changed
+     */
+    public boolean set(String[] names, boolean[] computers) {
+        if (names.length != computers.length
+                || names.length > MAX_PLAYER_COUNT
+                || getLongestLength(names) > MAX_CHARACTERS) {
+            return false;
+        }
+        boolean changed = !Arrays.equals(this.names, names)
+                || !Arrays.equals(this.computers, computers);
+        this.names = names;
+        this.computers = computers.clone();
+        return changed;
+    }
+    
     public int getLongestLength() {
         return getLongestLength(names);
     }
@@ -66,4 +66,9 @@ public class ResultBox extends JLabel {
     public int getScore() {
         return score;
     } 
+    
+    public void eraseScore() {
+        setText(null);
+        score = 0;
+    }
 }
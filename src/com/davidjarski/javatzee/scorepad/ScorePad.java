@@ -23,6 +23,7 @@
  */
 package com.davidjarski.javatzee.scorepad;
 
+import com.davidjarski.javatzee.engine.ScoreCard;
 import com.davidjarski.javatzee.hand.Hand;
 import com.davidjarski.javatzee.history.GameRecord;
 import com.davidjarski.javatzee.players.Players;
@@ -42,6 +43,10 @@ public class ScorePad extends javax.swing.JPanel
     private int currentPlayer;  // a number, 0-3
     private ScorePanel currentPanel;
     private ArrayList<ScorePanel> scorePanels;
+    private boolean[] computers;  // the seats played by the computer
+    private boolean autoPlay;     // set when the computer plays every seat
+    private boolean deferringUpdates;
+    private boolean remote;       // set when a game server scores the boxes
     private int gameOverCount;
     private final PropertyChangeSupport propertySupport;
     private Hand hand;
@@ -60,6 +65,7 @@ public class ScorePad extends javax.swing.JPanel
         scorePanels = new ArrayList<>();
         addPanel();
         numPlayers = 1;
+        computers = new boolean[numPlayers];
         currentPanel = scorePanels.get(0);
         cycleScorePanel(Cycle.HOME);
         largeFont = currentPanel.getPlayerFont();
@@ -117,18 +123,73 @@ public class ScorePad extends javax.swing.JPanel
             addPanel();
         }
         Font font = (players.getLongestLength() > 12 ? smallFont : largeFont);
+        computers = new boolean[numPlayers];
         for (int i = 0; i < scorePanels.size(); ++i) {
             scorePanels.get(i).setPlayerName(players.getName(i));
             scorePanels.get(i).setPlayerFont(font);
+            computers[i] = players.isComputer(i);
+        }
+    }
+
+    /**
+     * @return true if the current player's turns are played by the computer
+     */
+    public boolean isComputerTurn() {
+        return autoPlay || currentPlayer < computers.length && computers[currentPlayer];
+    }
+
+    public boolean isAutoPlay() {
+        return autoPlay;
+    }
+
+    /**
+     * Has the computer play every seat, whoever the players are set to be.
+     */
+    public void setAutoPlay(boolean autoPlay) {
+        this.autoPlay = autoPlay;
+    }
+
+    /**
+     * Defers the updates of the boxes of all the score panels, as in
+     * ScorePanel.setDeferringUpdates().
+     */
+    public void setDeferringUpdates(boolean deferringUpdates) {
+        this.deferringUpdates = deferringUpdates;
+        for (ScorePanel panel : scorePanels) {
+            panel.setDeferringUpdates(deferringUpdates);
+        }
+    }
+
+    /**
+     * Scores the hand in a box of the current player's card, for players
+     * whose turns are played by the computer. The score is entered just as
+     * if the box had been clicked.
+     */
+    public void setScoreBox(int column, int row) {
+        currentPanel.setScoreBox(column, row);
+    }
+
+    /**
+     * Leaves the scoring of all the score panels to someone else, as in
+     * ScorePanel.setRemote(). Their requests are fired as
+     * ScorePanel.PROP_SCORE_REQUESTED.
+     */
+    public void setRemote(boolean remote) {
+        this.remote = remote;
+        for (ScorePanel panel : scorePanels) {
+            panel.setRemote(remote);
         }
     }
 
     private void addPanel() {
         ScorePanel panel = new ScorePanel(hand);
+        panel.setDeferringUpdates(deferringUpdates);
+        panel.setRemote(remote);
         scorePanels.add(numPlayers++, panel);
         add(panel);
         panel.addPropertyChangeListener(ScorePanel.PROP_SCORE_ENTERED, this);
         panel.addPropertyChangeListener(ScorePanel.PROP_GAME_OVER, this);
+        panel.addPropertyChangeListener(ScorePanel.PROP_SCORE_REQUESTED, this);
         
         if (numPlayers > 1) {
             for (ScorePanel scorePanel : scorePanels) {
@@ -178,11 +239,14 @@ public class ScorePad extends javax.swing.JPanel
     public void undoLastScoreEntered() {
         cycleScorePanel(Cycle.LEFT);
         currentPanel.undoScoreEntered();
-        currentPanel.setEnabled(true);
+        currentPanel.setEnabled(!isComputerTurn());
     }
     
     public void handleNewTurn() {
-        currentPanel.handleNewTurn();
+        // the computer doesn't click, so its panel stays out of the user's way
+        if (!isComputerTurn()) {
+            currentPanel.handleNewTurn();
+        }
     }
     
     public void doDummyGame() {
@@ -204,6 +268,9 @@ public class ScorePad extends javax.swing.JPanel
             }
             propertySupport.firePropertyChange(evt);
             break;
+        case ScorePanel.PROP_SCORE_REQUESTED:
+            propertySupport.firePropertyChange(evt);
+            break;
         case ScorePanel.PROP_GAME_OVER:
             if (++gameOverCount == numPlayers) {
                 propertySupport.firePropertyChange(evt);
@@ -212,6 +279,20 @@ public class ScorePad extends javax.swing.JPanel
         }
     }
 
+    /**
+     * @return the score card of the player whose turn it is
+     */
+    public ScoreCard getScoreCard() {
+        return currentPanel.getScoreCard();
+    }
+
+    /**
+     * @return the score card of any player, 0-3
+     */
+    public ScoreCard getScoreCard(int player) {
+        return scorePanels.get(player).getScoreCard();
+    }
+
     public int getCurrentPlayerNumber() {
         return currentPlayer;
     }
@@ -23,9 +23,10 @@
  */
 package com.davidjarski.javatzee.scorepad;
 
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.ScoreCard;
 import com.davidjarski.javatzee.hand.Hand;
 import com.davidjarski.javatzee.history.GameRecord;
-import static com.davidjarski.javatzee.scorepad.ScoreConstants.*;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
@@ -33,10 +34,10 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.Random;
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.border.BevelBorder;
 import javax.swing.border.Border;
@@ -44,53 +45,28 @@ import javax.swing.border.Border;
 public class ScorePanel extends JPanel implements MouseListener
 {    
     public static final String PROP_SCORE_ENTERED = "boxesScored";
+    /**
+     * Fired in remote mode when a box is clicked, with the box,
+     * column * ScoreCard.ROWS + row, as the new value.
+     */
+    public static final String PROP_SCORE_REQUESTED = "scoreRequested";
     public static final String PROP_GAME_OVER = "gameOver";
     
-    public static final int NUM_BOXES = 39;    // total number of score boxes
+    public static final int NUM_BOXES = ScoreCard.NUM_BOXES;    // total number of score boxes
     /**
      * The total number of bytes needed to store the state of the panel
      * score boxes.
      */
-    public static final int INT_COUNT = 5; // the number of packed ints returned by getInts()
-    
-    private static final int ONES_ROW = 0;
-    private static final int TWOS_ROW = 1;
-    private static final int THREES_ROW = 2;
-    private static final int FOURS_ROW = 3;
-    private static final int FIVES_ROW = 4;
-    private static final int SIXES_ROW = 5;
-    private static final int KIND3_ROW = 6;
-    private static final int KIND4_ROW = 7;
-    private static final int FULL_HOUSE_ROW = 8;
-    private static final int SHORT_STRAIGHT_ROW = 9;
-    private static final int LONG_STRAIGHT_ROW = 10;
-    private static final int KIND5_ROW = 11;
-    private static final int CHANCE_ROW = 12;
-    private static final int KIND5_BONUS_ROW = 13;
-    
-    private static final int COUNT_SHIFT = 3;
-    private static final int VALUE_SHIFT = 6;
-    private static final int BONUS_SHIFT = 4;
-    
-    private static final int COUNT_MASK = 0x07;
-    private static final int VALUE_MASK = 0x3F;
-    private static final int BONUS_MASK = 0x0F;
-    
-    private static final int ONES_TWOS_THREES = 0;
-    private static final int FOURS_FIVES_SIXES = 1;
-    private static final int KIND3 = 2;
-    private static final int KIND4_FULL_SHORT_LONG_KIND5 = 3;
-    private static final int CHANCE_BONUS = 4;
-    
-    private static final int TRUE = 1;
-    private static final int FALSE = 0;
+    public static final int INT_COUNT = ScoreCard.INT_COUNT; // the number of packed ints returned by getInts()
 
-    private static int COLUMNS = 3;
+    private static int COLUMNS = ScoreCard.COLUMNS;
+    /**
+     * The delay before deferred updates are shown, about one frame.
+     */
+    private static final int FRAME_DELAY = 16;
     private static final int COLUMN_ZERO = 0;
     private static final int COLUMN_ONE = 1;
     private static final int COLUMN_TWO = 2;
-    private static final int[] COLUMN_MULTIPLIERS =
-            {COLUMN1_MULTIPLIER, COLUMN2_MULTIPLIER, COLUMN3_MULTIPLIER};
     
     private static Border nameHighlightBorder;
     private static Border nameStandardBorder;
@@ -98,18 +74,16 @@ public class ScorePanel extends JPanel implements MouseListener
     private static Border panelStandardBorder;
    
     private final PropertyChangeSupport propertySupport;
+    private final ScoreCard card;
     private Hand hand;
-    private ScoreBox lastBoxScored; // used to keep track of player's last move
-    private ResultBox lastKind5BonusBox;  // for use with undo method
-    private boolean lastBoxWasKind5;  // for use with undo method
     private boolean active;  // set to true when this is the currently used panel
-    private boolean kind5BonusEnabled;
     private boolean gameOver;  // set to true when all scoreBoxes are filled
-    private boolean unDoing;  // true when we are processing an undo
     private boolean usingHighlights;
-    private int kind5Count;   // number of yahtzees a player has scored
-    private int boxesScored;    // number of scoreBoxes with values
+    private boolean remote;  // set when a game server scores the boxes
     private GameRecord gameRecord;
+    private boolean deferringUpdates;
+    private int changedColumns;  // bit i is set if column i needs updating
+    private final Timer updateTimer = new Timer(FRAME_DELAY, e -> showChangedColumns());
 
     private ResultBox[] upperSubtotalBoxes;
     private ResultBox[] upperBonusBoxes;
@@ -126,6 +100,8 @@ public class ScorePanel extends JPanel implements MouseListener
      */
     public ScorePanel()
     {
+        card = new ScoreCard();
+        updateTimer.setRepeats(false);
         initBorders();
         initComponents();
         initBoxArrays();
@@ -144,168 +120,179 @@ public class ScorePanel extends JPanel implements MouseListener
     }
     
     public void setScoreBox(ScoreBox box)
+    {
+        setScoreBox(box.getColumn(), getRow(box.getHandType()));
+    }
+
+    /**
+     * Scores the hand in a box as if it had been clicked, for players whose
+     * turns are played by the computer.
+     */
+    public void setScoreBox(int column, int row)
     {
         /* Return immediately if this box has already been scored or if it isn't
            this player's turn      
         */
-        if (box.getText() != null || !isActive()) {
+        if (card.isFilled(column, row) || !isActive()) {
             return;
         }
-        lastBoxWasKind5 = false;
-        int score = getScoreOfHand(box.getHandType());
-        box.setScore(score);  // sets score to zero unless value was changed in above switch
-        incrementBoxesScored();
-        lastBoxScored = box;
+        int oldBoxesScored = card.getBoxesScored();
+        card.score(column, row, hand);
+        updateColumn(column);
+        propertySupport.firePropertyChange(
+                PROP_SCORE_ENTERED, oldBoxesScored, card.getBoxesScored());
         setEnabled(false);
-        if (kind5Count >= 3 && hand.isFiveOfAKind()
-                    && score > 0) {
-            if (kind5BonusEnabled) {
-                processKind5Bonus();
-            } else {
-                kind5BonusEnabled = true;
-            }         
-        }
-
-        updateColumnOfLastBoxScored();
-        if (boxesScored == NUM_BOXES) {
+        if (card.isGameOver()) {
             setGameOver(true);
         }
     }
     
-    private int getScoreOfHand(ScoreBox.HandType handType) {
-        int score = 0;
+    /**
+     * Leaves the scoring to someone else, such as the server of a network
+     * game. A click then fires PROP_SCORE_REQUESTED instead of scoring the
+     * box, and the panel stays disabled until the box is scored with
+     * setScoreBox(int, int).
+     */
+    public void setRemote(boolean remote)
+    {
+        this.remote = remote;
+    }
+
+    public boolean isRemote()
+    {
+        return remote;
+    }
+
+    private void requestScore(ScoreBox box)
+    {
+        int column = box.getColumn();
+        int row = getRow(box.getHandType());
+        if (!card.isFilled(column, row)) {
+            setEnabled(false);  // until the score comes back
+            propertySupport.firePropertyChange(
+                    PROP_SCORE_REQUESTED, null, column * ScoreCard.ROWS + row);
+        }
+    }
+
+    private static int getRow(ScoreBox.HandType handType) {
         switch (handType) {
         case ONES:
-            score = hand.getCount(Hand.ONES) * 1;
-            break;
+            return ScoreCard.ONES_ROW;
         case TWOS:
-            score = hand.getCount(Hand.TWOS) * 2;
-            break;
+            return ScoreCard.TWOS_ROW;
         case THREES:
-            score = hand.getCount(Hand.THREES) * 3;
-            break;
+            return ScoreCard.THREES_ROW;
         case FOURS:
-            score = hand.getCount(Hand.FOURS) * 4;
-            break;
+            return ScoreCard.FOURS_ROW;
         case FIVES:
-            score = hand.getCount(Hand.FIVES) * 5;
-            break;
+            return ScoreCard.FIVES_ROW;
         case SIXES:
-            score = hand.getCount(Hand.SIXES) * 6;
-            break;
+            return ScoreCard.SIXES_ROW;
         case THREE_OF_A_KIND:
-            if (hand.isThreeOfAKind()) {
-                score = hand.getSum();
-            }
-            break;
+            return ScoreCard.KIND3_ROW;
         case FOUR_OF_A_KIND:
-            if (hand.isFourOfAKind()) {
-                score = hand.getSum();
-            }
-            break;
+            return ScoreCard.KIND4_ROW;
         case FULL_HOUSE:
-            if (hand.isFullHouse()) {
-                score = FULL_HOUSE_VALUE;
-            }
-            break;
+            return ScoreCard.FULL_HOUSE_ROW;
         case SHORT_STRAIGHT:
-            if (hand.isShortStraight()) {
-                score = SHORT_STRAIGHT_VALUE;
-            }
-            break;
+            return ScoreCard.SHORT_STRAIGHT_ROW;
         case LONG_STRAIGHT:
-            if (hand.isLongStraight()) {
-                score = LONG_STRAIGHT_VALUE;
-            }
-            break;
+            return ScoreCard.LONG_STRAIGHT_ROW;
         case FIVE_OF_A_KIND:
-            if (hand.isFiveOfAKind()) {
-                score = KIND5_VALUE;
-                lastBoxWasKind5 = true;
-                /* fiveOfAKindCount can only be incremented here until 
-                 * fiveOfAKindBonusEnabled becomes true */
-                ++kind5Count;
-            }
-            break;
+            return ScoreCard.KIND5_ROW;
         case CHANCE:
-            score = hand.getSum();
-            break;
+            return ScoreCard.CHANCE_ROW;
         default:
             throw new IllegalStateException("Illegal ScoreBox BoxType");
         }
-        return score;
     }
 
     public void updateGrandTotal()
     {
-        grandTotalBox.setScore(multipleOne.getScore()
-                + multipleTwo.getScore() + multipleThree.getScore());
+        grandTotalBox.setScore(card.getGrandTotal());
     }
 
-    private void processKind5Bonus()
-    {
-        ResultBox box = kind5BonusBoxes[lastBoxScored.getColumn()];
-        box.addScore(KIND5_VALUE);
-        lastKind5BonusBox = box;
-        lastBoxWasKind5 = true;
-        ++kind5Count;
+    /**
+     * Copies the state of one column of the score card to its boxes, or, if
+     * updates are being deferred, marks it to be copied in the next frame.
+     */
+    private void updateColumn(int column) {
+        if (deferringUpdates) {
+            changedColumns |= 1 << column;
+            if (!updateTimer.isRunning()) {
+                updateTimer.start();
+            }
+        } else {
+            showColumn(column);
+        }
     }
 
-    private void updateColumnOfLastBoxScored() {
-        int column = lastBoxScored.getColumn();
-        int score = lastBoxScored.getScore();
-        int upperTotal, lowerTotal;
-        if (lastBoxScored.isUpper()) {
-            int subtotal = (unDoing) ? upperSubtotalBoxes[column].subtractScore(score)
-                    : upperSubtotalBoxes[column].addScore(score);
-            int bonus = subtotal < UPPER_PAR ? 0 : UPPER_BONUS;
-            if (bonus > 0) {
-                upperBonusBoxes[column].setScore(UPPER_BONUS);
+    private void showColumn(int column) {
+        for (int row = ScoreCard.ONES_ROW; row <= ScoreCard.CHANCE_ROW; ++row) {
+            if (card.isFilled(column, row)) {
+                scoreBoxes[column][row].setScore(card.getScore(column, row));
+            } else {
+                scoreBoxes[column][row].eraseScore();
             }
-            upperTotal = upperTotalBoxes[column].setScore(subtotal + bonus);
-            lowerTotal = lowerTotalBoxes[column].getScore();
+        }
+        upperSubtotalBoxes[column].setScore(card.getUpperSubtotal(column));
+        setBonusScore(upperBonusBoxes[column], card.getUpperBonus(column));
+        upperTotalBoxes[column].setScore(card.getUpperTotal(column));
+        lowerTotalBoxes[column].setScore(card.getLowerTotal(column));
+        setBonusScore(kind5BonusBoxes[column], card.getKind5Bonus(column));
+        combinedTotalBoxes[column].setScore(card.getCombinedTotal(column));
+        multipliedTotalBoxes[column].setScore(card.getMultipliedTotal(column));
+        updateGrandTotal();
+    }
+
+    private void showChangedColumns() {
+        for (int column = 0; column < COLUMNS; ++column) {
+            if ((changedColumns & 1 << column) != 0) {
+                showColumn(column);
+            }
+        }
+        changedColumns = 0;
+    }
+
+    public boolean isDeferringUpdates() {
+        return deferringUpdates;
+    }
+
+    /**
+     * Collects the changes to the boxes and shows them all at once about a
+     * frame later, so a computer playing at full speed repaints the panel
+     * once a frame rather than once for every box. The score card, and so
+     * the scores, totals and events of the panel, are always up to date.
+     */
+    public void setDeferringUpdates(boolean deferringUpdates) {
+        this.deferringUpdates = deferringUpdates;
+        if (!deferringUpdates) {
+            updateTimer.stop();
+            showChangedColumns();
+        }
+    }
+
+    private void updateAllColumns() {
+        for (int column = 0; column < COLUMNS; ++column) {
+            updateColumn(column);
+        }
+    }
+
+    // bonus boxes are left blank until a bonus has been earned
+    private static void setBonusScore(ResultBox box, int score) {
+        if (score > 0) {
+            box.setScore(score);
         } else {
-            lowerTotal = (unDoing) ? lowerTotalBoxes[column].subtractScore(score)
-                    : lowerTotalBoxes[column].addScore(score);
-            upperTotal = upperTotalBoxes[column].getScore();
+            box.eraseScore();
         }
-        int combinedTotal = upperTotal + lowerTotal +
-                kind5BonusBoxes[column].getScore();
-        combinedTotalBoxes[column].setScore(combinedTotal);
-        int oldColumnScore = multipliedTotalBoxes[column].getScore();
-        int newColumnScore = multipliedTotalBoxes[column].setScore(
-                combinedTotal * COLUMN_MULTIPLIERS[column]);
-        grandTotalBox.addScore(newColumnScore - oldColumnScore);
     }
        
     public void reset()
     {
-        boxesScored = 0;
         gameOver = false;
-        lastBoxScored = null;
-        lastBoxWasKind5 = false;
-        lastKind5BonusBox = null;
-        kind5BonusEnabled = false;
-        kind5Count = 0;
         gameRecord = null;
-    
-        for (ScoreBox[] column : scoreBoxes) {
-            for (ScoreBox box : column) {
-                box.eraseScore();
-            }
-        }
-        for (ResultBox[] row : resultBoxes) {
-            for (ResultBox box : row) {
-                box.setScore(0);
-            }
-        }
-        lowerBonusOne.setText("");
-        lowerBonusTwo.setText("");
-        lowerBonusThree.setText("");
-        upperBonusOne.setText("");
-        upperBonusTwo.setText("");
-        upperBonusThree.setText("");
-        grandTotalBox.setScore(0);
+        card.reset();
+        updateAllColumns();
         
         unHightlightPlayerName();
 
@@ -313,60 +300,50 @@ public class ScorePanel extends JPanel implements MouseListener
     
     public void undoScoreEntered()
     {
-        if (lastBoxScored == null) {
+        if (card.getLastColumn() == ScoreCard.NONE) {
             return;
         }
-        unDoing = true;
         setGameOver(false);
-        
-        // handle five of a kind bonus, if applicable
-        if (lastBoxWasKind5) {
-            if (--kind5Count == 2) {
-                kind5BonusEnabled = false;
-            }
-            if (lastKind5BonusBox != null && lastKind5BonusBox
-                    .subtractScore(KIND5_VALUE) == 0) {
-                lastKind5BonusBox.setText("");
-            }
-        }
-
-        lastBoxWasKind5 = false;
-        updateColumnOfLastBoxScored();
-        lastBoxScored.eraseScore();
-        lastBoxScored = null;
-        unDoing = false;
-        decrementBoxesScored();
+        int oldBoxesScored = card.getBoxesScored();
+        updateColumn(card.undo());
+        propertySupport.firePropertyChange(
+                PROP_SCORE_ENTERED, oldBoxesScored, card.getBoxesScored());
     }
     
     public GameRecord getGameRecord() {
         return gameRecord;
     }
 
+    public ScoreCard getScoreCard() {
+        return card;
+    }
+
     public int getScore()
     {
-        return this.grandTotalBox.getScore();
+        return card.getGrandTotal();
     }
     
     public int getScore(int row, int column) {
-        if (row == KIND5_BONUS_ROW) {
-            return kind5BonusBoxes[column].getScore();
-        }
-        return scoreBoxes[column][row].getScore();
+        return card.getScore(column, row);
     }
     
     public int getKind5Count()
     {
-        return this.kind5Count;
+        return card.getKind5Count();
     }
 
     public void clearLastBoxScored()
     {
-        this.lastBoxScored = null;
+        card.clearLastBoxScored();
     }
 
     public ScoreBox getLastBoxScored()
     {
-        return this.lastBoxScored;
+        int column = card.getLastColumn();
+        if (column == ScoreCard.NONE) {
+            return null;
+        }
+        return scoreBoxes[column][card.getLastRow()];
     }
     
     public Font getPlayerFont() {
@@ -413,18 +390,6 @@ public class ScorePanel extends JPanel implements MouseListener
         playerName.setBorder(nameStandardBorder);
     }
 
-    private void incrementBoxesScored()
-    {
-        this.propertySupport.firePropertyChange(
-                PROP_SCORE_ENTERED, boxesScored, ++boxesScored);
-    }
-
-    private void decrementBoxesScored()
-    {
-        this.propertySupport.firePropertyChange(
-                PROP_SCORE_ENTERED, boxesScored, --boxesScored);
-    }
-
     public boolean isActive()
     {
         return active;
@@ -460,7 +425,7 @@ public class ScorePanel extends JPanel implements MouseListener
     }
     
     public boolean isGameInProgress() {
-        return !gameOver && boxesScored > 0;
+        return !gameOver && card.getBoxesScored() > 0;
     }
 
     public void setGameOver(boolean gameOver)
@@ -478,162 +443,21 @@ public class ScorePanel extends JPanel implements MouseListener
     }
     
     public int[] getInts() {
-        int[] array = new int[5];     
-        int ones = 0;
-        int fours = 0;
-        int kind3 = 0;
-        int kind4 = 0;
-        int chance = 0;
-        int count = 0;
-        
-        for (int col = 0; col < COLUMNS; ++col) {
-            // ones, twos, threes
-            for (int row = ONES_ROW; row <= THREES_ROW; ++row) {
-                count = scoreBoxes[col][row].getScore() / (row + 1);
-                ones = ones << COUNT_SHIFT | count;
-            }
-            // fours, fives, sixes
-            for (int row = FOURS_ROW; row <= SIXES_ROW; ++row) {
-                count = scoreBoxes[col][row].getScore() / (row + 1);
-                fours = fours << COUNT_SHIFT | count;
-            }
-            // three of a kind
-            kind3 = kind3 << VALUE_SHIFT | scoreBoxes[col][KIND3_ROW].getScore();
-            // four of a kind, full house, short/long straights, five of a kind
-            kind4 = kind4 << VALUE_SHIFT | scoreBoxes[col][KIND4_ROW].getScore();
-            for (int row = FULL_HOUSE_ROW; row <= KIND5_ROW; ++row) {
-                kind4 = kind4 << 1 | (scoreBoxes[col][row].getScore() > 0 ? TRUE : FALSE);
-            }
-            // chance, five of a kind bonus
-            chance = chance << VALUE_SHIFT |scoreBoxes[col][CHANCE_ROW].getScore();
-            chance = chance << BONUS_SHIFT |
-                    (kind5BonusBoxes[col].getScore() /
-                            ScoreConstants.KIND5_VALUE);
-        }
-        array[ONES_TWOS_THREES] = ones;
-        array[FOURS_FIVES_SIXES] = fours;
-        array[KIND3] = kind3;
-        array[KIND4_FULL_SHORT_LONG_KIND5] = kind4;
-        array[CHANCE_BONUS] = chance;
-        
-        return array;
+        return card.getInts();
     }
     
     public void setStateFromGameRecord(GameRecord record) {
         reset();
         this.gameRecord = record;
         setPlayerName(record.getName());
-        int[] ints = record.getInts();
-        int ones = ints[ONES_TWOS_THREES];
-        int fours = ints[FOURS_FIVES_SIXES];
-        int kind3 = ints[KIND3];
-        int kind4 = ints[KIND4_FULL_SHORT_LONG_KIND5];
-        int chance = ints[CHANCE_BONUS];
-
-        for (int col = COLUMNS - 1; col >= 0; --col) {
-            // threes, twos, ones
-            for (int row = THREES_ROW; row >= ONES_ROW; --row) {
-                scoreBoxes[col][row].setScore((ones & COUNT_MASK) * (row + 1));
-                ones >>= COUNT_SHIFT;
-            }
-            // sixes, fives, fourse
-            for (int row = SIXES_ROW; row >= FOURS_ROW; --row) {
-                scoreBoxes[col][row].setScore((fours & COUNT_MASK) * (row + 1));
-                fours >>= COUNT_SHIFT;
-            }
-            // three of a kind
-            scoreBoxes[col][KIND3_ROW].setScore(kind3 & VALUE_MASK);
-            kind3 >>= VALUE_SHIFT;
-            // five of a kind, long/short straights, full house, four of a kind
-            int score = 0;
-            for (int row = KIND5_ROW; row >= FULL_HOUSE_ROW; --row) {
-                if ((kind4 & TRUE) == TRUE) {
-                    switch(row) {
-                    case FULL_HOUSE_ROW:
-                        score = FULL_HOUSE_VALUE;
-                        break;
-                    case SHORT_STRAIGHT_ROW:
-                        score = SHORT_STRAIGHT_VALUE;
-                        break;
-                    case LONG_STRAIGHT_ROW:
-                        score = LONG_STRAIGHT_VALUE;
-                        break;
-                    case KIND5_ROW:
-                        score = KIND5_VALUE;
-                        break;
-                    }
-                    scoreBoxes[col][row].setScore(score);
-                } else {
-                    scoreBoxes[col][row].setScore(0);
-                }
-                kind4 >>= 1;
-            }
-            scoreBoxes[col][KIND4_ROW].setScore(kind4 & VALUE_MASK);
-            kind4 >>= VALUE_SHIFT;
-            // five of a kind bonus, chance
-            int count = chance & BONUS_MASK;
-            if (count > 0) {
-                kind5BonusBoxes[col].setScore(count * KIND5_VALUE);
-            }
-            chance >>= BONUS_SHIFT;
-            scoreBoxes[col][CHANCE_ROW].setScore(chance & VALUE_MASK);
-            chance >>= VALUE_SHIFT;
-        }
-        restoreResultBoxes();
-    }
-      
-    private void restoreResultBoxes() {
-        
-        for (int column = 0; column < 3; ++column) {
-            // set upper column
-            for (int row = ONES_ROW; row <= SIXES_ROW; ++row) {
-                upperSubtotalBoxes[column]
-                        .addScore(scoreBoxes[column][row].getScore());
-            }
-            int upperTotal = upperSubtotalBoxes[column].getScore();
-            if (upperTotal >= UPPER_PAR) {
-                upperTotal += upperBonusBoxes[column].addScore(UPPER_BONUS);
-            }
-            upperTotalBoxes[column].setScore(upperTotal);
-            
-            // set lower column
-            for (int row = KIND3_ROW; row <= CHANCE_ROW; ++row) {
-                lowerTotalBoxes[column]
-                        .addScore(scoreBoxes[column][row].getScore());
-            }
-                     
-            // set the combined total and multiplied total and add them to grand total
-            int total = upperTotal + lowerTotalBoxes[column].getScore() +
-                    kind5BonusBoxes[column].getScore();
-            grandTotalBox.addScore(
-                    multipliedTotalBoxes[column].addScore(
-                            COLUMN_MULTIPLIERS[column] * 
-                            combinedTotalBoxes[column].addScore(total)));
-        }
-        
+        card.setInts(record.getInts());
+        updateAllColumns();
     }
     
     public void doDummyGame() {
         setGameOver(false);
-        Random random = new Random();
-        for (int col = 0; col < COLUMNS; ++col) {
-            for (int row = ONES_ROW; row <= SIXES_ROW; ++row) {
-                scoreBoxes[col][row].setScore((random.nextInt(5) + 1) * (row + 1));
-            }
-            scoreBoxes[col][KIND3_ROW].setScore(random.nextInt(31));
-            scoreBoxes[col][KIND4_ROW].setScore(random.nextInt(31));
-            scoreBoxes[col][CHANCE_ROW].setScore(random.nextInt(31));
-            scoreBoxes[col][FULL_HOUSE_ROW].setScore(random.nextDouble() < 0.7 ? FULL_HOUSE_VALUE : 0);
-            scoreBoxes[col][SHORT_STRAIGHT_ROW].setScore(random.nextDouble() < 0.7 ? SHORT_STRAIGHT_VALUE : 0);
-            scoreBoxes[col][LONG_STRAIGHT_ROW].setScore(random.nextDouble() < 0.7 ? LONG_STRAIGHT_VALUE : 0);
-            scoreBoxes[col][KIND5_ROW].setScore(random.nextDouble() < 0.5 ? KIND5_VALUE : 0);
-        }
-        restoreResultBoxes();
-        for (int col = 0; col < COLUMNS; ++col) {
-            if (scoreBoxes[col][KIND5_ROW].getScore() > 0) {
-                ++kind5Count;
-            }
-        }
+        card.doDummyGame(DiceRandom.current());
+        updateAllColumns();
         setGameOver(true);
         
     }
@@ -659,7 +483,11 @@ public class ScorePanel extends JPanel implements MouseListener
             Component component
                     = SwingUtilities.getDeepestComponentAt(this, evt.getX(), evt.getY());
             try {
-                setScoreBox((ScoreBox) component);
+                if (remote) {
+                    requestScore((ScoreBox) component);
+                } else {
+                    setScoreBox((ScoreBox) component);
+                }
             } catch (ClassCastException ex) {
                 // do nothing, component simply wasn't a ScoreBox
             }
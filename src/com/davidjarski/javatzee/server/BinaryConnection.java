@@ -0,0 +1,256 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A client of the GameServer on the binary protocol, served by a
+ * BinaryServer. Reading, writing and closing happen on the selector's
+ * thread; frames can be sent to it from any thread.
+ */
+class BinaryConnection implements Client
+{
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final GameServer server;
+    private final BinaryServer selector;
+    private final ByteBuffer input = ByteBuffer.allocate(2 * Protocol.MAX_FRAME_LENGTH);
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+    private Table table;  // the table the connection is seated at, if any
+    private int seat;
+
+    BinaryConnection(SocketChannel channel, SelectionKey key, GameServer server,
+            BinaryServer selector)
+    {
+        this.channel = channel;
+        this.key = key;
+        this.server = server;
+        this.selector = selector;
+    }
+
+    /**
+     * Reads what has arrived and handles every whole frame in it.
+     */
+    void read()
+    {
+        int count;
+        try {
+            count = channel.read(input);
+        } catch (IOException ex) {
+            count = -1;
+        }
+        if (count < 0) {
+            close();
+            return;
+        }
+        input.flip();
+        ByteBuffer frame;
+        while (!closed && (frame = Protocol.nextFrame(input)) != null) {
+            try {
+                handle(frame);
+            } catch (BufferUnderflowException ex) {
+                sendError(Protocol.BAD_FRAME);
+            }
+        }
+        input.compact();
+    }
+
+    private void handle(ByteBuffer frame)
+    {
+        switch (frame.get()) {
+        case Protocol.JOIN:
+            if (frame.get() != Protocol.VERSION) {
+                sendError(Protocol.BAD_VERSION);
+                return;
+            }
+            String name = Protocol.getString(frame);
+            if (getTable() != null) {
+                sendError(Protocol.ALREADY_SEATED);
+            } else if (name.isEmpty() || name.length() > Protocol.MAX_NAME_LENGTH) {
+                sendError(Protocol.BAD_NAME);
+            } else {
+                server.seat(this, name);
+            }
+            break;
+        case Protocol.ROLL:
+            if (!post(Table.Move.ROLL, frame.get() & PackedHand.ALL_DICE, 0)) {
+                sendError(Protocol.NOT_SEATED);
+            }
+            break;
+        case Protocol.SCORE:
+            int box = frame.get() & 0xFF;
+            if (!post(Table.Move.SCORE, box / ScoreCard.ROWS, box % ScoreCard.ROWS)) {
+                sendError(Protocol.NOT_SEATED);
+            }
+            break;
+        case Protocol.QUIT:
+            close();
+            break;
+        default:
+            sendError(Protocol.BAD_FRAME);
+        }
+    }
+
+    /**
+     * Passes a move on to the connection's table.
+     *
+     * @return false if the connection isn't seated
+     */
+    private synchronized boolean post(int type, int first, int second)
+    {
+        if (table == null) {
+            return false;
+        }
+        table.post(new Table.Move(seat, type, first, second));
+        return true;
+    }
+
+    synchronized Table getTable()
+    {
+        return table;
+    }
+
+    @Override
+    public synchronized void setTable(Table table, int seat)
+    {
+        this.table = table;
+        this.seat = seat;
+    }
+
+    /**
+     * Closes the channel and leaves the table, once.
+     */
+    void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // nothing more to say to the client anyway
+        }
+        post(Table.Move.LEAVE, 0, 0);
+    }
+
+    /**
+     * Called on the selector's thread when frames have been queued.
+     */
+    void startWriting()
+    {
+        if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes as many of the queued frames as the channel will take, and
+     * stops asking to write once they are all gone.
+     */
+    void write()
+    {
+        try {
+            ByteBuffer frame;
+            while ((frame = output.peek()) != null) {
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                output.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException ex) {
+            close();
+        }
+    }
+
+    private void send(ByteBuffer frame)
+    {
+        if (!closed) {
+            output.add(frame);
+            selector.requestWrite(this);
+        }
+    }
+
+    @Override
+    public void sendSeated(int table, int seat, int seats)
+    {
+        send(Protocol.seated(table, seat, seats));
+    }
+
+    @Override
+    public void sendPlayer(int seat, String name)
+    {
+        send(Protocol.player(seat, name));
+    }
+
+    @Override
+    public void sendTurn(int seat)
+    {
+        send(Protocol.turn(seat));
+    }
+
+    @Override
+    public void sendRolled(int seat, int lockedMask, int hand, int rollsLeft)
+    {
+        send(Protocol.rolled(Protocol.packRoll(seat, rollsLeft, lockedMask,
+                PackedHand.getFaceCode(hand))));
+    }
+
+    @Override
+    public void sendScored(int seat, int column, int row, int score, int total)
+    {
+        send(Protocol.scored(Protocol.packScore(seat, column, row, score, total)));
+    }
+
+    @Override
+    public void sendLeft(int seat)
+    {
+        send(Protocol.left(seat));
+    }
+
+    @Override
+    public void sendOver(int[] totals)
+    {
+        send(Protocol.over(totals));
+    }
+
+    @Override
+    public void sendError(int code)
+    {
+        send(Protocol.error(code));
+    }
+}
@@ -0,0 +1,136 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the binary protocol of a GameServer on a single thread, with one
+ * selector for every client, so an idle player costs a channel and a pair
+ * of buffers rather than a thread.
+ * <p>
+ * Frames from the clients are decoded on the selector's thread and passed
+ * on to their tables. The tables' threads queue their frames on the
+ * connections and ask the selector to write them, so the channels
+ * themselves are only ever touched by the selector's thread.
+ */
+class BinaryServer implements Runnable
+{
+    private static final Logger LOGGER = Logger.getLogger(BinaryServer.class.getName());
+    private static final long SELECT_TIMEOUT = 1000;  // to notice a closed channel
+
+    private final GameServer server;
+    private final ServerSocketChannel channel;
+    private final Selector selector;
+    private final Queue<BinaryConnection> writing = new ConcurrentLinkedQueue<>();
+
+    BinaryServer(GameServer server, ServerSocketChannel channel) throws IOException
+    {
+        this.server = server;
+        this.channel = channel;
+        selector = Selector.open();
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Serves clients until the server channel is closed.
+     */
+    @Override
+    public void run()
+    {
+        try {
+            while (channel.isOpen()) {
+                selector.select(SELECT_TIMEOUT);
+                BinaryConnection connection;
+                while ((connection = writing.poll()) != null) {
+                    connection.startWriting();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    connection = (BinaryConnection)key.attachment();
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof BinaryConnection) {
+                    ((BinaryConnection)key.attachment()).close();
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private void accept() throws IOException
+    {
+        SocketChannel client = channel.accept();
+        if (client == null) {
+            return;
+        }
+        client.configureBlocking(false);
+        client.socket().setTcpNoDelay(true);
+        SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+        key.attach(new BinaryConnection(client, key, server, this));
+    }
+
+    /**
+     * Asks the selector's thread to write the connection's queued frames.
+     */
+    void requestWrite(BinaryConnection connection)
+    {
+        writing.add(connection);
+        selector.wakeup();
+    }
+}
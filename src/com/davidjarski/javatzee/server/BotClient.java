@@ -0,0 +1,202 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.strategy.Decision;
+import com.davidjarski.javatzee.strategy.Strategies;
+import com.davidjarski.javatzee.strategy.Strategy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A scripted client for the GameServer, which joins a table and plays one
+ * game with a strategy, for trying out the server on one machine.
+ */
+public class BotClient implements Runnable
+{
+    private static final Logger LOGGER = Logger.getLogger(BotClient.class.getName());
+
+    private final int port;
+    private final String name;
+    private final Strategy strategy;
+    private final ScoreCard card = new ScoreCard();
+    private int seat = -1;
+    private int hand;
+    private int finalScore = -1;
+    private int errorCount;
+
+    public BotClient(int port, String name, Strategy strategy)
+    {
+        this.port = port;
+        this.name = name;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public void run()
+    {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                        socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            socket.setTcpNoDelay(true);
+            out.println("JOIN " + name);
+            String line;
+            while (finalScore < 0 && (line = in.readLine()) != null) {
+                handle(line.split(" "), out);
+            }
+            out.println("QUIT");
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void handle(String[] words, PrintWriter out)
+    {
+        switch (words[0]) {
+        case "SEATED":
+            seat = Integer.parseInt(words[2]);
+            break;
+        case "TURN":
+            if (Integer.parseInt(words[1]) == seat) {
+                out.println("ROLL 0");
+            }
+            break;
+        case "ROLLED":
+            int[] faces = new int[PackedHand.DICE_COUNT];
+            for (int die = 0; die < faces.length; ++die) {
+                faces[die] = words[2].charAt(die) - '0';
+            }
+            hand = PackedHand.of(faces);
+            if (Integer.parseInt(words[1]) == seat) {
+                Decision decision = strategy.decide(card, hand, Integer.parseInt(words[3]));
+                if (decision.isScore()) {
+                    out.println("SCORE " + decision.getColumn() + " " + decision.getRow());
+                } else {
+                    out.println("ROLL " + decision.getKeepMask());
+                }
+            }
+            break;
+        case "SCORED":
+            if (Integer.parseInt(words[1]) == seat) {
+                card.score(Integer.parseInt(words[2]), Integer.parseInt(words[3]),
+                        PackedHand.classify(hand));
+            }
+            break;
+        case "OVER":
+            finalScore = Integer.parseInt(words[seat + 1]);
+            break;
+        case "ERROR":
+            ++errorCount;
+            LOGGER.log(Level.WARNING, "{0}: {1}", new Object[]{name, String.join(" ", words)});
+            break;
+        }
+    }
+
+    /**
+     * @return the score at the end of the game, or -1 if it didn't finish
+     */
+    public int getFinalScore()
+    {
+        return finalScore;
+    }
+
+    public int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * Usage: BotClient [clients [port [strategy [seats]]]]
+     * <p>
+     * Plays a game with each of the clients, all at once, against the server
+     * on the port of this machine. With no port, a server with tables of the
+     * given number of seats is started in this JVM, without saving the games.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        String strategyName = args.length > 2 ? args[2] : Strategies.GREEDY;
+        int seats = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_SEATS;
+
+        GameServer server = null;
+        ServerSocket socket = null;
+        if (port == 0) {
+            GameServer serving = new GameServer(seats, GameServer.DEFAULT_MOVE_TIMEOUT, false);
+            ServerSocket listening = new ServerSocket(0, clients, InetAddress.getLoopbackAddress());
+            GameServer.startThread("Server", () -> serving.serve(listening));
+            server = serving;
+            socket = listening;
+            port = socket.getLocalPort();
+        }
+        Strategy strategy = Strategies.create(strategyName);
+        List<BotClient> bots = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; ++i) {
+            BotClient bot = new BotClient(port, "Bot " + i, strategy);
+            bots.add(bot);
+            threads.add(GameServer.startThread("Bot " + i, bot));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int finished = 0;
+        long total = 0;
+        int errors = 0;
+        for (BotClient bot : bots) {
+            if (bot.getFinalScore() >= 0) {
+                ++finished;
+                total += bot.getFinalScore();
+            }
+            errors += bot.getErrorCount();
+        }
+        System.out.printf("%d of %d clients finished in %.1f s, mean score %.1f, %d errors%n",
+                finished, clients, seconds, finished == 0 ? 0.0 : (double)total / finished,
+                errors);
+        if (server != null) {
+            System.out.printf("%d tables, %d games finished, %s%n", server.getTableCount(),
+                    server.getFinishedCount(), GameServer.isUsingVirtualThreads()
+                            ? "virtual threads" : "platform threads");
+            socket.close();
+        }
+    }
+}
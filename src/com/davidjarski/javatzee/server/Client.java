@@ -0,0 +1,65 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+/**
+ * A player's connection, as its table sees it. The table tells each client
+ * what happens at the table through these methods, and every kind of
+ * connection sends it on in its own protocol, so players on the line
+ * protocol and players on the binary protocol can share a table.
+ * <p>
+ * The send methods may be called from any thread, and must not block for
+ * long; they quietly do nothing once the client has gone.
+ */
+interface Client
+{
+    /**
+     * Called by the table when the client is seated, and with null when its
+     * game is over.
+     */
+    void setTable(Table table, int seat);
+
+    void sendSeated(int table, int seat, int seats);
+
+    void sendPlayer(int seat, String name);
+
+    void sendTurn(int seat);
+
+    /**
+     * @param lockedMask the dice that were kept
+     * @param hand the dice after the roll, as a PackedHand
+     */
+    void sendRolled(int seat, int lockedMask, int hand, int rollsLeft);
+
+    void sendScored(int seat, int column, int row, int score, int total);
+
+    void sendLeft(int seat);
+
+    void sendOver(int[] totals);
+
+    /**
+     * @param code one of the error codes of Protocol
+     */
+    void sendError(int code);
+}
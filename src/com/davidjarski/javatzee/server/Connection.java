@@ -0,0 +1,258 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A client of the GameServer on the line protocol. Its lines are read on
+ * the connection's own thread and passed on to its table as moves. Lines
+ * can be sent to it from any thread; they are queued and written by a
+ * second thread, so a client that stops reading can't hold up its table.
+ * A client that falls too far behind is dropped.
+ */
+class Connection implements Runnable, Client
+{
+    private static final int MAX_NAME_LENGTH = Protocol.MAX_NAME_LENGTH;
+    /**
+     * The most lines that can wait to be written, several games' worth.
+     */
+    private static final int MAX_QUEUED_LINES = 4096;
+    private static final String END = new String();  // queued to stop the writer
+
+
+    private final Socket socket;
+    private final GameServer server;
+    private final Writer writer;
+    private final BlockingQueue<String> outbox = new LinkedBlockingQueue<>(MAX_QUEUED_LINES);
+    private Table table;  // the table the connection is seated at, if any
+    private int seat;
+
+    Connection(Socket socket, GameServer server) throws IOException
+    {
+        this.socket = socket;
+        this.server = server;
+        writer = new BufferedWriter(new OutputStreamWriter(
+                socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void run()
+    {
+        GameServer.startThread("Writer " + socket.getPort(), this::write);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && handle(line.trim())) {
+            }
+        } catch (IOException ex) {
+            // the client went away, which the table hears about below
+        } finally {
+            post(Table.Move.LEAVE, 0, 0);
+            outbox.offer(END);
+            close();
+        }
+    }
+
+    /**
+     * Writes the queued lines until the connection is closed, on the
+     * writing thread.
+     */
+    private void write()
+    {
+        try {
+            String line;
+            while ((line = outbox.take()) != END) {
+                writer.write(line);
+                writer.write('\n');
+                if (outbox.isEmpty()) {
+                    writer.flush();
+                }
+            }
+        } catch (IOException ex) {
+            // the client has gone, or was dropped
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        close();
+    }
+
+    /**
+     * Closes the socket, which stops both threads of the connection.
+     */
+    private void close()
+    {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // nothing more to say to the client
+        }
+    }
+
+    /**
+     * @return false once the client has quit
+     */
+    private boolean handle(String line)
+    {
+        String[] words = line.split("\\s+", 2);
+        String[] args = words.length > 1 ? words[1].split("\\s+") : new String[0];
+        try {
+            switch (words[0]) {
+            case "JOIN":
+                if (getTable() != null) {
+                    sendError(Protocol.ALREADY_SEATED);
+                } else if (words.length < 2 || words[1].length() > MAX_NAME_LENGTH) {
+                    sendError(Protocol.BAD_NAME);
+                } else {
+                    server.seat(this, words[1]);
+                }
+                break;
+            case "ROLL":
+                int lockedMask = Integer.parseInt(args[0]);
+                if (lockedMask < 0 || lockedMask > PackedHand.ALL_DICE) {
+                    send("ERROR Bad arguments: " + line);
+                } else if (!post(Table.Move.ROLL, lockedMask, 0)) {
+                    sendError(Protocol.NOT_SEATED);
+                }
+                break;
+            case "SCORE":
+                if (!post(Table.Move.SCORE, Integer.parseInt(args[0]),
+                        Integer.parseInt(args[1]))) {
+                    sendError(Protocol.NOT_SEATED);
+                }
+                break;
+            case "QUIT":
+                return false;
+            default:
+                send("ERROR Unknown command: " + words[0]);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            send("ERROR Bad arguments: " + line);
+        }
+        return true;
+    }
+
+    /**
+     * Passes a move on to the connection's table.
+     *
+     * @return false if the connection isn't seated
+     */
+    private synchronized boolean post(int type, int first, int second)
+    {
+        if (table == null) {
+            return false;
+        }
+        table.post(new Table.Move(seat, type, first, second));
+        return true;
+    }
+
+    synchronized Table getTable()
+    {
+        return table;
+    }
+
+    @Override
+    public synchronized void setTable(Table table, int seat)
+    {
+        this.table = table;
+        this.seat = seat;
+    }
+
+    @Override
+    public void sendSeated(int table, int seat, int seats)
+    {
+        send("SEATED " + table + " " + seat + " " + seats);
+    }
+
+    @Override
+    public void sendPlayer(int seat, String name)
+    {
+        send("PLAYER " + seat + " " + name);
+    }
+
+    @Override
+    public void sendTurn(int seat)
+    {
+        send("TURN " + seat);
+    }
+
+    @Override
+    public void sendRolled(int seat, int lockedMask, int hand, int rollsLeft)
+    {
+        StringBuilder faces = new StringBuilder();
+        for (int die = 0; die < PackedHand.DICE_COUNT; ++die) {
+            faces.append(PackedHand.getFace(hand, die));
+        }
+        send("ROLLED " + seat + " " + faces + " " + rollsLeft);
+    }
+
+    @Override
+    public void sendScored(int seat, int column, int row, int score, int total)
+    {
+        send("SCORED " + seat + " " + column + " " + row + " " + score + " " + total);
+    }
+
+    @Override
+    public void sendLeft(int seat)
+    {
+        send("LEFT " + seat);
+    }
+
+    @Override
+    public void sendOver(int[] totals)
+    {
+        StringBuilder over = new StringBuilder("OVER");
+        for (int total : totals) {
+            over.append(' ').append(total);
+        }
+        send(over.toString());
+    }
+
+    @Override
+    public void sendError(int code)
+    {
+        send("ERROR " + Protocol.getErrorMessage(code));
+    }
+
+    /**
+     * Queues a line for the client, quietly dropping it if the client has
+     * gone. A client with a full queue isn't reading, and is dropped.
+     */
+    void send(String line)
+    {
+        if (!socket.isClosed() && !outbox.offer(line)) {
+            close();  // the reading thread finds out and leaves the table
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.IO.HistoryIO;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A headless server for many tables of Triple Javatzee at once. Clients
+ * connect over TCP and join with a name; they are seated in order at the
+ * table that is filling up, and the table's game starts as soon as every
+ * seat is taken.
+ * <p>
+ * Every connection and every table runs on its own thread, and all of them
+ * simply block while they wait. Where the Java runtime has virtual threads
+ * they are used, so a single server can hold thousands of tables; on older
+ * runtimes ordinary daemon threads are used instead, which is plenty for a
+ * few hundred.
+ * <p>
+ * The protocol is made of lines of text. A client sends:
+ * <pre>
+ *     JOIN name            take a seat at the next table
+ *     ROLL lockedMask      roll the dice, with bit i set to keep die i
+ *     SCORE column row     score the hand in a box, numbered as in ScoreCard
+ *     QUIT
+ * </pre>
+ * and is sent:
+ * <pre>
+ *     SEATED table seat seats
+ *     PLAYER seat name     one for each seat, once the table is full
+ *     TURN seat
+ *     ROLLED seat faces rollsLeft
+ *     SCORED seat column row score total
+ *     LEFT seat
+ *     OVER total...        after which the client may join another table
+ *     ERROR message
+ * </pre>
+ * The faces of the dice are sent as five digits. Clients that would rather
+ * not parse text can connect to a second port instead, where the same
+ * messages are sent as the compact frames described in Protocol; players on
+ * either port are seated at the same tables. If a player takes longer
+ * than the move timeout, or has left, the table makes the move for them.
+ * Finished games are saved to the history through HistoryIO.
+ */
+public class GameServer
+{
+    public static final int DEFAULT_PORT = 7417;
+    public static final int DEFAULT_BINARY_PORT = 7418;
+    public static final int DEFAULT_SEATS = 2;
+    public static final long DEFAULT_MOVE_TIMEOUT = 30000;  // milliseconds
+
+    private static final Logger LOGGER = Logger.getLogger(GameServer.class.getName());
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_START;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method start = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            start = builder.getMethod("start", Runnable.class);
+        } catch (ReflectiveOperationException ex) {
+            // no virtual threads before Java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_START = start;
+    }
+
+    private final int seats;
+    private final long moveTimeout;
+    private final boolean saving;
+    private final AtomicInteger tableCount = new AtomicInteger();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private Table filling;  // the table waiting for players
+
+    /**
+     * @param seats the number of players at each table, 1 to 4
+     * @param moveTimeout the longest a player has for each move, in
+     * milliseconds
+     * @param saving true to save finished games to the history
+     */
+    public GameServer(int seats, long moveTimeout, boolean saving)
+    {
+        if (seats < 1 || seats > 4) {
+            throw new IllegalArgumentException("A table has 1 to 4 seats");
+        }
+        this.seats = seats;
+        this.moveTimeout = moveTimeout;
+        this.saving = saving;
+    }
+
+    /**
+     * Accepts connections until the socket is closed.
+     */
+    public void serve(ServerSocket server)
+    {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                startThread("Connection " + socket.getPort(), new Connection(socket, this));
+            } catch (SocketException ex) {
+                // closed
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Serves clients of the binary protocol on a single thread, until the
+     * channel is closed.
+     */
+    public void serveBinary(ServerSocketChannel channel) throws IOException
+    {
+        new BinaryServer(this, channel).run();
+    }
+
+    /**
+     * Seats the client at the table that is filling up, and starts the
+     * table once it is full and every player has been sent their seat.
+     */
+    void seat(Client client, String name)
+    {
+        Table table;
+        int seat;
+        synchronized (this) {
+            if (filling == null) {
+                filling = new Table(tableCount.incrementAndGet(), seats, moveTimeout, this);
+            }
+            table = filling;
+            seat = table.seat(client, name);
+            if (table.isFull()) {
+                filling = null;
+            }
+        }
+        // outside the lock, so that a slow client can't hold up the seating
+        client.sendSeated(table.getId(), seat, seats);
+        if (table.handleSeatSent()) {
+            startThread("Table " + table.getId(), table);
+        }
+    }
+
+    void handleGameOver(Table table)
+    {
+        finishedCount.incrementAndGet();
+        if (saving) {
+            HistoryIO.write(table.getGameRecords());
+        }
+    }
+
+    /**
+     * @return the number of tables opened so far
+     */
+    public int getTableCount()
+    {
+        return tableCount.get();
+    }
+
+    /**
+     * @return the number of games played to the end so far
+     */
+    public int getFinishedCount()
+    {
+        return finishedCount.get();
+    }
+
+    /**
+     * @return true if the tables and connections run on virtual threads
+     */
+    public static boolean isUsingVirtualThreads()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Starts the task on a virtual thread where the runtime has them, and on
+     * a daemon thread otherwise.
+     */
+    static Thread startThread(String name, Runnable task)
+    {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread)BUILDER_START.invoke(builder, task);
+            } catch (ReflectiveOperationException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Usage: GameServer [port [seats [timeout [binaryPort]]]]
+     * <p>
+     * The timeout is in milliseconds. Try it out with BotClient, or with
+     * the game window's network games on the binary port.
+     */
+    public static void main(String[] args)
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int seats = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SEATS;
+        long timeout = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MOVE_TIMEOUT;
+        int binaryPort = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BINARY_PORT;
+        GameServer server = new GameServer(seats, timeout, true);
+        try (ServerSocket socket = new ServerSocket(port);
+                ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(binaryPort));
+            startThread("Binary Server", () -> {
+                try {
+                    server.serveBinary(channel);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, null, ex);
+                }
+            });
+            System.out.printf("Serving tables of %d on port %d (binary %d), %s%n", seats,
+                    socket.getLocalPort(), channel.socket().getLocalPort(),
+                    isUsingVirtualThreads() ? "with virtual threads" : "with platform threads");
+            server.serve(socket);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+    }
+}
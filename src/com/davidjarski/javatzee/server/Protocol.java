@@ -0,0 +1,322 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol of the GameServer, for clients such as the game
+ * window that would rather not parse lines of text.
+ * <p>
+ * Every frame starts with a byte giving the length of the rest of the frame,
+ * followed by a byte for its type and then the payload, so no frame is
+ * longer than 256 bytes. A client sends:
+ * <pre>
+ *     JOIN     version, then the name in UTF-8
+ *     ROLL     the locked mask, bit i set to keep die i
+ *     SCORE    the box, column * ScoreCard.ROWS + row
+ *     QUIT
+ * </pre>
+ * and is sent:
+ * <pre>
+ *     SEATED   table (int), seat and seats (one byte, 4 bits each)
+ *     PLAYER   seat, then the name in UTF-8
+ *     TURN     seat
+ *     ROLLED   a packed roll in 3 bytes
+ *     SCORED   a packed score in 4 bytes
+ *     LEFT     seat
+ *     OVER     the total of each seat (short)
+ *     ERROR    one of the error codes
+ * </pre>
+ * Rolls and scores are bit-packed the way ScoreCard packs its boxes. A roll
+ * holds the seat (2 bits), the rolls left (2 bits), the locked mask (5 bits)
+ * and the face code of the dice from PackedHand (13 bits); a score holds
+ * the seat (2 bits), the box (6 bits), the score entered (6 bits) and the
+ * player's grand total (16 bits). The server rolls all the dice, so clients
+ * only ever send which dice to keep.
+ */
+public class Protocol
+{
+    public static final int VERSION = 1;
+    public static final int MAX_FRAME_LENGTH = 256;
+
+    // client to server
+    public static final int JOIN = 1;
+    public static final int ROLL = 2;
+    public static final int SCORE = 3;
+    public static final int QUIT = 4;
+
+    // server to client
+    public static final int SEATED = 16;
+    public static final int PLAYER = 17;
+    public static final int TURN = 18;
+    public static final int ROLLED = 19;
+    public static final int SCORED = 20;
+    public static final int LEFT = 21;
+    public static final int OVER = 22;
+    public static final int ERROR = 23;
+
+    // error codes
+    public static final int NOT_YOUR_TURN = 1;
+    public static final int NO_ROLL_LEFT = 2;
+    public static final int NO_SUCH_BOX = 3;
+    public static final int NOT_ROLLED = 4;
+    public static final int BOX_FILLED = 5;
+    public static final int NOT_SEATED = 6;
+    public static final int ALREADY_SEATED = 7;
+    public static final int BAD_NAME = 8;
+    public static final int BAD_FRAME = 9;
+    public static final int BAD_VERSION = 10;
+
+    public static final int MAX_NAME_LENGTH = 20;
+
+    private static final String[] ERROR_MESSAGES = {
+        "Unknown error",
+        "Not your turn",
+        "No roll left",
+        "No such box",
+        "The dice haven't been rolled",
+        "The box is already filled",
+        "Not seated",
+        "Already seated",
+        "A name of 1 to " + MAX_NAME_LENGTH + " characters is needed",
+        "Bad frame",
+        "Unsupported protocol version"
+    };
+
+    private static final int SEAT_SHIFT = 2;
+    private static final int ROLLS_SHIFT = 2;
+    private static final int MASK_SHIFT = 5;
+    private static final int FACE_CODE_SHIFT = 13;
+    private static final int BOX_SHIFT = 6;
+    private static final int SCORE_SHIFT = 6;
+    private static final int TOTAL_SHIFT = 16;
+    private static final int SEATS_SHIFT = 4;
+
+    private static final int SEAT_MASK = 0x03;
+    private static final int ROLLS_MASK = 0x03;
+    private static final int LOCKED_MASK = 0x1F;
+    private static final int FACE_CODE_MASK = 0x1FFF;
+    private static final int BOX_MASK = 0x3F;
+    private static final int SCORE_MASK = 0x3F;
+    private static final int TOTAL_MASK = 0xFFFF;
+    private static final int SEATS_MASK = 0x0F;
+
+    private Protocol() { }
+
+    public static String getErrorMessage(int code)
+    {
+        return code > 0 && code < ERROR_MESSAGES.length
+                ? ERROR_MESSAGES[code] : ERROR_MESSAGES[0];
+    }
+
+    public static int packRoll(int seat, int rollsLeft, int lockedMask, int faceCode)
+    {
+        int roll = seat & SEAT_MASK;
+        roll = roll << ROLLS_SHIFT | rollsLeft & ROLLS_MASK;
+        roll = roll << MASK_SHIFT | lockedMask & LOCKED_MASK;
+        return roll << FACE_CODE_SHIFT | faceCode & FACE_CODE_MASK;
+    }
+
+    public static int getRollSeat(int roll)
+    {
+        return roll >> (FACE_CODE_SHIFT + MASK_SHIFT + ROLLS_SHIFT) & SEAT_MASK;
+    }
+
+    public static int getRollsLeft(int roll)
+    {
+        return roll >> (FACE_CODE_SHIFT + MASK_SHIFT) & ROLLS_MASK;
+    }
+
+    public static int getLockedMask(int roll)
+    {
+        return roll >> FACE_CODE_SHIFT & LOCKED_MASK;
+    }
+
+    /**
+     * @return the faces of the dice, as in PackedHand.getFaceCode()
+     */
+    public static int getFaceCode(int roll)
+    {
+        return roll & FACE_CODE_MASK;
+    }
+
+    public static int packScore(int seat, int column, int row, int score, int total)
+    {
+        int packed = seat & SEAT_MASK;
+        packed = packed << BOX_SHIFT | (column * ScoreCard.ROWS + row) & BOX_MASK;
+        packed = packed << SCORE_SHIFT | score & SCORE_MASK;
+        return packed << TOTAL_SHIFT | total & TOTAL_MASK;
+    }
+
+    public static int getScoreSeat(int packed)
+    {
+        return packed >> (TOTAL_SHIFT + SCORE_SHIFT + BOX_SHIFT) & SEAT_MASK;
+    }
+
+    public static int getColumn(int packed)
+    {
+        return (packed >> (TOTAL_SHIFT + SCORE_SHIFT) & BOX_MASK) / ScoreCard.ROWS;
+    }
+
+    public static int getRow(int packed)
+    {
+        return (packed >> (TOTAL_SHIFT + SCORE_SHIFT) & BOX_MASK) % ScoreCard.ROWS;
+    }
+
+    public static int getScore(int packed)
+    {
+        return packed >> TOTAL_SHIFT & SCORE_MASK;
+    }
+
+    public static int getTotal(int packed)
+    {
+        return packed & TOTAL_MASK;
+    }
+
+    /**
+     * @return the next whole frame in the buffer, from its type byte on, or
+     * null if the frame hasn't all arrived yet. The buffer is moved past the
+     * frame.
+     */
+    public static ByteBuffer nextFrame(ByteBuffer buffer)
+    {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.get(start) & 0xFF;
+        if (buffer.remaining() < length + 1) {
+            return null;
+        }
+        buffer.position(start + 1 + length);
+        return buffer.slice(start + 1, length);
+    }
+
+    /**
+     * @return the seat of a SEATED frame
+     */
+    public static int getSeat(int seating)
+    {
+        return seating >> SEATS_SHIFT & SEATS_MASK;
+    }
+
+    /**
+     * @return the number of seats at the table, from a SEATED frame
+     */
+    public static int getSeats(int seating)
+    {
+        return seating & SEATS_MASK;
+    }
+
+    /**
+     * Reads the three byte packed roll of a ROLLED frame.
+     */
+    public static int getRoll(ByteBuffer payload)
+    {
+        return (payload.get() & 0xFF) << 16 | payload.getShort() & 0xFFFF;
+    }
+
+    public static String getString(ByteBuffer payload)
+    {
+        return StandardCharsets.UTF_8.decode(payload).toString();
+    }
+
+    public static ByteBuffer join(String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return frame(JOIN, 1 + bytes.length).put((byte)VERSION).put(bytes).flip();
+    }
+
+    public static ByteBuffer roll(int lockedMask)
+    {
+        return frame(ROLL, 1).put((byte)lockedMask).flip();
+    }
+
+    public static ByteBuffer score(int column, int row)
+    {
+        return frame(SCORE, 1).put((byte)(column * ScoreCard.ROWS + row)).flip();
+    }
+
+    public static ByteBuffer quit()
+    {
+        return frame(QUIT, 0).flip();
+    }
+
+    static ByteBuffer seated(int table, int seat, int seats)
+    {
+        return frame(SEATED, 5).putInt(table).put((byte)(seat << SEATS_SHIFT | seats)).flip();
+    }
+
+    static ByteBuffer player(int seat, String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return frame(PLAYER, 1 + bytes.length).put((byte)seat).put(bytes).flip();
+    }
+
+    static ByteBuffer turn(int seat)
+    {
+        return frame(TURN, 1).put((byte)seat).flip();
+    }
+
+    static ByteBuffer rolled(int roll)
+    {
+        return frame(ROLLED, 3).put((byte)(roll >> 16)).putShort((short)roll).flip();
+    }
+
+    static ByteBuffer scored(int score)
+    {
+        return frame(SCORED, 4).putInt(score).flip();
+    }
+
+    static ByteBuffer left(int seat)
+    {
+        return frame(LEFT, 1).put((byte)seat).flip();
+    }
+
+    static ByteBuffer over(int[] totals)
+    {
+        ByteBuffer buffer = frame(OVER, 2 * totals.length);
+        for (int total : totals) {
+            buffer.putShort((short)total);
+        }
+        return buffer.flip();
+    }
+
+    static ByteBuffer error(int code)
+    {
+        return frame(ERROR, 1).put((byte)code).flip();
+    }
+
+    private static ByteBuffer frame(int type, int payloadLength)
+    {
+        if (payloadLength + 1 >= MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Frame is too long");
+        }
+        return ByteBuffer.allocate(payloadLength + 2)
+                .put((byte)(payloadLength + 1)).put((byte)type);
+    }
+}
@@ -0,0 +1,281 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.server;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.Game;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.Hand;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.history.GameRecord;
+import com.davidjarski.javatzee.strategy.Decision;
+import com.davidjarski.javatzee.strategy.GreedyStrategy;
+import com.davidjarski.javatzee.strategy.Strategy;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One table of a GameServer, running a headless Game on its own thread.
+ * Moves from the clients are queued, and the table takes them one at a
+ * time, so the game itself is only ever touched by the table's thread.
+ */
+class Table implements Runnable
+{
+    /**
+     * A move sent by the player in a seat.
+     */
+    static class Move
+    {
+        static final int ROLL = 0;
+        static final int SCORE = 1;
+        static final int LEAVE = 2;
+
+        final int seat;
+        final int type;
+        final int first;   // the locked mask, or the column
+        final int second;  // the row
+
+        Move(int seat, int type, int first, int second)
+        {
+            this.seat = seat;
+            this.type = type;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private static final Strategy STAND_IN = new GreedyStrategy();
+
+    private final int id;
+    private final long moveTimeout;
+    private final GameServer server;
+    private final Client[] clients;
+    private final String[] names;
+    private final boolean[] present;
+    private final Game game;
+    private final BlockingQueue<Move> moves = new LinkedBlockingQueue<>();
+    private final AtomicInteger seatsSent = new AtomicInteger();
+    private int seated;
+
+    Table(int id, int seats, long moveTimeout, GameServer server)
+    {
+        this.id = id;
+        this.moveTimeout = moveTimeout;
+        this.server = server;
+        clients = new Client[seats];
+        names = new String[seats];
+        present = new boolean[seats];
+        game = new Game(seats, new Hand(DiceRandom.create()));
+    }
+
+    int getId()
+    {
+        return id;
+    }
+
+    boolean isFull()
+    {
+        return seated == clients.length;
+    }
+
+    /**
+     * Seats a player, before the table is started.
+     *
+     * @return the player's seat
+     */
+    int seat(Client client, String name)
+    {
+        int seat = seated++;
+        clients[seat] = client;
+        names[seat] = name;
+        present[seat] = true;
+        client.setTable(this, seat);
+        return seat;
+    }
+
+    /**
+     * Called once a player has been sent their seat.
+     *
+     * @return true when every seat has been sent, and the table can start
+     */
+    boolean handleSeatSent()
+    {
+        return seatsSent.incrementAndGet() == clients.length;
+    }
+
+    void post(Move move)
+    {
+        moves.add(move);
+    }
+
+    @Override
+    public void run()
+    {
+        for (int seat = 0; seat < names.length; ++seat) {
+            String name = names[seat];
+            int player = seat;
+            broadcast(client -> client.sendPlayer(player, name));
+        }
+        try {
+            while (!game.isGameOver() && isAnyonePresent()) {
+                playTurn();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        int[] totals = new int[names.length];
+        for (int seat = 0; seat < names.length; ++seat) {
+            totals[seat] = game.getCard(seat).getGrandTotal();
+        }
+        broadcast(client -> client.sendOver(totals));
+        for (Client client : clients) {
+            client.setTable(null, 0);
+        }
+        // a game everyone walked out of isn't worth keeping
+        if (game.isGameOver()) {
+            server.handleGameOver(this);
+        }
+    }
+
+    private void playTurn() throws InterruptedException
+    {
+        int seat = game.getCurrentPlayerNumber();
+        ScoreCard card = game.getCurrentCard();
+        int boxesScored = card.getBoxesScored();
+        broadcast(client -> client.sendTurn(seat));
+        long timeout = TimeUnit.MILLISECONDS.toNanos(moveTimeout);
+        long deadline = System.nanoTime() + timeout;
+        // at a table of one the seat never changes, so watch for the score
+        while (card.getBoxesScored() == boxesScored && !game.isGameOver()
+                && isAnyonePresent()) {
+            Move move = present[seat]
+                    ? moves.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : null;
+            if (move == null) {
+                standIn(seat);
+                deadline = System.nanoTime() + timeout;
+            } else if (move.type == Move.LEAVE) {
+                present[move.seat] = false;
+                broadcast(client -> client.sendLeft(move.seat));
+            } else if (move.seat != seat) {
+                clients[move.seat].sendError(Protocol.NOT_YOUR_TURN);
+            } else {
+                if (move.type == Move.ROLL) {
+                    roll(seat, move.first);
+                } else {
+                    score(seat, move.first, move.second);
+                }
+                deadline = System.nanoTime() + timeout;
+            }
+        }
+    }
+
+    /**
+     * Makes the next move for a player who has left or run out of time.
+     */
+    private void standIn(int seat)
+    {
+        Turn turn = game.getTurn();
+        if (!turn.isRollInProgress()) {
+            roll(seat, 0);
+            return;
+        }
+        Decision decision = STAND_IN.decide(game.getCurrentCard(),
+                PackedHand.of(game.getHand()), turn.getRollsLeft());
+        if (decision.isScore()) {
+            score(seat, decision.getColumn(), decision.getRow());
+        } else {
+            roll(seat, decision.getKeepMask());
+        }
+    }
+
+    private void roll(int seat, int lockedMask)
+    {
+        if (!game.getTurn().isRollInProgress()) {
+            lockedMask = 0;  // nothing to keep before the first roll
+        }
+        if (!game.roll(lockedMask)) {
+            clients[seat].sendError(Protocol.NO_ROLL_LEFT);
+            return;
+        }
+        int kept = lockedMask;
+        int hand = PackedHand.of(game.getHand());
+        int rollsLeft = game.getTurn().getRollsLeft();
+        broadcast(client -> client.sendRolled(seat, kept, hand, rollsLeft));
+    }
+
+    private void score(int seat, int column, int row)
+    {
+        ScoreCard card = game.getCurrentCard();
+        if (column < 0 || column >= ScoreCard.COLUMNS || row < 0 || row >= ScoreCard.ROWS) {
+            clients[seat].sendError(Protocol.NO_SUCH_BOX);
+        } else if (!game.getTurn().isRollInProgress()) {
+            clients[seat].sendError(Protocol.NOT_ROLLED);
+        } else if (card.isFilled(column, row)) {
+            clients[seat].sendError(Protocol.BOX_FILLED);
+        } else {
+            int score = game.score(column, row);
+            int total = card.getGrandTotal();
+            broadcast(client -> client.sendScored(seat, column, row, score, total));
+        }
+    }
+
+    private boolean isAnyonePresent()
+    {
+        for (boolean here : present) {
+            if (here) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void broadcast(Consumer<Client> message)
+    {
+        for (int seat = 0; seat < clients.length; ++seat) {
+            if (present[seat]) {
+                message.accept(clients[seat]);
+            }
+        }
+    }
+
+    /**
+     * @return a record of each player's game, for the history
+     */
+    ArrayList<GameRecord> getGameRecords()
+    {
+        ArrayList<GameRecord> records = new ArrayList<>();
+        long millis = System.currentTimeMillis();
+        for (int seat = 0; seat < names.length; ++seat) {
+            ScoreCard card = game.getCard(seat);
+            records.add(new GameRecord(names[seat], card.getGrandTotal(),
+                    card.getKind5Count(), millis, card.getInts()));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,183 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The saved progress of a long simulation, from which a run that was
+ * stopped can carry on where it left off.
+ * <p>
+ * Since every game draws its dice from its own generator, seeded from the
+ * seed of the run and the number of the game, the position of the random
+ * streams is simply the number of games completed. Along with the partial
+ * statistics, which are all whole counts and sums, that is enough for a
+ * resumed run to end with exactly the results of one that was never stopped.
+ * <p>
+ * A checkpoint file starts with a short version number, then the seed, the
+ * random algorithm, the strategy, the number of games in the run and the
+ * number completed, followed by the SimulationResult so far.
+ */
+public class Checkpoint
+{
+    public static final int CURRENT_VERSION = 2;
+
+    private final long seed;
+    private final DiceRandom.Algorithm algorithm;
+    private final String strategy;
+    private final long games;
+    private long completedGames;
+    private final SimulationResult result;
+
+    /**
+     * Starts a new run with the current random algorithm.
+     *
+     * @param strategy the name of the strategy, as taken by
+     * Strategies.create()
+     */
+    public Checkpoint(long seed, String strategy, long games)
+    {
+        this(seed, DiceRandom.getAlgorithm(), strategy, games, 0, new SimulationResult());
+    }
+
+    private Checkpoint(long seed, DiceRandom.Algorithm algorithm, String strategy,
+            long games, long completedGames, SimulationResult result)
+    {
+        this.seed = seed;
+        this.algorithm = algorithm;
+        this.strategy = strategy;
+        this.games = games;
+        this.completedGames = completedGames;
+        this.result = result;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public DiceRandom.Algorithm getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    public String getStrategy()
+    {
+        return strategy;
+    }
+
+    public long getGames()
+    {
+        return games;
+    }
+
+    public long getCompletedGames()
+    {
+        return completedGames;
+    }
+
+    public boolean isFinished()
+    {
+        return completedGames == games;
+    }
+
+    /**
+     * @return the statistics of the games completed so far
+     */
+    public SimulationResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Adds the results of the games that follow the ones already completed.
+     */
+    public void add(SimulationResult batch)
+    {
+        if (completedGames + batch.getGames() > games) {
+            throw new IllegalArgumentException("More games than the run has");
+        }
+        result.merge(batch);
+        completedGames += batch.getGames();
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and then moves it over the
+     * given one, so a crash while saving leaves the last checkpoint intact.
+     */
+    public void save(Path file) throws IOException
+    {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeShort(CURRENT_VERSION);
+            out.writeLong(seed);
+            out.writeUTF(algorithm.name());
+            out.writeUTF(strategy);
+            out.writeLong(games);
+            out.writeLong(completedGames);
+            result.writeTo(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the checkpoint saved in the file, or null if there isn't one
+     * @throws IOException if the file can't be read or isn't a checkpoint
+     */
+    public static Checkpoint load(Path file) throws IOException
+    {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readShort();
+            if (version != CURRENT_VERSION) {
+                throw new IOException("Unknown checkpoint version: " + version);
+            }
+            long seed = in.readLong();
+            DiceRandom.Algorithm algorithm = DiceRandom.Algorithm.valueOf(in.readUTF());
+            String strategy = in.readUTF();
+            long games = in.readLong();
+            long completedGames = in.readLong();
+            SimulationResult result = SimulationResult.readFrom(in);
+            if (result.getGames() != completedGames || completedGames > games) {
+                throw new IOException("Inconsistent checkpoint: " + file);
+            }
+            return new Checkpoint(seed, algorithm, strategy, games, completedGames, result);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid checkpoint: " + file, ex);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.strategy.Strategies;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a simulation across worker processes on the same machine, so a run
+ * isn't limited by the heap of a single JVM. Workers connect over a loopback
+ * socket; the coordinator can start them itself, and others started by hand
+ * with the port it prints are welcome to join in.
+ * <p>
+ * The games of the run are divided into ranges, one per worker, and a worker
+ * is handed units from the front of its own range. A worker that runs out
+ * steals the back half of the largest range left, so fast workers end up
+ * playing more of the games and all of them finish at about the same time.
+ * Units are sized to take a couple of seconds on the worker they go to. The
+ * unit a worker was playing when its connection failed is handed to the next
+ * worker that asks.
+ * <p>
+ * Games are seeded just as they are by Simulator, and the merged statistics
+ * are whole counts and sums, so the results are exactly those of a
+ * Simulator run with the same seed, however the games were shared out.
+ * <p>
+ * The protocol: a worker sends the protocol version and its thread count, and
+ * is sent the seed, the random algorithm and the strategy of the run. Then,
+ * until it is sent DONE, it is sent UNIT with the first game and the number
+ * of games to play, and answers with the SimulationResult of those games.
+ */
+public class Coordinator
+{
+    static final int PROTOCOL_VERSION = 1;
+    static final byte DONE = 0;
+    static final byte UNIT = 1;
+
+    private static final long FIRST_UNIT_GAMES = 1024;
+    private static final long MIN_UNIT_GAMES = 64;
+    private static final long UNIT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final Logger LOGGER = Logger.getLogger(Coordinator.class.getName());
+
+    private final String strategy;
+    private final long seed;
+    private final DiceRandom.Algorithm algorithm;
+    private final long games;
+    private final SimulationResult result = new SimulationResult();
+    private final List<Range> ranges = new ArrayList<>();
+    private final Deque<Range> orphans = new ArrayDeque<>();
+    private int unitsInFlight;
+    private int activeWorkers;
+    private ServerSocket server;
+
+    /**
+     * @param strategy the name of the strategy, as taken by
+     * Strategies.create()
+     */
+    public Coordinator(String strategy, long seed, long games)
+    {
+        this.strategy = strategy;
+        this.seed = seed;
+        this.algorithm = DiceRandom.getAlgorithm();
+        this.games = games;
+        ranges.add(new Range(0, games));
+    }
+
+    /**
+     * Opens the socket that workers connect to, and starts accepting them.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port that was opened
+     * @throws IOException if the socket can't be opened
+     */
+    public int listen(int port) throws IOException
+    {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> accept(server), "Coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Plays the games of the run, starting the given number of local worker
+     * processes and accepting any other workers that connect. The socket is
+     * opened on any free port if listen() hasn't been called, and is closed
+     * at the end of the run.
+     *
+     * @return the statistics of all the games
+     * @throws IOException if the socket can't be opened, or if every worker
+     * that was started has stopped before the games were finished
+     */
+    public SimulationResult run(int localWorkers, int threadsPerWorker)
+            throws IOException, InterruptedException
+    {
+        if (server == null) {
+            listen(0);
+        }
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < localWorkers; ++i) {
+                processes.add(startWorker(server.getLocalPort(), threadsPerWorker));
+            }
+            synchronized (this) {
+                while (result.getGames() < games) {
+                    if (!processes.isEmpty() && activeWorkers == 0
+                            && processes.stream().noneMatch(Process::isAlive)) {
+                        throw new IOException("All of the workers have stopped");
+                    }
+                    wait(1000);
+                }
+            }
+        } finally {
+            server.close();
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+        }
+        return result;
+    }
+
+    private Process startWorker(int port, int threads) throws IOException
+    {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        // the engine finds its tables under the user's home directory
+        return new ProcessBuilder(java,
+                "-Duser.home=" + System.getProperty("user.home"),
+                "-cp", System.getProperty("java.class.path"),
+                Worker.class.getName(), Integer.toString(port), Integer.toString(threads))
+                .inheritIO()
+                .start();
+    }
+
+    private void accept(ServerSocket server)
+    {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket), "Coordinator worker");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException ex) {
+                // closed at the end of the run
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        Range own = join();
+        Range unit = null;
+        try (socket;
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()))) {
+            int version = in.readShort();
+            if (version != PROTOCOL_VERSION) {
+                throw new IOException("Unknown protocol version: " + version);
+            }
+            int threads = in.readInt();
+            out.writeLong(seed);
+            out.writeUTF(algorithm.name());
+            out.writeUTF(strategy);
+
+            long size = FIRST_UNIT_GAMES * Math.max(1, threads);
+            while ((unit = next(own, size)) != null) {
+                out.writeByte(UNIT);
+                out.writeLong(unit.next);
+                out.writeLong(unit.getSize());
+                out.flush();
+                long start = System.nanoTime();
+                SimulationResult batch = SimulationResult.readFrom(in);
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                if (batch.getGames() != unit.getSize()) {
+                    throw new IOException("Expected " + unit.getSize() + " games, not "
+                            + batch.getGames());
+                }
+                complete(batch);
+                size = Math.max(MIN_UNIT_GAMES, (long)(unit.getSize() * ((double)UNIT_NANOS / elapsed)));
+                unit = null;
+            }
+            out.writeByte(DONE);
+            out.flush();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        } finally {
+            leave(unit);
+        }
+    }
+
+    private synchronized Range join()
+    {
+        Range range = new Range(0, 0);
+        ranges.add(range);
+        ++activeWorkers;
+        return range;
+    }
+
+    private synchronized void leave(Range unit)
+    {
+        if (unit != null) {
+            orphans.add(unit);
+            --unitsInFlight;
+        }
+        --activeWorkers;
+        notifyAll();
+    }
+
+    private synchronized void complete(SimulationResult batch)
+    {
+        result.merge(batch);
+        --unitsInFlight;
+        notifyAll();
+    }
+
+    /**
+     * @return the next unit for the worker with the given range, or null
+     * once every game has been played
+     */
+    private synchronized Range next(Range own, long size)
+    {
+        while (true) {
+            if (!orphans.isEmpty()) {
+                ++unitsInFlight;
+                return orphans.remove();
+            }
+            if (own.getSize() == 0) {
+                steal(own);
+            }
+            if (own.getSize() > 0) {
+                Range unit = new Range(own.next, own.next + Math.min(size, own.getSize()));
+                own.next = unit.end;
+                ++unitsInFlight;
+                return unit;
+            }
+            if (unitsInFlight == 0) {
+                return null;
+            }
+            // the games left are being played, but a worker might yet fail
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private void steal(Range thief)
+    {
+        Range victim = null;
+        for (Range range : ranges) {
+            if (victim == null || range.getSize() > victim.getSize()) {
+                victim = range;
+            }
+        }
+        if (victim == null || victim.getSize() == 0) {
+            return;
+        }
+        long middle = victim.end - (victim.getSize() + 1) / 2;
+        thief.next = middle;
+        thief.end = victim.end;
+        victim.end = middle;
+    }
+
+    /**
+     * The games from next up to, but not including, end.
+     */
+    private static class Range
+    {
+        long next;
+        long end;
+
+        Range(long next, long end)
+        {
+            this.next = next;
+            this.end = end;
+        }
+
+        long getSize()
+        {
+            return end - next;
+        }
+    }
+
+    /**
+     * Usage: Coordinator [games [strategy [seed [workers [threads [port]]]]]]
+     * <p>
+     * Starts the given number of local workers, by default one for each
+     * processor with a single thread each. With no local workers, the run
+     * waits for workers started by hand:
+     * <pre>
+     *     java -cp &lt;classes&gt; com.davidjarski.javatzee.simulation.Worker port [threads]
+     * </pre>
+     */
+    public static void main(String[] args)
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        String name = args.length > 1 ? args[1] : Strategies.GREEDY;
+        long seed = args.length > 2 && !args[2].equals("random") ? Long.parseLong(args[2])
+                : DiceRandom.create().nextLong();
+        int workers = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+
+        System.out.printf("Playing %,d games with %s on %d workers, seed %d%n",
+                games, name, workers, seed);
+        long start = System.nanoTime();
+        SimulationResult result;
+        try {
+            Coordinator coordinator = new Coordinator(name, seed, games);
+            System.out.printf("Listening for workers on port %d%n", coordinator.listen(port));
+            result = coordinator.run(workers, threads);
+        } catch (IOException | InterruptedException ex) {
+            Logger.getLogger(Coordinator.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        result.print(System.out);
+        System.out.printf("%.1f s, %,.0f games per minute%n", seconds, games / seconds * 60);
+    }
+}
@@ -0,0 +1,81 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.util.random.RandomGenerator;
+
+/**
+ * The dice for a whole game, laid out by turn, roll and die. Players that
+ * follow the same script see the same face on the same die of the same roll
+ * of every turn, however differently they keep their dice, so their scores
+ * differ only because of their decisions and not because of their luck.
+ */
+public class DiceScript
+{
+    private static final int DICE_COUNT = HandTable.DICE_COUNT;
+    private static final int ROLLS = Turn.MAX_ROLL_COUNT;
+    private static final int TURN_SIZE = ROLLS * DICE_COUNT;
+
+    private final byte[] faces = new byte[ScoreCard.NUM_BOXES * TURN_SIZE];
+
+    /**
+     * Writes a new script, drawing every face from the generator.
+     */
+    public void fill(RandomGenerator random)
+    {
+        for (int i = 0; i < faces.length; ++i) {
+            faces[i] = (byte)(random.nextInt(HandTable.FACE_COUNT) + 1);
+        }
+    }
+
+    /**
+     * @param turn the turn, from 0 up to the number of boxes on a card
+     * @return the packed hand of the first roll of the turn
+     */
+    public int roll(int turn)
+    {
+        return reroll(PackedHand.of(1, 1, 1, 1, 1), 0, turn, 0);
+    }
+
+    /**
+     * @param roll the roll of the turn, 1 for the second roll and 2 for the
+     * last
+     * @return the hand with the dice that aren't in the keep mask changed to
+     * the faces of the script
+     */
+    public int reroll(int hand, int keepMask, int turn, int roll)
+    {
+        int base = turn * TURN_SIZE + roll * DICE_COUNT;
+        for (int die = 0; die < DICE_COUNT; ++die) {
+            if ((keepMask & 1 << die) == 0) {
+                hand = PackedHand.setFace(hand, die, faces[base + die]);
+            }
+        }
+        return hand;
+    }
+}
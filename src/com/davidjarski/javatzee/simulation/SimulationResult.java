@@ -0,0 +1,313 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.stats.Histogram;
+import com.davidjarski.javatzee.stats.ScoreSketch;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The statistics of a batch of simulated games. Results for separate batches
+ * can be merged, so each worker of a simulation keeps its own and they are
+ * combined at the end.
+ */
+public class SimulationResult
+{
+    private static final int COLUMNS = ScoreCard.COLUMNS;
+    private static final int INITIAL_KIND5_COUNT = 8;
+    private static final int BUCKET_WIDTH = 250;
+    private static final double[] PERCENTILES = {1, 5, 10, 25, 50, 75, 90, 95, 99};
+
+    private long games;
+    private long scoreSum;
+    private long scoreSquareSum;
+    private int minScore = Integer.MAX_VALUE;
+    private int maxScore = Integer.MIN_VALUE;
+    // the number of games ending with each grand total
+    private final Histogram scoreCounts = new Histogram(0, 1, ScoreSketch.MAX_SCORE + 1);
+    // the number of games with each number of Javatzees
+    private long[] kind5Counts = new long[INITIAL_KIND5_COUNT];
+    private long kind5Sum;
+    private long kind5BonusGames;
+    private final long[] columnSums = new long[COLUMNS];
+    private final long[] upperBonuses = new long[COLUMNS];
+
+    /**
+     * Adds the final state of a finished game.
+     */
+    public void add(ScoreCard card)
+    {
+        int score = card.getGrandTotal();
+        ++games;
+        scoreSum += score;
+        scoreSquareSum += (long)score * score;
+        minScore = Math.min(minScore, score);
+        maxScore = Math.max(maxScore, score);
+        scoreCounts.add(score);
+
+        int kind5Count = card.getKind5Count();
+        if (kind5Count >= kind5Counts.length) {
+            kind5Counts = Arrays.copyOf(kind5Counts, kind5Count + 1);
+        }
+        ++kind5Counts[kind5Count];
+        kind5Sum += kind5Count;
+        if (card.isKind5BonusEnabled()) {
+            ++kind5BonusGames;
+        }
+        for (int column = 0; column < COLUMNS; ++column) {
+            columnSums[column] += card.getMultipliedTotal(column);
+            if (card.getUpperBonus(column) > 0) {
+                ++upperBonuses[column];
+            }
+        }
+    }
+
+    /**
+     * Adds the games of another result to this one.
+     */
+    public void merge(SimulationResult other)
+    {
+        if (other.games == 0) {
+            return;
+        }
+        games += other.games;
+        scoreSum += other.scoreSum;
+        scoreSquareSum += other.scoreSquareSum;
+        minScore = Math.min(minScore, other.minScore);
+        maxScore = Math.max(maxScore, other.maxScore);
+        scoreCounts.merge(other.scoreCounts);
+        kind5Counts = add(kind5Counts, other.kind5Counts);
+        kind5Sum += other.kind5Sum;
+        kind5BonusGames += other.kind5BonusGames;
+        for (int column = 0; column < COLUMNS; ++column) {
+            columnSums[column] += other.columnSums[column];
+            upperBonuses[column] += other.upperBonuses[column];
+        }
+    }
+
+    private static long[] add(long[] counts, long[] others)
+    {
+        if (others.length > counts.length) {
+            counts = Arrays.copyOf(counts, others.length);
+        }
+        for (int i = 0; i < others.length; ++i) {
+            counts[i] += others[i];
+        }
+        return counts;
+    }
+
+    /**
+     * Writes every count and sum, so that the result read back is exactly
+     * the same.
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeLong(games);
+        out.writeLong(scoreSum);
+        out.writeLong(scoreSquareSum);
+        out.writeInt(minScore);
+        out.writeInt(maxScore);
+        scoreCounts.writeTo(out);
+        writeCounts(out, kind5Counts);
+        out.writeLong(kind5Sum);
+        out.writeLong(kind5BonusGames);
+        for (int column = 0; column < COLUMNS; ++column) {
+            out.writeLong(columnSums[column]);
+            out.writeLong(upperBonuses[column]);
+        }
+    }
+
+    public static SimulationResult readFrom(DataInput in) throws IOException
+    {
+        SimulationResult result = new SimulationResult();
+        result.games = in.readLong();
+        result.scoreSum = in.readLong();
+        result.scoreSquareSum = in.readLong();
+        result.minScore = in.readInt();
+        result.maxScore = in.readInt();
+        result.scoreCounts.merge(Histogram.readFrom(in));
+        result.kind5Counts = add(result.kind5Counts, readCounts(in));
+        result.kind5Sum = in.readLong();
+        result.kind5BonusGames = in.readLong();
+        for (int column = 0; column < COLUMNS; ++column) {
+            result.columnSums[column] = in.readLong();
+            result.upperBonuses[column] = in.readLong();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the counts up to the last one that isn't zero.
+     */
+    private static void writeCounts(DataOutput out, long[] counts) throws IOException
+    {
+        int length = counts.length;
+        while (length > 0 && counts[length - 1] == 0) {
+            --length;
+        }
+        out.writeInt(length);
+        for (int i = 0; i < length; ++i) {
+            out.writeLong(counts[i]);
+        }
+    }
+
+    private static long[] readCounts(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid count length: " + length);
+        }
+        long[] counts = new long[length];
+        for (int i = 0; i < length; ++i) {
+            counts[i] = in.readLong();
+        }
+        return counts;
+    }
+
+    public long getGames()
+    {
+        return games;
+    }
+
+    public double getMean()
+    {
+        return (double)scoreSum / games;
+    }
+
+    public double getStandardDeviation()
+    {
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, (double)scoreSquareSum / games - mean * mean));
+    }
+
+    public int getMinScore()
+    {
+        return minScore;
+    }
+
+    public int getMaxScore()
+    {
+        return maxScore;
+    }
+
+    /**
+     * @return the number of games that ended with the given grand total
+     */
+    public long getScoreCount(int score)
+    {
+        return score <= ScoreSketch.MAX_SCORE ? scoreCounts.getCount(score) : 0;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the lowest score that at least the given percentage of games
+     * didn't beat
+     */
+    public int getPercentile(double percentile)
+    {
+        return (int)scoreCounts.getQuantile(percentile / 100);
+    }
+
+    /**
+     * @return the number of games in which the given number of Javatzees
+     * were scored
+     */
+    public long getKind5Games(int kind5Count)
+    {
+        return kind5Count < kind5Counts.length ? kind5Counts[kind5Count] : 0;
+    }
+
+    public double getMeanKind5Count()
+    {
+        return (double)kind5Sum / games;
+    }
+
+    /**
+     * @return the fraction of games in which the Javatzee bonus was earned
+     */
+    public double getKind5BonusRate()
+    {
+        return (double)kind5BonusGames / games;
+    }
+
+    /**
+     * @return the fraction of games in which the column earned the upper bonus
+     */
+    public double getUpperBonusRate(int column)
+    {
+        return (double)upperBonuses[column] / games;
+    }
+
+    /**
+     * @return the average multiplied total of the column
+     */
+    public double getColumnMean(int column)
+    {
+        return (double)columnSums[column] / games;
+    }
+
+    public void print(PrintStream out)
+    {
+        if (games == 0) {
+            out.println("No games played");
+            return;
+        }
+        out.printf("Games:     %,d%n", games);
+        out.printf("Score:     mean %.1f, sd %.1f, min %d, max %d%n",
+                getMean(), getStandardDeviation(), minScore, maxScore);
+        out.print("Percentiles:");
+        for (double percentile : PERCENTILES) {
+            out.printf(" p%.0f=%d", percentile, getPercentile(percentile));
+        }
+        out.println();
+        out.print("Columns:  ");
+        for (int column = 0; column < COLUMNS; ++column) {
+            out.printf(" x%d mean %.1f, upper bonus %.1f%%;", ScoreCard.getMultiplier(column),
+                    getColumnMean(column), 100 * getUpperBonusRate(column));
+        }
+        out.println();
+        out.printf("Javatzees: mean %.3f, bonus earned in %.2f%% of games%n",
+                getMeanKind5Count(), 100 * getKind5BonusRate());
+        for (int count = 0; count < kind5Counts.length; ++count) {
+            if (kind5Counts[count] > 0) {
+                out.printf("  %2d: %12d (%6.2f%%)%n", count, kind5Counts[count],
+                        100.0 * kind5Counts[count] / games);
+            }
+        }
+        out.println("Scores:");
+        for (int low = minScore / BUCKET_WIDTH * BUCKET_WIDTH; low <= maxScore; low += BUCKET_WIDTH) {
+            long count = 0;
+            for (int score = low; score < low + BUCKET_WIDTH; ++score) {
+                count += getScoreCount(score);
+            }
+            out.printf("  %5d-%-5d %12d (%6.2f%%)%n", low, low + BUCKET_WIDTH - 1,
+                    count, 100.0 * count / games);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.PackedHand;
+import com.davidjarski.javatzee.strategy.Decision;
+import com.davidjarski.javatzee.strategy.Strategies;
+import com.davidjarski.javatzee.strategy.Strategy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays complete games of Triple Javatzee with a strategy, spread over the
+ * threads of a fork-join pool, and collects the statistics of the results.
+ * <p>
+ * Each game rolls its dice from its own generator, seeded from the seed of
+ * the simulation and the number of the game, so a simulation gives the same
+ * results for the same seed however its games are divided among the threads.
+ */
+public class Simulator
+{
+    /**
+     * The most games played by a single task before it is split in two.
+     */
+    private static final int LEAF_GAMES = 256;
+    /**
+     * The games played before the first checkpoint, after which batches are
+     * sized from the time taken.
+     */
+    private static final long FIRST_BATCH_GAMES = 16 * LEAF_GAMES;
+    public static final long DEFAULT_CHECKPOINT_SECONDS = 60;
+    /**
+     * Spreads the seeds of consecutive games apart, so that simulations with
+     * nearby seeds don't share games.
+     */
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final Strategy strategy;
+    private final long seed;
+    private final ForkJoinPool pool;
+
+    public Simulator(Strategy strategy, long seed)
+    {
+        this(strategy, seed, ForkJoinPool.commonPool());
+    }
+
+    public Simulator(Strategy strategy, long seed, ForkJoinPool pool)
+    {
+        this.strategy = strategy;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public SimulationResult run(long games)
+    {
+        return run(0, games);
+    }
+
+    /**
+     * Plays the games numbered from firstGame up to, but not including,
+     * firstGame + games.
+     */
+    public SimulationResult run(long firstGame, long games)
+    {
+        return pool.invoke(new GameTask(firstGame, firstGame + games));
+    }
+
+    /**
+     * Plays the rest of the games of a run in batches, saving the checkpoint
+     * after each one. Batches are sized to take about the given time, but the
+     * results don't depend on their size, so a run resumed from any of its
+     * checkpoints ends with exactly the same results.
+     *
+     * @return the results of all the games of the run
+     */
+    public SimulationResult run(Checkpoint checkpoint, Path file, long checkpointSeconds)
+            throws IOException
+    {
+        if (checkpoint.getSeed() != seed
+                || checkpoint.getAlgorithm() != DiceRandom.getAlgorithm()) {
+            throw new IllegalArgumentException("The checkpoint is for a different run");
+        }
+        long batch = FIRST_BATCH_GAMES;
+        while (!checkpoint.isFinished()) {
+            long count = Math.min(batch, checkpoint.getGames() - checkpoint.getCompletedGames());
+            long start = System.nanoTime();
+            checkpoint.add(run(checkpoint.getCompletedGames(), count));
+            checkpoint.save(file);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            batch = Math.max(LEAF_GAMES, (long)(count * (checkpointSeconds * 1e9 / elapsed)));
+        }
+        return checkpoint.getResult();
+    }
+
+    /**
+     * @return the generator for the dice of the numbered game
+     */
+    public static RandomGenerator createRandom(long seed, long game)
+    {
+        return DiceRandom.getAlgorithm().create(seed + game * SEED_GAMMA);
+    }
+
+    /**
+     * Plays a whole game on the card, which is reset first.
+     */
+    public static void playGame(Strategy strategy, ScoreCard card, RandomGenerator random)
+    {
+        card.reset();
+        while (!card.isGameOver()) {
+            int hand = PackedHand.roll(random);
+            int rollsLeft = Turn.MAX_ROLL_COUNT - 1;
+            Decision decision = strategy.decide(card, hand, rollsLeft);
+            while (!decision.isScore()) {
+                if (rollsLeft == 0) {
+                    throw new IllegalStateException("The hand must be scored");
+                }
+                hand = PackedHand.reroll(hand, decision.getKeepMask(), random);
+                decision = strategy.decide(card, hand, --rollsLeft);
+            }
+            card.score(decision.getColumn(), decision.getRow(), PackedHand.classify(hand));
+        }
+    }
+
+    /**
+     * Plays a whole game on the card, which is reset first, with the dice
+     * taken from the script.
+     */
+    public static void playGame(Strategy strategy, ScoreCard card, DiceScript script)
+    {
+        card.reset();
+        while (!card.isGameOver()) {
+            int turn = card.getBoxesScored();
+            int hand = script.roll(turn);
+            int rollsLeft = Turn.MAX_ROLL_COUNT - 1;
+            Decision decision = strategy.decide(card, hand, rollsLeft);
+            while (!decision.isScore()) {
+                if (rollsLeft == 0) {
+                    throw new IllegalStateException("The hand must be scored");
+                }
+                --rollsLeft;
+                hand = script.reroll(hand, decision.getKeepMask(), turn,
+                        Turn.MAX_ROLL_COUNT - 1 - rollsLeft);
+                decision = strategy.decide(card, hand, rollsLeft);
+            }
+            card.score(decision.getColumn(), decision.getRow(), PackedHand.classify(hand));
+        }
+    }
+
+    private class GameTask extends RecursiveTask<SimulationResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        GameTask(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationResult compute()
+        {
+            if (to - from <= LEAF_GAMES) {
+                SimulationResult result = new SimulationResult();
+                ScoreCard card = new ScoreCard();
+                for (long game = from; game < to; ++game) {
+                    playGame(strategy, card, createRandom(seed, game));
+                    result.add(card);
+                }
+                return result;
+            }
+            long middle = from + (to - from) / 2;
+            GameTask left = new GameTask(from, middle);
+            left.fork();
+            SimulationResult result = new GameTask(middle, to).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Usage: Simulator [games [strategy [seed [threads [checkpoint]]]]]
+     * <p>
+     * The strategy is one of the names taken by Strategies.create(). With a
+     * seed of "random", or none, a random one is chosen and printed, so the
+     * run can be repeated. With a checkpoint file the progress is saved every
+     * minute or so, and if the file already exists the run it holds is
+     * resumed, with its own games, strategy and seed.
+     */
+    public static void main(String[] args)
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        String name = args.length > 1 ? args[1] : Strategies.GREEDY;
+        long seed = args.length > 2 && !args[2].equals("random") ? Long.parseLong(args[2])
+                : DiceRandom.create().nextLong();
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        Path file = args.length > 4 ? Paths.get(args[4]) : null;
+
+        Checkpoint checkpoint = null;
+        if (file != null) {
+            try {
+                checkpoint = Checkpoint.load(file);
+            } catch (IOException ex) {
+                Logger.getLogger(Simulator.class.getName()).log(Level.SEVERE, null, ex);
+                return;
+            }
+        }
+        if (checkpoint != null) {
+            games = checkpoint.getGames();
+            name = checkpoint.getStrategy();
+            seed = checkpoint.getSeed();
+            DiceRandom.configure(checkpoint.getAlgorithm());
+            System.out.printf("Resuming from game %,d%n", checkpoint.getCompletedGames());
+        } else {
+            checkpoint = new Checkpoint(seed, name, games);
+        }
+
+        Strategy strategy = Strategies.create(name);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Simulator simulator = new Simulator(strategy, seed, pool);
+        System.out.printf("Playing %,d games with %s on %d threads, seed %d%n",
+                games, name, threads, seed);
+        long start = System.nanoTime();
+        long played = games - checkpoint.getCompletedGames();
+        SimulationResult result;
+        try {
+            result = file == null ? simulator.run(games)
+                    : simulator.run(checkpoint, file, DEFAULT_CHECKPOINT_SECONDS);
+        } catch (IOException ex) {
+            Logger.getLogger(Simulator.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        result.print(System.out);
+        System.out.printf("%.1f s, %,.0f games per minute%n", seconds, played / seconds * 60);
+    }
+}
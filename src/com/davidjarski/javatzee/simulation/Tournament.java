@@ -0,0 +1,150 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.strategy.Strategies;
+import com.davidjarski.javatzee.strategy.Strategy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compares strategies by playing them all on the same dice, game for game.
+ * Every game's dice come from a DiceScript written from the master seed and
+ * the number of the game, so each strategy sees exactly the same rolls as
+ * the others wherever it keeps the same dice. Most of the luck cancels out of
+ * the differences between their scores, which need far fewer games to pin
+ * down than scores played on independent dice.
+ * <p>
+ * Games are spread over a fork-join pool, and a tournament gives the same
+ * results for the same seed however they are divided among the threads.
+ */
+public class Tournament
+{
+    private static final int LEAF_GAMES = 64;
+
+    private final List<Strategy> strategies;
+    private final long seed;
+    private final ForkJoinPool pool;
+
+    public Tournament(List<Strategy> strategies, long seed)
+    {
+        this(strategies, seed, ForkJoinPool.commonPool());
+    }
+
+    public Tournament(List<Strategy> strategies, long seed, ForkJoinPool pool)
+    {
+        if (strategies.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two strategies");
+        }
+        this.strategies = new ArrayList<>(strategies);
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    public TournamentResult run(long games)
+    {
+        return run(0, games);
+    }
+
+    /**
+     * Plays the games numbered from firstGame up to, but not including,
+     * firstGame + games.
+     */
+    public TournamentResult run(long firstGame, long games)
+    {
+        return pool.invoke(new GameTask(firstGame, firstGame + games));
+    }
+
+    private class GameTask extends RecursiveTask<TournamentResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        GameTask(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TournamentResult compute()
+        {
+            if (to - from <= LEAF_GAMES) {
+                TournamentResult result = new TournamentResult(strategies.size());
+                ScoreCard card = new ScoreCard();
+                DiceScript script = new DiceScript();
+                for (long game = from; game < to; ++game) {
+                    script.fill(Simulator.createRandom(seed, game));
+                    for (int i = 0; i < strategies.size(); ++i) {
+                        Simulator.playGame(strategies.get(i), card, script);
+                        result.add(i, card);
+                    }
+                    result.endGame();
+                }
+                return result;
+            }
+            long middle = from + (to - from) / 2;
+            GameTask left = new GameTask(from, middle);
+            left.fork();
+            TournamentResult result = new GameTask(middle, to).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Usage: Tournament games seed strategy strategy [strategy...]
+     * <p>
+     * The strategies are named as for Strategies.create(). A seed of "random"
+     * chooses one and prints it, so the run can be repeated.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 4) {
+            System.err.println("Usage: Tournament games seed strategy strategy [strategy...]");
+            return;
+        }
+        long games = Long.parseLong(args[0]);
+        long seed = args[1].equals("random") ? DiceRandom.create().nextLong()
+                : Long.parseLong(args[1]);
+        List<String> names = Arrays.asList(args).subList(2, args.length);
+        List<Strategy> strategies = new ArrayList<>();
+        for (String name : names) {
+            strategies.add(Strategies.create(name));
+        }
+
+        System.out.printf("Playing %,d games of %s, seed %d%n", games, names, seed);
+        long start = System.nanoTime();
+        TournamentResult result = new Tournament(strategies, seed).run(games);
+        result.print(System.out, names);
+        System.out.printf("%.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,216 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.stats.QuantileSketch;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * The statistics of a tournament: a SimulationResult for each strategy, and
+ * the differences between the scores of every pair of strategies on the same
+ * dice. Results for separate batches of games can be merged.
+ */
+public class TournamentResult
+{
+    /**
+     * The normal quantile for a two sided 95% confidence interval.
+     */
+    public static final double Z_95 = 1.959964;
+
+    private final int count;
+    private final SimulationResult[] results;
+    // by pair of strategies i < j, the sums of score i - score j
+    private final long[][] differenceSums;
+    private final long[][] differenceSquareSums;
+    private final long[][] wins;
+    private final long[][] ties;
+    private final QuantileSketch[][] differences;
+    private final int[] scores;
+
+    public TournamentResult(int count)
+    {
+        this.count = count;
+        results = new SimulationResult[count];
+        for (int i = 0; i < count; ++i) {
+            results[i] = new SimulationResult();
+        }
+        differenceSums = new long[count][count];
+        differenceSquareSums = new long[count][count];
+        wins = new long[count][count];
+        ties = new long[count][count];
+        differences = new QuantileSketch[count][count];
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                differences[i][j] = new QuantileSketch();
+            }
+        }
+        scores = new int[count];
+    }
+
+    /**
+     * Adds the finished card of a strategy for the current game. Once every
+     * strategy's card has been added, endGame() pairs up their scores.
+     */
+    public void add(int strategy, ScoreCard card)
+    {
+        results[strategy].add(card);
+        scores[strategy] = card.getGrandTotal();
+    }
+
+    public void endGame()
+    {
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                long difference = scores[i] - scores[j];
+                differenceSums[i][j] += difference;
+                differenceSquareSums[i][j] += difference * difference;
+                differences[i][j].add(difference);
+                if (difference > 0) {
+                    ++wins[i][j];
+                } else if (difference < 0) {
+                    ++wins[j][i];
+                } else {
+                    ++ties[i][j];
+                }
+            }
+        }
+    }
+
+    public void merge(TournamentResult other)
+    {
+        for (int i = 0; i < count; ++i) {
+            results[i].merge(other.results[i]);
+            for (int j = 0; j < count; ++j) {
+                differenceSums[i][j] += other.differenceSums[i][j];
+                differenceSquareSums[i][j] += other.differenceSquareSums[i][j];
+                wins[i][j] += other.wins[i][j];
+                ties[i][j] += other.ties[i][j];
+                if (j > i) {
+                    differences[i][j].merge(other.differences[i][j]);
+                }
+            }
+        }
+    }
+
+    public long getGames()
+    {
+        return results[0].getGames();
+    }
+
+    public SimulationResult getResult(int strategy)
+    {
+        return results[strategy];
+    }
+
+    /**
+     * @return the average of strategy i's score less strategy j's
+     */
+    public double getMeanDifference(int i, int j)
+    {
+        return i < j ? (double)differenceSums[i][j] / getGames()
+                : -getMeanDifference(j, i);
+    }
+
+    public double getDifferenceStandardDeviation(int i, int j)
+    {
+        if (i > j) {
+            return getDifferenceStandardDeviation(j, i);
+        }
+        long games = getGames();
+        double mean = (double)differenceSums[i][j] / games;
+        double variance = ((double)differenceSquareSums[i][j] - games * mean * mean)
+                / Math.max(1, games - 1);
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * @return the half width of the 95% confidence interval of the mean
+     * difference between the paired scores
+     */
+    public double getConfidenceInterval(int i, int j)
+    {
+        return Z_95 * getDifferenceStandardDeviation(i, j) / Math.sqrt(getGames());
+    }
+
+    /**
+     * @return the half width the confidence interval would have had if the
+     * strategies had been played on independent dice
+     */
+    public double getUnpairedConfidenceInterval(int i, int j)
+    {
+        double first = results[i].getStandardDeviation();
+        double second = results[j].getStandardDeviation();
+        return Z_95 * Math.sqrt((first * first + second * second) / getGames());
+    }
+
+    /**
+     * @return the number of games strategy i scored more than strategy j
+     */
+    public long getWins(int i, int j)
+    {
+        return wins[i][j];
+    }
+
+    public long getTies(int i, int j)
+    {
+        return i < j ? ties[i][j] : ties[j][i];
+    }
+
+    /**
+     * @param quantile from 0 to 1
+     * @return the estimated quantile of strategy i's score less strategy j's
+     */
+    public double getDifferenceQuantile(int i, int j, double quantile)
+    {
+        return i < j ? differences[i][j].getQuantile(quantile)
+                : -differences[j][i].getQuantile(1 - quantile);
+    }
+
+    public void print(PrintStream out, List<String> names)
+    {
+        out.printf("Games: %,d%n", getGames());
+        for (int i = 0; i < count; ++i) {
+            SimulationResult result = results[i];
+            out.printf("  %-16s mean %7.1f, sd %6.1f, Javatzees %.3f, bonus %.2f%%%n",
+                    names.get(i), result.getMean(), result.getStandardDeviation(),
+                    result.getMeanKind5Count(), 100 * result.getKind5BonusRate());
+        }
+        out.println("Paired differences (95% confidence):");
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                out.printf("  %s - %s: %+.2f +/- %.2f (unpaired +/- %.2f),"
+                        + " sd %.1f, won %d, lost %d, tied %d%n",
+                        names.get(i), names.get(j), getMeanDifference(i, j),
+                        getConfidenceInterval(i, j), getUnpairedConfidenceInterval(i, j),
+                        getDifferenceStandardDeviation(i, j), getWins(i, j), getWins(j, i),
+                        getTies(i, j));
+                out.printf("    quartiles of the difference %.0f, %.0f, %.0f%n",
+                        getDifferenceQuantile(i, j, 0.25), getDifferenceQuantile(i, j, 0.5),
+                        getDifferenceQuantile(i, j, 0.75));
+            }
+        }
+    }
+}
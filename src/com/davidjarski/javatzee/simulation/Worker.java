@@ -0,0 +1,92 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.simulation;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.strategy.Strategies;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A worker process for a Coordinator: plays the units of games it is sent
+ * with an ordinary Simulator, and sends back their statistics.
+ */
+public class Worker
+{
+    private Worker() { }
+
+    /**
+     * Connects to the coordinator listening on the port of the loopback
+     * address, and plays games until there are none left.
+     */
+    public static void run(int port, int threads) throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeShort(Coordinator.PROTOCOL_VERSION);
+            out.writeInt(threads);
+            out.flush();
+            long seed = in.readLong();
+            DiceRandom.configure(DiceRandom.Algorithm.valueOf(in.readUTF()));
+            Simulator simulator = new Simulator(Strategies.create(in.readUTF()), seed, pool);
+            while (in.readByte() == Coordinator.UNIT) {
+                long firstGame = in.readLong();
+                long games = in.readLong();
+                simulator.run(firstGame, games).writeTo(out);
+                out.flush();
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid run from the coordinator", ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Usage: Worker port [threads]
+     */
+    public static void main(String[] args)
+    {
+        int port = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        try {
+            run(port, threads);
+        } catch (IOException ex) {
+            Logger.getLogger(Worker.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Counts whole numbers in buckets of a fixed width over a fixed range, with
+ * the values below and above the range counted separately. The memory used
+ * never grows, however many values are added.
+ * <p>
+ * A histogram isn't thread safe; each thread should fill its own, and the
+ * histograms merged once they're done.
+ */
+public class Histogram
+{
+    private final long min;
+    private final long bucketWidth;
+    private final long[] counts;
+    private long underflow;
+    private long overflow;
+
+    /**
+     * @param min the lowest value of the first bucket
+     * @param bucketWidth the number of values in each bucket
+     * @param bucketCount the number of buckets
+     */
+    public Histogram(long min, long bucketWidth, int bucketCount)
+    {
+        if (bucketWidth <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Buckets must not be empty");
+        }
+        this.min = min;
+        this.bucketWidth = bucketWidth;
+        counts = new long[bucketCount];
+    }
+
+    /**
+     * @return an empty histogram with the same buckets as this one
+     */
+    public Histogram newEmpty()
+    {
+        return new Histogram(min, bucketWidth, counts.length);
+    }
+
+    public void add(long value)
+    {
+        add(value, 1);
+    }
+
+    public void add(long value, long count)
+    {
+        if (value < min) {
+            underflow += count;
+        } else {
+            long bucket = (value - min) / bucketWidth;
+            if (bucket >= counts.length) {
+                overflow += count;
+            } else {
+                counts[(int)bucket] += count;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of a histogram with the same buckets.
+     */
+    public void merge(Histogram other)
+    {
+        if (other.min != min || other.bucketWidth != bucketWidth
+                || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("The histograms have different buckets");
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] += other.counts[i];
+        }
+        underflow += other.underflow;
+        overflow += other.overflow;
+    }
+
+    public int getBucketCount()
+    {
+        return counts.length;
+    }
+
+    public long getBucketStart(int bucket)
+    {
+        return min + bucket * bucketWidth;
+    }
+
+    public long getBucketWidth()
+    {
+        return bucketWidth;
+    }
+
+    public long getCount(int bucket)
+    {
+        return counts[bucket];
+    }
+
+    /**
+     * @return the number of values below the first bucket
+     */
+    public long getUnderflow()
+    {
+        return underflow;
+    }
+
+    /**
+     * @return the number of values above the last bucket
+     */
+    public long getOverflow()
+    {
+        return overflow;
+    }
+
+    public long getTotal()
+    {
+        long total = underflow + overflow;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param quantile from 0 to 1
+     * @return the start of the bucket holding the value of the given rank,
+     * which is exact when the buckets are one wide; values outside the
+     * range are taken to be at its ends
+     */
+    public long getQuantile(double quantile)
+    {
+        long total = getTotal();
+        long target = Math.max(1, (long)Math.ceil(quantile * total));
+        long count = underflow;
+        if (count >= target) {
+            return min;
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            count += counts[i];
+            if (count >= target) {
+                return getBucketStart(i);
+            }
+        }
+        return getBucketStart(counts.length - 1);
+    }
+
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeLong(min);
+        out.writeLong(bucketWidth);
+        out.writeInt(counts.length);
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+        out.writeLong(underflow);
+        out.writeLong(overflow);
+    }
+
+    public static Histogram readFrom(DataInput in) throws IOException
+    {
+        long min = in.readLong();
+        long bucketWidth = in.readLong();
+        int bucketCount = in.readInt();
+        if (bucketWidth <= 0 || bucketCount <= 0) {
+            throw new IOException("Invalid histogram buckets");
+        }
+        Histogram histogram = new Histogram(min, bucketWidth, bucketCount);
+        for (int i = 0; i < bucketCount; ++i) {
+            histogram.counts[i] = in.readLong();
+        }
+        histogram.underflow = in.readLong();
+        histogram.overflow = in.readLong();
+        return histogram;
+    }
+}
@@ -0,0 +1,142 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.stats;
+
+/**
+ * The count, mean, variance, skewness and kurtosis of a stream of values,
+ * along with the smallest and largest, kept as running central moments so
+ * that they stay accurate over billions of values. Two sets of moments can
+ * be merged exactly as if all the values had been added to one.
+ * <p>
+ * Moments aren't thread safe; each thread should keep its own, and they
+ * should be merged once the threads are done.
+ */
+public class Moments
+{
+    private long count;
+    private double mean;
+    private double m2;  // the sums of the powers of the differences from the mean
+    private double m3;
+    private double m4;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value)
+    {
+        long n = count + 1;
+        double delta = value - mean;
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        double term = delta * deltaN * count;
+        mean += deltaN;
+        m4 += term * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term * deltaN * (n - 2) - 3 * deltaN * m2;
+        m2 += term;
+        count = n;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(Moments other)
+    {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            m3 = other.m3;
+            m4 = other.m4;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        double a = count;
+        double b = other.count;
+        double n = a + b;
+        double delta = other.mean - mean;
+        double delta2 = delta * delta;
+        double m4Total = m4 + other.m4
+                + delta2 * delta2 * a * b * (a * a - a * b + b * b) / (n * n * n)
+                + 6 * delta2 * (a * a * other.m2 + b * b * m2) / (n * n)
+                + 4 * delta * (a * other.m3 - b * m3) / n;
+        double m3Total = m3 + other.m3
+                + delta2 * delta * a * b * (a - b) / (n * n)
+                + 3 * delta * (a * other.m2 - b * m2) / n;
+        m2 += other.m2 + delta2 * a * b / n;
+        m3 = m3Total;
+        m4 = m4Total;
+        mean += delta * b / n;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMean()
+    {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return the sample variance
+     */
+    public double getVariance()
+    {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getSkewness()
+    {
+        return Math.sqrt(count) * m3 / Math.pow(m2, 1.5);
+    }
+
+    /**
+     * @return the excess kurtosis, which is 0 for a normal distribution
+     */
+    public double getKurtosis()
+    {
+        return count * m4 / (m2 * m2) - 3;
+    }
+
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+}
@@ -0,0 +1,270 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.stats;
+
+import java.util.Arrays;
+
+/**
+ * Estimates quantiles of a stream of values to within a fixed relative
+ * error, in a fixed amount of memory. Values are counted in buckets whose
+ * bounds grow geometrically, so every value in a bucket is within the
+ * relative accuracy of the bucket's midpoint. Two sketches with the same
+ * accuracy merge exactly, by adding their bucket counts.
+ * <p>
+ * If the values span more buckets than the sketch holds, the lowest buckets
+ * are folded together, which only costs accuracy at the bottom end.
+ * <p>
+ * A sketch isn't thread safe; each thread should fill its own, and the
+ * sketches merged once the threads are done.
+ */
+public class QuantileSketch
+{
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.005;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Store positive;
+    private final Store negative;   // indexed by the magnitude of the values
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch()
+    {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param relativeAccuracy the largest error of a quantile, as a fraction
+     * of its value
+     * @param maxBuckets the most buckets kept for the positive values, and
+     * again for the negative ones
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets)
+    {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1 || maxBuckets < 2) {
+            throw new IllegalArgumentException("Invalid sketch parameters");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+        positive = new Store(maxBuckets);
+        negative = new Store(maxBuckets);
+    }
+
+    public void add(double value)
+    {
+        if (value > Double.MIN_NORMAL) {
+            positive.add(getIndex(value), 1);
+        } else if (value < -Double.MIN_NORMAL) {
+            negative.add(getIndex(-value), 1);
+        } else {
+            ++zeroCount;
+        }
+        ++count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the counts of a sketch with the same accuracy.
+     */
+    public void merge(QuantileSketch other)
+    {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("The sketches have different accuracies");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+
+    /**
+     * @param quantile from 0 to 1
+     * @return the estimated value of the given rank, or NaN if the sketch is
+     * empty
+     */
+    public double getQuantile(double quantile)
+    {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long)(quantile * (count - 1));
+        double value;
+        if (rank < negative.getTotal()) {
+            // the most negative values have the highest indices
+            value = -getValue(negative.getIndexFromTop(rank));
+        } else if (rank < negative.getTotal() + zeroCount) {
+            value = 0;
+        } else {
+            value = getValue(positive.getIndex(rank - negative.getTotal() - zeroCount));
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private int getIndex(double magnitude)
+    {
+        return (int)Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double getValue(int index)
+    {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * The counts of a window of consecutive bucket indices.
+     */
+    private static class Store
+    {
+        private final long[] counts;
+        private int offset;     // the index of counts[0]
+        private long total;
+
+        Store(int maxBuckets)
+        {
+            counts = new long[maxBuckets];
+        }
+
+        void add(int index, long count)
+        {
+            if (total == 0) {
+                // start in the middle of the window, leaving room either way
+                offset = index - counts.length / 2;
+            } else if (index >= offset + counts.length) {
+                slide(index - counts.length + 1);
+            } else if (index < offset) {
+                int highest = getHighest();
+                if (highest - index < counts.length) {
+                    slide(Math.max(index, highest - counts.length + 1));
+                }
+            }
+            counts[Math.max(0, index - offset)] += count;
+            total += count;
+        }
+
+        void merge(Store other)
+        {
+            for (int i = 0; i < other.counts.length; ++i) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        long getTotal()
+        {
+            return total;
+        }
+
+        /**
+         * @return the bucket index of the value of the given rank, counting
+         * up from the lowest index
+         */
+        int getIndex(long rank)
+        {
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return getHighest();
+        }
+
+        /**
+         * @return the bucket index of the value of the given rank, counting
+         * down from the highest index
+         */
+        int getIndexFromTop(long rank)
+        {
+            long seen = 0;
+            for (int i = counts.length - 1; i >= 0; --i) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+
+        private int getHighest()
+        {
+            for (int i = counts.length - 1; i >= 0; --i) {
+                if (counts[i] != 0) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+
+        /**
+         * Moves the window to start at the given index, folding any counts
+         * that fall below it into its lowest bucket.
+         */
+        private void slide(int newOffset)
+        {
+            int shift = newOffset - offset;
+            if (shift > 0) {
+                long folded = 0;
+                for (int i = 0; i < Math.min(shift + 1, counts.length); ++i) {
+                    folded += counts[i];
+                }
+                if (shift < counts.length) {
+                    System.arraycopy(counts, shift, counts, 0, counts.length - shift);
+                    Arrays.fill(counts, counts.length - shift, counts.length, 0);
+                } else {
+                    Arrays.fill(counts, 0);
+                }
+                counts[0] = folded;
+            } else if (shift < 0) {
+                System.arraycopy(counts, 0, counts, -shift, counts.length + shift);
+                Arrays.fill(counts, 0, -shift, 0);
+            }
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.stats;
+
+import java.io.PrintStream;
+
+/**
+ * The distribution of Triple Javatzee grand totals: a histogram over the
+ * whole range of possible scores, a quantile sketch and the moments. It
+ * takes the same small amount of memory however many scores are added.
+ * <p>
+ * A sketch isn't thread safe; each thread should fill its own, and the
+ * sketches merged once the threads are done.
+ */
+public class ScoreSketch
+{
+    /**
+     * Comfortably above the highest grand total the rules allow.
+     */
+    public static final int MAX_SCORE = 6000;
+    public static final int DEFAULT_BUCKET_WIDTH = 50;
+
+    private static final double[] PERCENTILES = {1, 5, 10, 25, 50, 75, 90, 95, 99};
+
+    private final Histogram histogram;
+    private final QuantileSketch quantiles;
+    private final Moments moments;
+
+    public ScoreSketch()
+    {
+        this(DEFAULT_BUCKET_WIDTH);
+    }
+
+    public ScoreSketch(int bucketWidth)
+    {
+        histogram = new Histogram(0, bucketWidth, (MAX_SCORE + bucketWidth) / bucketWidth);
+        quantiles = new QuantileSketch();
+        moments = new Moments();
+    }
+
+    public void add(int score)
+    {
+        histogram.add(score);
+        quantiles.add(score);
+        moments.add(score);
+    }
+
+    public void merge(ScoreSketch other)
+    {
+        histogram.merge(other.histogram);
+        quantiles.merge(other.quantiles);
+        moments.merge(other.moments);
+    }
+
+    public Histogram getHistogram()
+    {
+        return histogram;
+    }
+
+    public QuantileSketch getQuantiles()
+    {
+        return quantiles;
+    }
+
+    public Moments getMoments()
+    {
+        return moments;
+    }
+
+    public void print(PrintStream out)
+    {
+        if (moments.getCount() == 0) {
+            out.println("No scores");
+            return;
+        }
+        out.printf("Scores: %,d, mean %.1f, sd %.1f, skewness %.3f, kurtosis %.3f,"
+                + " min %.0f, max %.0f%n", moments.getCount(), moments.getMean(),
+                moments.getStandardDeviation(), moments.getSkewness(),
+                moments.getKurtosis(), moments.getMin(), moments.getMax());
+        out.print("Percentiles:");
+        for (double percentile : PERCENTILES) {
+            out.printf(" p%.0f=%.0f", percentile, quantiles.getQuantile(percentile / 100));
+        }
+        out.println();
+        for (int i = 0; i < histogram.getBucketCount(); ++i) {
+            long count = histogram.getCount(i);
+            if (count > 0) {
+                out.printf("  %5d-%-5d %12d (%6.2f%%)%n", histogram.getBucketStart(i),
+                        histogram.getBucketStart(i) + histogram.getBucketWidth() - 1,
+                        count, 100.0 * count / moments.getCount());
+            }
+        }
+    }
+}
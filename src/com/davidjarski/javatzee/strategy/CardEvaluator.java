@@ -0,0 +1,184 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.KeepTable;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.KIND5_VALUE;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_BONUS;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_PAR;
+
+/**
+ * Estimates the value of every hand over a turn on a whole score card, the
+ * way TurnEvaluator does for one column. The future value of the card is
+ * taken to be the multiplied sum of the ColumnValues of its columns, which
+ * isn't exact, since the columns share turns and the Javatzee count, but
+ * comes close.
+ * <p>
+ * Values are relative to the estimate for the card before the turn, so a
+ * box value is the expected gain of scoring the hand there. An evaluator
+ * holds the results of the last call to evaluate(), so each thread needs its
+ * own.
+ */
+public class CardEvaluator
+{
+    private static final int COLUMNS = ScoreCard.COLUMNS;
+    private static final int LEVELS = ColumnValues.BONUS_KIND5_COUNT + 1;
+
+    private final ColumnValues values;
+    private final double[][] handValues =
+            new double[TurnEvaluator.MAX_ROLLS_LEFT + 1][TurnEvaluator.HAND_COUNT];
+    private final double[] keptValues = new double[KeepTable.KEPT_COUNT];
+    private final int[] filledRows = new int[COLUMNS];
+    private final int[] upperSubtotals = new int[COLUMNS];
+    // the multiplied value of each column for each Javatzee count it could have
+    private final double[][] columnValues = new double[COLUMNS][LEVELS];
+    private final int[] bestBoxes = new int[TurnEvaluator.HAND_COUNT];
+    private int kind5Count;
+
+    public CardEvaluator(ColumnValues values)
+    {
+        this.values = values;
+    }
+
+    /**
+     * Works out the value of every hand for the next turn on the card.
+     *
+     * @return the expected gain of the turn before its first roll
+     */
+    public double evaluate(ScoreCard card)
+    {
+        if (card.isGameOver()) {
+            throw new IllegalArgumentException("The score card is already full");
+        }
+        kind5Count = Math.min(card.getKind5Count(), ColumnValues.BONUS_KIND5_COUNT);
+        for (int column = 0; column < COLUMNS; ++column) {
+            filledRows[column] = ColumnValues.getFilledRows(card, column);
+            upperSubtotals[column] = card.getUpperSubtotal(column);
+            int multiplier = ScoreCard.getMultiplier(column);
+            for (int level = 0; level < LEVELS; ++level) {
+                columnValues[column][level] = multiplier
+                        * values.getValue(filledRows[column], upperSubtotals[column], level);
+            }
+        }
+
+        double[] scored = handValues[0];
+        for (int hand = 0; hand < TurnEvaluator.HAND_COUNT; ++hand) {
+            double best = Double.NEGATIVE_INFINITY;
+            int bestBox = ScoreCard.NONE;
+            for (int column = 0; column < COLUMNS; ++column) {
+                for (int row = 0; row < ColumnValues.ROWS; ++row) {
+                    if ((filledRows[column] & 1 << row) == 0) {
+                        double value = getBoxValue(hand, column, row);
+                        if (value > best) {
+                            best = value;
+                            bestBox = column * ScoreCard.ROWS + row;
+                        }
+                    }
+                }
+            }
+            scored[hand] = best;
+            bestBoxes[hand] = bestBox;
+        }
+        TurnEvaluator.expandRolls(handValues, keptValues);
+        return TurnEvaluator.expectFirstRoll(handValues);
+    }
+
+    /**
+     * @return the multiplied points scored by entering the hand in the box,
+     * including any bonus it earns, plus the change in the estimated value of
+     * the rest of the card
+     */
+    public double getBoxValue(int hand, int column, int row)
+    {
+        int entry = TurnEvaluator.getHandEntry(hand);
+        int score = HandTable.getScore(entry, row);
+        int points = score;
+        int subtotal = upperSubtotals[column];
+        int count = kind5Count;
+        if (ScoreCard.isUpper(row)) {
+            subtotal += score;
+            if (upperSubtotals[column] < UPPER_PAR && subtotal >= UPPER_PAR) {
+                points += UPPER_BONUS;
+            }
+        }
+        if (score > 0 && HandTable.is(entry, HandTable.FIVE_OF_A_KIND)) {
+            if (kind5Count >= ColumnValues.BONUS_KIND5_COUNT) {
+                points += KIND5_VALUE;
+            } else if (row == ScoreCard.KIND5_ROW) {
+                ++count;
+            }
+        }
+        double value = ScoreCard.getMultiplier(column) * (points + values.getValue(
+                filledRows[column] | 1 << row, subtotal, count));
+        for (int other = 0; other < COLUMNS; ++other) {
+            // a new Javatzee changes the value of every column
+            value -= columnValues[other][kind5Count];
+            if (other != column) {
+                value += columnValues[other][count];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return true if the box was open when the card was evaluated
+     */
+    public boolean isOpen(int column, int row)
+    {
+        return (filledRows[column] & 1 << row) == 0;
+    }
+
+    /**
+     * @return the box, numbered <code>column * ScoreCard.ROWS + row</code>,
+     * in which the hand has the highest value
+     */
+    public int getBestBox(int hand)
+    {
+        return bestBoxes[hand];
+    }
+
+    public double getHandValue(int hand, int rollsLeft)
+    {
+        return handValues[rollsLeft][hand];
+    }
+
+    /**
+     * @return the count histogram of the dice to keep from the hand
+     */
+    public int getBestKeep(int hand, int rollsLeft)
+    {
+        return TurnEvaluator.getBestKeep(hand, rollsLeft, handValues);
+    }
+
+    /**
+     * @param keptHistogram the count histogram of the dice to keep
+     * @param rollsLeft the number of rolls left before the dice are rerolled
+     */
+    public double getKeepValue(int keptHistogram, int rollsLeft)
+    {
+        return TurnEvaluator.expectKeep(keptHistogram, handValues[rollsLeft - 1]);
+    }
+}
@@ -0,0 +1,167 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.IO.ColumnValuesIO;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_PAR;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the ColumnValues table exactly, by working back from the full
+ * column one layer of filled rows at a time. Every state in a layer only
+ * depends on states in the layer after it, so each layer is split across the
+ * fork-join pool.
+ */
+public class ColumnSolver
+{
+    private static final int LEAF_MASK_COUNT = 8;
+    private static final int UPPER_ROW_COUNT = ScoreCard.SIXES_ROW + 1;
+    private static final int MAX_COUNT = 5;
+
+    private final float[] values = new float[ColumnValues.STATE_COUNT];
+    private final ColumnValues table = new ColumnValues(FloatBuffer.wrap(values));
+    private final ForkJoinPool pool;
+    // for each set of filled upper rows, a bit for every subtotal it can add up to
+    private final long[] reachableSubtotals = new long[1 << UPPER_ROW_COUNT];
+
+    public ColumnSolver()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ColumnSolver(ForkJoinPool pool)
+    {
+        this.pool = pool;
+        reachableSubtotals[0] = 1;
+        for (int upper = 1; upper < reachableSubtotals.length; ++upper) {
+            int row = Integer.numberOfTrailingZeros(upper);
+            long previous = reachableSubtotals[upper & ~(1 << row)];
+            long reachable = 0;
+            for (int subtotal = 0; subtotal <= UPPER_PAR; ++subtotal) {
+                if ((previous & 1L << subtotal) != 0) {
+                    for (int count = 0; count <= MAX_COUNT; ++count) {
+                        reachable |= 1L << Math.min(UPPER_PAR, subtotal + count * (row + 1));
+                    }
+                }
+            }
+            reachableSubtotals[upper] = reachable;
+        }
+    }
+
+    /**
+     * @return the value of every state, indexed as in ColumnValues; states
+     * that can't be reached are left at zero
+     */
+    public float[] solve()
+    {
+        for (int filledCount = ColumnValues.ROWS - 1; filledCount >= 0; --filledCount) {
+            int[] masks = new int[binomial(ColumnValues.ROWS, filledCount)];
+            int count = 0;
+            for (int mask = 0; mask < ColumnValues.ALL_FILLED; ++mask) {
+                if (Integer.bitCount(mask) == filledCount) {
+                    masks[count++] = mask;
+                }
+            }
+            pool.invoke(new LayerTask(masks, 0, masks.length));
+        }
+        return values;
+    }
+
+    private void solveRows(TurnEvaluator evaluator, int filledRows)
+    {
+        int upper = filledRows & ColumnValues.UPPER_ROWS;
+        long subtotals = upper == ColumnValues.UPPER_ROWS ? 1 : reachableSubtotals[upper];
+        boolean kind5Open = (filledRows & ColumnValues.KIND5_ROW_BIT) == 0;
+        for (int subtotal = 0; subtotal <= UPPER_PAR; ++subtotal) {
+            if ((subtotals & 1L << subtotal) == 0) {
+                continue;
+            }
+            for (int kind5Count = 0; kind5Count <= ColumnValues.BONUS_KIND5_COUNT; ++kind5Count) {
+                // the other counts share an index with these ones
+                if (kind5Count == 0 || kind5Count == ColumnValues.BONUS_KIND5_COUNT
+                        || kind5Count == ColumnValues.BONUS_KIND5_COUNT - 1 && kind5Open) {
+                    values[ColumnValues.getIndex(filledRows, subtotal, kind5Count)] =
+                            (float)evaluator.evaluate(filledRows, subtotal, kind5Count);
+                }
+            }
+        }
+    }
+
+    private static int binomial(int n, int k)
+    {
+        int result = 1;
+        for (int i = 1; i <= k; ++i) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    private class LayerTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] masks;
+        private final int from;
+        private final int to;
+
+        LayerTask(int[] masks, int from, int to)
+        {
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= LEAF_MASK_COUNT) {
+                TurnEvaluator evaluator = new TurnEvaluator(table);
+                for (int i = from; i < to; ++i) {
+                    solveRows(evaluator, masks[i]);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LayerTask(masks, from, middle),
+                        new LayerTask(masks, middle, to));
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        long start = System.nanoTime();
+        float[] values = new ColumnSolver().solve();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Solved in %.1f s%n", elapsed / 1e9);
+        ColumnValues table = new ColumnValues(FloatBuffer.wrap(values));
+        System.out.printf("Expected score of an empty column: %.3f%n",
+                table.getValue(0, 0, 0));
+        System.out.printf("With the Javatzee bonus enabled: %.3f%n",
+                table.getValue(0, 0, ColumnValues.BONUS_KIND5_COUNT));
+        ColumnValuesIO.write(values);
+    }
+}
@@ -0,0 +1,145 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.IO.ColumnValuesIO;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_PAR;
+import java.nio.FloatBuffer;
+
+/**
+ * The expected score still to come in a single column of the score card,
+ * played optimally from any state until the column is full. The table is
+ * computed by ColumnSolver and memory-mapped from the column values file, so
+ * a lookup is only an index calculation and a read.
+ * <p>
+ * The state of a column is the set of rows that have been filled, the upper
+ * subtotal (which only matters up to UPPER_PAR) and the number of Javatzees
+ * the player has scored, which decides whether a five of a kind earns the
+ * Javatzee bonus. The values are for a column multiplier of 1, and don't
+ * include any points already scored.
+ */
+public class ColumnValues
+{
+    public static final int ROWS = ScoreCard.CHANCE_ROW + 1;
+    public static final int ALL_FILLED = (1 << ROWS) - 1;
+    public static final int UPPER_ROWS = (1 << ScoreCard.SIXES_ROW + 1) - 1;
+    public static final int KIND5_ROW_BIT = 1 << ScoreCard.KIND5_ROW;
+    /**
+     * The Javatzee count at which the bonus is enabled.
+     */
+    public static final int BONUS_KIND5_COUNT = 3;
+
+    static final int SUBTOTAL_LEVELS = UPPER_PAR + 1;
+    static final int KIND5_LEVELS = BONUS_KIND5_COUNT + 1;
+    public static final int STATE_COUNT = (ALL_FILLED + 1) * SUBTOTAL_LEVELS * KIND5_LEVELS;
+
+    private static ColumnValues instance;
+
+    private final FloatBuffer values;
+
+    public ColumnValues(FloatBuffer values)
+    {
+        if (values.limit() != STATE_COUNT) {
+            throw new IllegalArgumentException("Expected " + STATE_COUNT
+                    + " values but there are " + values.limit());
+        }
+        this.values = values;
+    }
+
+    /**
+     * Loads the table from the column values file, solving it and saving
+     * the file first if it doesn't exist yet. Solving takes a while, so the
+     * first call shouldn't be made on the event dispatch thread.
+     */
+    public static synchronized ColumnValues getInstance()
+    {
+        if (instance == null) {
+            FloatBuffer buffer = ColumnValuesIO.read(STATE_COUNT);
+            if (buffer == null) {
+                float[] solved = new ColumnSolver().solve();
+                ColumnValuesIO.write(solved);
+                buffer = FloatBuffer.wrap(solved);
+            }
+            instance = new ColumnValues(buffer);
+        }
+        return instance;
+    }
+
+    /**
+     * @param filledRows a mask with bit <code>row</code> set for every row of
+     * the column that has been scored, using the row numbers in ScoreCard
+     * @param upperSubtotal the sum of the upper rows of the column
+     * @param kind5Count the number of Javatzees the player has scored,
+     * as returned by ScoreCard.getKind5Count()
+     * @return the expected score still to come in the column
+     */
+    public float getValue(int filledRows, int upperSubtotal, int kind5Count)
+    {
+        return values.get(getIndex(filledRows, upperSubtotal, kind5Count));
+    }
+
+    public float getValue(ScoreCard card, int column)
+    {
+        return getValue(getFilledRows(card, column), card.getUpperSubtotal(column),
+                card.getKind5Count());
+    }
+
+    float get(int index)
+    {
+        return values.get(index);
+    }
+
+    /**
+     * @return the mask of the rows of the column that have been scored
+     */
+    public static int getFilledRows(ScoreCard card, int column)
+    {
+        return (int)(card.getFilledMask() >>> column * ScoreCard.ROWS) & ALL_FILLED;
+    }
+
+    /**
+     * Maps a state to its place in the table. States that can't affect the
+     * rest of the column differently share an index: the upper subtotal is
+     * capped at UPPER_PAR and ignored once the upper rows are full, since the
+     * bonus is counted when it is earned, and the Javatzee count is reduced
+     * to whether the bonus is enabled, or, while the Javatzee row is open,
+     * whether scoring it would enable the bonus.
+     */
+    static int getIndex(int filledRows, int upperSubtotal, int kind5Count)
+    {
+        int subtotal = (filledRows & UPPER_ROWS) == UPPER_ROWS ? 0
+                : Math.min(upperSubtotal, UPPER_PAR);
+        int level;
+        if (kind5Count >= BONUS_KIND5_COUNT) {
+            level = BONUS_KIND5_COUNT;
+        } else if (kind5Count == BONUS_KIND5_COUNT - 1
+                && (filledRows & KIND5_ROW_BIT) == 0) {
+            level = kind5Count;
+        } else {
+            level = 0;
+        }
+        return (filledRows * SUBTOTAL_LEVELS + subtotal) * KIND5_LEVELS + level;
+    }
+}
@@ -0,0 +1,112 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.PackedHand;
+
+/**
+ * A choice made by a Strategy: either the dice to keep before the
+ * next roll, or the box to score the hand in.
+ */
+public class Decision
+{
+    private final int keepMask;
+    private final int column;
+    private final int row;
+    private final double value;
+
+    private Decision(int keepMask, int column, int row, double value)
+    {
+        this.keepMask = keepMask;
+        this.column = column;
+        this.row = row;
+        this.value = value;
+    }
+
+    /**
+     * @param keepMask the dice to keep, with bit <code>i</code> standing for
+     * die <code>i</code>
+     */
+    public static Decision keep(int keepMask, double value)
+    {
+        return new Decision(keepMask, ScoreCard.NONE, ScoreCard.NONE, value);
+    }
+
+    public static Decision score(int column, int row, double value)
+    {
+        return new Decision(PackedHand.ALL_DICE, column, row, value);
+    }
+
+    /**
+     * @return true if the hand should be scored now, rather than rerolled
+     */
+    public boolean isScore()
+    {
+        return column != ScoreCard.NONE;
+    }
+
+    /**
+     * @return the dice to keep, with bit <code>i</code> standing for die
+     * <code>i</code>; every die is kept when the hand is to be scored
+     */
+    public int getKeepMask()
+    {
+        return keepMask;
+    }
+
+    /**
+     * @return the column to score in, or ScoreCard.NONE when rerolling
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * @return the row to score in, or ScoreCard.NONE when rerolling
+     */
+    public int getRow()
+    {
+        return row;
+    }
+
+    /**
+     * @return the estimated gain of the decision, as calculated by the
+     * CardEvaluator for the DecisionEngine
+     */
+    public double getValue()
+    {
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (isScore()) {
+            return String.format("score column %d, row %d (%.2f)", column, row, value);
+        }
+        return String.format("keep %5s (%.2f)", Integer.toBinaryString(keepMask), value);
+    }
+}
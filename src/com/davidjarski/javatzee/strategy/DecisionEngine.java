@@ -0,0 +1,378 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.dice.DiceRandom;
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.Hand;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.KeepTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks the dice to keep and the box to score in for a player of Triple
+ * Javatzee.
+ * <p>
+ * Every decision starts from the CardEvaluator estimate, which is exact for
+ * the rest of the turn but only approximates the rest of the game with the
+ * single column values. When several choices come out close, they are played
+ * out to the end of the game in parallel rollouts until the time budget runs
+ * out, and the one with the best average final score is taken. The rollouts
+ * for each choice use the same dice, so that the differences between them
+ * aren't lost in the noise.
+ * <p>
+ * The dice of the rollouts are seeded from the decision itself, the card and
+ * the hand, but how many are played within a time budget depends on the
+ * machine. An engine made with withRollouts() plays a fixed number instead,
+ * and so always makes the same decision from the same position, as
+ * simulations need.
+ * <p>
+ * An engine can be shared by several threads.
+ */
+public class DecisionEngine implements Strategy
+{
+    public static final long DEFAULT_TIME_BUDGET = 100;  // milliseconds
+
+    /**
+     * The most choices that are compared with rollouts.
+     */
+    private static final int MAX_CANDIDATES = 4;
+    /**
+     * How far below the best estimate a choice can be and still be rolled
+     * out, in points.
+     */
+    private static final double CANDIDATE_MARGIN = 4.0;
+    /**
+     * The fewest rollouts of each choice needed before they can overrule the
+     * estimate.
+     */
+    private static final int MIN_ROLLOUTS = 16;
+
+    private final ColumnValues values;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<CardEvaluator> evaluators;
+    private final ThreadLocal<ScoreCard> scratchCards;
+    private final int rollouts;  // the number of rollouts, or 0 to use the time budget
+    private volatile long timeBudget;
+
+    public DecisionEngine(ColumnValues values)
+    {
+        this(values, DEFAULT_TIME_BUDGET, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param timeBudget the longest a decision should take, in milliseconds;
+     * with a budget of 0 the estimate alone decides
+     * @param pool the pool the rollouts are run in
+     */
+    public DecisionEngine(ColumnValues values, long timeBudget, ForkJoinPool pool)
+    {
+        this(values, timeBudget, 0, pool);
+    }
+
+    private DecisionEngine(ColumnValues values, long timeBudget, int rollouts,
+            ForkJoinPool pool)
+    {
+        this.values = values;
+        this.timeBudget = timeBudget;
+        this.rollouts = rollouts;
+        this.pool = pool;
+        evaluators = ThreadLocal.withInitial(() -> new CardEvaluator(values));
+        scratchCards = ThreadLocal.withInitial(ScoreCard::new);
+    }
+
+    /**
+     * @param rollouts the number of rollouts of each close choice, whatever
+     * the time they take; with 0 the estimate alone decides
+     * @param pool the pool the rollouts are run in
+     * @return an engine whose decisions depend only on the position
+     */
+    public static DecisionEngine withRollouts(ColumnValues values, int rollouts,
+            ForkJoinPool pool)
+    {
+        return new DecisionEngine(values, 0, rollouts, pool);
+    }
+
+    public long getTimeBudget()
+    {
+        return timeBudget;
+    }
+
+    /**
+     * Has no effect on an engine made with withRollouts().
+     */
+    public void setTimeBudget(long timeBudget)
+    {
+        this.timeBudget = timeBudget;
+    }
+
+    public Decision decide(ScoreCard card, Hand hand, int rollsLeft)
+    {
+        return decide(card, PackedHand.of(hand), rollsLeft);
+    }
+
+    /**
+     * @param card the score card of the player to move
+     * @param hand the packed hand that has just been rolled
+     * @param rollsLeft the number of rolls left in the turn
+     */
+    @Override
+    public Decision decide(ScoreCard card, int hand, int rollsLeft)
+    {
+        if (card.isGameOver()) {
+            throw new IllegalArgumentException("The score card is already full");
+        }
+        CardEvaluator evaluator = evaluators.get();
+        evaluator.evaluate(card);
+        List<Decision> candidates = getCandidates(evaluator, hand, rollsLeft);
+        Decision best = candidates.get(0);
+        long budget = timeBudget;
+        if (candidates.size() == 1 || rollouts == 0 && budget <= 0) {
+            return best;
+        }
+        return rollOut(card, hand, rollsLeft, candidates, budget);
+    }
+
+    /**
+     * @return the choices worth rolling out, best first
+     */
+    private List<Decision> getCandidates(CardEvaluator evaluator, int hand,
+            int rollsLeft)
+    {
+        int index = HandTable.getIndex(PackedHand.classify(hand));
+        List<Decision> choices = new ArrayList<>();
+        if (rollsLeft == 0) {
+            for (int column = 0; column < ScoreCard.COLUMNS; ++column) {
+                for (int row = 0; row < ColumnValues.ROWS; ++row) {
+                    if (evaluator.isOpen(column, row)) {
+                        choices.add(Decision.score(column, row,
+                                evaluator.getBoxValue(index, column, row)));
+                    }
+                }
+            }
+        } else {
+            int box = evaluator.getBestBox(index);
+            choices.add(Decision.score(box / ScoreCard.ROWS, box % ScoreCard.ROWS,
+                    evaluator.getHandValue(index, 0)));
+            int histogram = PackedHand.getHistogram(hand);
+            for (int i = KeepTable.getFirstKeep(index); i < KeepTable.getKeepLimit(index); ++i) {
+                int kept = KeepTable.getKeptHistogram(KeepTable.getKeep(i));
+                if (kept != histogram) {
+                    choices.add(Decision.keep(PackedHand.getKeepMask(hand, kept),
+                            evaluator.getKeepValue(kept, rollsLeft)));
+                }
+            }
+        }
+        choices.sort((left, right) -> Double.compare(right.getValue(), left.getValue()));
+        double threshold = choices.get(0).getValue() - CANDIDATE_MARGIN;
+        int count = 1;
+        while (count < Math.min(MAX_CANDIDATES, choices.size())
+                && choices.get(count).getValue() >= threshold) {
+            ++count;
+        }
+        return choices.subList(0, count);
+    }
+
+    private Decision rollOut(ScoreCard card, int hand, int rollsLeft,
+            List<Decision> candidates, long budget)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+        int samples = rollouts > 0 ? rollouts : Integer.MAX_VALUE;
+        long seed = getSeed(card, hand, rollsLeft);
+        AtomicInteger nextSample = new AtomicInteger();
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); ++i) {
+            workers.add(pool.submit(() -> {
+                // the last element counts the samples
+                long[] totals = new long[candidates.size() + 1];
+                RolloutRandom random = new RolloutRandom();
+                int sample;
+                while ((sample = nextSample.getAndIncrement()) < samples
+                        && (rollouts > 0 || System.nanoTime() < deadline)) {
+                    for (int c = 0; c < candidates.size(); ++c) {
+                        random.setSeed(seed, sample);
+                        totals[c] += playOut(card, hand, rollsLeft, candidates.get(c),
+                                random);
+                    }
+                    ++totals[candidates.size()];
+                }
+                return totals;
+            }));
+        }
+        long[] totals = new long[candidates.size() + 1];
+        try {
+            for (Future<long[]> worker : workers) {
+                long[] result = worker.get();
+                for (int c = 0; c < totals.length; ++c) {
+                    totals[c] += result[c];
+                }
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            Logger.getLogger(DecisionEngine.class.getName()).log(Level.SEVERE, null, ex);
+            return candidates.get(0);
+        }
+        if (totals[candidates.size()] < MIN_ROLLOUTS) {
+            return candidates.get(0);
+        }
+        int best = 0;
+        for (int c = 1; c < candidates.size(); ++c) {
+            if (totals[c] > totals[best]) {
+                best = c;
+            }
+        }
+        return candidates.get(best);
+    }
+
+    /**
+     * @return a seed for the rollouts of a decision, the same whenever the
+     * position is
+     */
+    private static long getSeed(ScoreCard card, int hand, int rollsLeft)
+    {
+        long seed = (long)hand << 2 | rollsLeft;
+        for (int packed : card.getInts()) {
+            seed = seed * RolloutRandom.GAMMA + packed;
+        }
+        return seed;
+    }
+
+    /**
+     * Makes the decision, then plays the rest of the game on a copy of the
+     * card following the estimate.
+     *
+     * @return the final score of the card
+     */
+    private int playOut(ScoreCard card, int hand, int rollsLeft, Decision decision,
+            RandomGenerator random)
+    {
+        CardEvaluator evaluator = evaluators.get();
+        ScoreCard copy = scratchCards.get();
+        copy.copyFrom(card);
+        if (decision.isScore()) {
+            copy.score(decision.getColumn(), decision.getRow(), PackedHand.classify(hand));
+        } else {
+            evaluator.evaluate(copy);
+            playTurn(copy, PackedHand.reroll(hand, decision.getKeepMask(), random),
+                    rollsLeft - 1, evaluator, random);
+        }
+        while (!copy.isGameOver()) {
+            evaluator.evaluate(copy);
+            playTurn(copy, PackedHand.roll(random), Turn.MAX_ROLL_COUNT - 1,
+                    evaluator, random);
+        }
+        return copy.getGrandTotal();
+    }
+
+    /**
+     * Finishes a turn following an evaluator that has already evaluated the
+     * card.
+     */
+    static void playTurn(ScoreCard card, int hand, int rollsLeft,
+            CardEvaluator evaluator, RandomGenerator random)
+    {
+        int index = HandTable.getIndex(PackedHand.classify(hand));
+        while (rollsLeft > 0) {
+            int kept = evaluator.getBestKeep(index, rollsLeft);
+            if (kept == PackedHand.getHistogram(hand)) {
+                break;
+            }
+            hand = PackedHand.reroll(hand, PackedHand.getKeepMask(hand, kept), random);
+            index = HandTable.getIndex(PackedHand.classify(hand));
+            --rollsLeft;
+        }
+        int box = evaluator.getBestBox(index);
+        card.score(box / ScoreCard.ROWS, box % ScoreCard.ROWS, PackedHand.classify(hand));
+    }
+
+    /**
+     * The SplitMix64 generator, which can be seeded again for each sample, so
+     * that a worker needs only one for all its rollouts.
+     */
+    private static class RolloutRandom implements RandomGenerator
+    {
+        static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+
+        void setSeed(long seed, int sample)
+        {
+            state = mix(seed + sample * GAMMA);
+        }
+
+        @Override
+        public long nextLong()
+        {
+            state += GAMMA;
+            return mix(state);
+        }
+
+        private static long mix(long z)
+        {
+            z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+            return z ^ z >>> 31;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        DecisionEngine engine = new DecisionEngine(ColumnValues.getInstance(), budget,
+                ForkJoinPool.commonPool());
+        RandomGenerator random = DiceRandom.create();
+        ScoreCard card = new ScoreCard();
+        long total = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; ++game) {
+            card.reset();
+            while (!card.isGameOver()) {
+                int hand = PackedHand.roll(random);
+                int rollsLeft = Turn.MAX_ROLL_COUNT - 1;
+                Decision decision = engine.decide(card, hand, rollsLeft);
+                while (!decision.isScore() && rollsLeft > 0) {
+                    hand = PackedHand.reroll(hand, decision.getKeepMask(), random);
+                    decision = engine.decide(card, hand, --rollsLeft);
+                }
+                card.score(decision.getColumn(), decision.getRow(),
+                        PackedHand.classify(hand));
+            }
+            total += card.getGrandTotal();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d games, average score %.1f, %.1f ms per game%n",
+                games, (double)total / games, elapsed / 1e6 / games);
+    }
+}
@@ -0,0 +1,128 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+
+/**
+ * A quick rule of thumb player, for when millions of games have to be played
+ * and the DecisionEngine would take too long. It goes for the most common
+ * face, or for a straight when it has four in a row, and scores in the box
+ * that beats its par by the most, once multiplied for its column.
+ * <p>
+ * A GreedyStrategy has no state, so one can be shared by any number of
+ * threads.
+ */
+public class GreedyStrategy implements Strategy
+{
+    /**
+     * Roughly what each row is worth on average in a well played column.
+     */
+    private static final double[] PARS = {
+        2.1, 5.3, 8.6, 12.2, 15.7, 19.2,    // upper rows
+        15.0, 5.6, 22.0, 29.0, 32.0, 16.0, 22.0
+    };
+    /**
+     * The count histograms of the runs of four, in octal since each face
+     * takes three bits.
+     */
+    private static final int[] RUNS = {0111100, 011110, 01111};
+
+    @Override
+    public Decision decide(ScoreCard card, int hand, int rollsLeft)
+    {
+        int entry = PackedHand.classify(hand);
+        if (rollsLeft > 0 && !isWorthScoring(card, entry)) {
+            return Decision.keep(getKeepMask(card, hand, entry), 0);
+        }
+        int bestColumn = ScoreCard.NONE;
+        int bestRow = ScoreCard.NONE;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int column = 0; column < ScoreCard.COLUMNS; ++column) {
+            int multiplier = ScoreCard.getMultiplier(column);
+            for (int row = 0; row < ScoreCard.ROWS; ++row) {
+                if (!card.isFilled(column, row)) {
+                    double value = (HandTable.getScore(entry, row) - PARS[row]) * multiplier;
+                    if (value > best) {
+                        best = value;
+                        bestColumn = column;
+                        bestRow = row;
+                    }
+                }
+            }
+        }
+        return Decision.score(bestColumn, bestRow, best);
+    }
+
+    /**
+     * @return true if the hand already fills one of the hard boxes
+     */
+    private static boolean isWorthScoring(ScoreCard card, int entry)
+    {
+        if (HandTable.is(entry, HandTable.FIVE_OF_A_KIND)) {
+            return true;
+        }
+        if (HandTable.is(entry, HandTable.LONG_STRAIGHT)) {
+            return isOpen(card, ScoreCard.LONG_STRAIGHT_ROW)
+                    || isOpen(card, ScoreCard.SHORT_STRAIGHT_ROW);
+        }
+        return HandTable.is(entry, HandTable.FULL_HOUSE)
+                && isOpen(card, ScoreCard.FULL_HOUSE_ROW);
+    }
+
+    private static int getKeepMask(ScoreCard card, int hand, int entry)
+    {
+        int histogram = PackedHand.getHistogram(hand);
+        if (HandTable.is(entry, HandTable.SHORT_STRAIGHT)
+                && isOpen(card, ScoreCard.LONG_STRAIGHT_ROW)) {
+            for (int run : RUNS) {
+                int keepMask = PackedHand.getKeepMask(hand, run);
+                if (keepMask >= 0) {
+                    return keepMask;
+                }
+            }
+        }
+        // keep every die showing the most common face, the highest on a tie
+        int bestFace = 0;
+        for (int face = 1; face < HandTable.FACE_COUNT; ++face) {
+            if (HandTable.getCount(histogram, face) >= HandTable.getCount(histogram, bestFace)) {
+                bestFace = face;
+            }
+        }
+        int count = HandTable.getCount(histogram, bestFace);
+        return PackedHand.getKeepMask(hand, count << HandTable.COUNT_BITS * bestFace);
+    }
+
+    private static boolean isOpen(ScoreCard card, int row)
+    {
+        for (int column = 0; column < ScoreCard.COLUMNS; ++column) {
+            if (!card.isFilled(column, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
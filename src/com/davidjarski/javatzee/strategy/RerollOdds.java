@@ -0,0 +1,173 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.KeepTable;
+import com.davidjarski.javatzee.hand.PackedHand;
+
+/**
+ * Exact odds of finishing a turn with each kind of hand, given the dice that
+ * are locked for the next roll and the rolls left. After the next roll the
+ * dice are assumed to be kept as well as possible for each kind of hand
+ * separately, so each probability is the best that can be done when going
+ * for that hand alone.
+ * <p>
+ * The odds come from the outcome lists of KeepTable, which give the chance of
+ * ending up with each hand from each set of kept dice. The odds of every hand
+ * with every number of rolls left are built once the first time they are
+ * needed and shared after that, so a query is a single sum over the outcomes
+ * of the locked dice.
+ */
+public class RerollOdds
+{
+    /**
+     * The kinds of hand the odds are given for, in the order they're
+     * returned by getOdds.
+     */
+    public static final int[] CATEGORIES = {
+        HandTable.THREE_OF_A_KIND, HandTable.FOUR_OF_A_KIND, HandTable.FULL_HOUSE,
+        HandTable.SHORT_STRAIGHT, HandTable.LONG_STRAIGHT, HandTable.FIVE_OF_A_KIND
+    };
+
+    private static final int HAND_COUNT = HandTable.HAND_COUNT;
+    private static final int MAX_ROLLS_LEFT = Turn.MAX_ROLL_COUNT - 1;
+
+    private RerollOdds() { }
+
+    /**
+     * Builds the shared table when RerollOdds is first used.
+     */
+    private static class Tables
+    {
+        // ODDS[rollsLeft][hand][category]
+        static final double[][][] ODDS = new double[MAX_ROLLS_LEFT + 1][HAND_COUNT][];
+
+        static {
+            for (int hand = 0; hand < HAND_COUNT; ++hand) {
+                int entry = HandTable.getEntry(HandTable.getHistogram(hand));
+                ODDS[0][hand] = new double[CATEGORIES.length];
+                for (int c = 0; c < CATEGORIES.length; ++c) {
+                    ODDS[0][hand][c] = HandTable.is(entry, CATEGORIES[c]) ? 1 : 0;
+                }
+            }
+            double[] odds = new double[CATEGORIES.length];
+            for (int rollsLeft = 1; rollsLeft <= MAX_ROLLS_LEFT; ++rollsLeft) {
+                for (int hand = 0; hand < HAND_COUNT; ++hand) {
+                    double[] best = new double[CATEGORIES.length];
+                    int limit = KeepTable.getKeepLimit(hand);
+                    for (int i = KeepTable.getFirstKeep(hand); i < limit; ++i) {
+                        multiply(KeepTable.getKeep(i), ODDS[rollsLeft - 1], odds);
+                        for (int c = 0; c < CATEGORIES.length; ++c) {
+                            best[c] = Math.max(best[c], odds[c]);
+                        }
+                    }
+                    ODDS[rollsLeft][hand] = best;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param hand the packed hand showing
+     * @param lockedMask the dice that won't be rerolled, with bit
+     * <code>i</code> standing for die <code>i</code>
+     * @param rollsLeft the number of rolls left in the turn
+     * @return the chance of finishing the turn with each of the CATEGORIES
+     */
+    public static double[] getOdds(int hand, int lockedMask, int rollsLeft)
+    {
+        double[] odds = new double[CATEGORIES.length];
+        getOdds(hand, lockedMask, rollsLeft, odds);
+        return odds;
+    }
+
+    /**
+     * Fills the array with the odds, without allocating anything.
+     *
+     * @see #getOdds(int, int, int)
+     */
+    public static void getOdds(int hand, int lockedMask, int rollsLeft, double[] odds)
+    {
+        if (rollsLeft < 0 || rollsLeft > MAX_ROLLS_LEFT) {
+            throw new IllegalArgumentException("Illegal number of rolls left");
+        }
+        if (rollsLeft == 0) {
+            int index = HandTable.getIndex(PackedHand.classify(hand));
+            System.arraycopy(Tables.ODDS[0][index], 0, odds, 0, CATEGORIES.length);
+        } else {
+            multiply(KeepTable.getKeptIndex(hand, lockedMask),
+                    Tables.ODDS[rollsLeft - 1], odds);
+        }
+    }
+
+    /**
+     * @return the chance of ending up with each hand, by HandTable index,
+     * after rolling every die that isn't kept
+     */
+    public static double[] getOutcomes(int keptHistogram)
+    {
+        double[] outcomes = new double[HAND_COUNT];
+        int kept = KeepTable.getKeptIndex(keptHistogram);
+        for (int i = KeepTable.getFirstOutcome(kept); i < KeepTable.getOutcomeLimit(kept); ++i) {
+            outcomes[KeepTable.getOutcomeHand(i)] = KeepTable.getOutcomeProbability(i);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Sums the odds of the hands rerolling the dice that aren't kept can
+     * lead to, weighted by their chances.
+     */
+    private static void multiply(int kept, double[][] handOdds, double[] odds)
+    {
+        for (int c = 0; c < odds.length; ++c) {
+            odds[c] = 0;
+        }
+        int limit = KeepTable.getOutcomeLimit(kept);
+        for (int i = KeepTable.getFirstOutcome(kept); i < limit; ++i) {
+            double p = KeepTable.getOutcomeProbability(i);
+            double[] next = handOdds[KeepTable.getOutcomeHand(i)];
+            for (int c = 0; c < odds.length; ++c) {
+                odds[c] += p * next[c];
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int hand = PackedHand.of(3, 3, 4, 5, 1);
+        String[] names = {"Three of a Kind", "Four of a Kind", "Full House",
+            "Short Straight", "Long Straight", "Javatzee"};
+        for (int lockedMask : new int[]{0, 0b00011, 0b01110}) {
+            System.out.println(PackedHand.toString(hand) + " locked "
+                    + Integer.toBinaryString(lockedMask) + ", 2 rolls left:");
+            double[] odds = getOdds(hand, lockedMask, 2);
+            for (int c = 0; c < odds.length; ++c) {
+                System.out.printf("  %-16s %6.2f%%%n", names[c], odds[c] * 100);
+            }
+        }
+    }
+}
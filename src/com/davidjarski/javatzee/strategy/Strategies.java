@@ -0,0 +1,62 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates the strategies that can be chosen by name on the command line.
+ */
+public class Strategies
+{
+    public static final String GREEDY = "greedy";
+    public static final String ENGINE = "engine";
+
+    private Strategies() { }
+
+    /**
+     * @param name "greedy" for the GreedyStrategy, or "engine" for the
+     * DecisionEngine, optionally followed by a colon and the number of
+     * rollouts of each close choice, such as "engine:50"; without rollouts
+     * the engine's estimate alone decides. The rollouts are counted rather
+     * than timed, so a seeded run always plays the same games
+     * @throws IllegalArgumentException if there is no strategy by that name
+     */
+    public static Strategy create(String name)
+    {
+        String[] parts = name.split(":", 2);
+        switch (parts[0]) {
+        case GREEDY:
+            if (parts.length == 1) {
+                return new GreedyStrategy();
+            }
+            break;
+        case ENGINE:
+            int rollouts = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return DecisionEngine.withRollouts(ColumnValues.getInstance(), rollouts,
+                    ForkJoinPool.commonPool());
+        }
+        throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+}
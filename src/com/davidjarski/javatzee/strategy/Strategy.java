@@ -0,0 +1,45 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+
+/**
+ * Plays a single player's side of Triple Javatzee, one roll at a time.
+ * <p>
+ * A strategy is shared by every thread of a simulation, so it must be safe to
+ * call from several threads at once.
+ */
+public interface Strategy
+{
+    /**
+     * @param card the score card of the player to move, which must not be
+     * changed
+     * @param hand the packed hand that has just been rolled
+     * @param rollsLeft the number of rolls left in the turn
+     * @return the dice to keep before the next roll, or the box to score in,
+     * which must be open; when no rolls are left the hand must be scored
+     */
+    Decision decide(ScoreCard card, int hand, int rollsLeft);
+}
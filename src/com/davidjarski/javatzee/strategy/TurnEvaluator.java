@@ -0,0 +1,259 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2014 David Jarski.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.davidjarski.javatzee.strategy;
+
+import com.davidjarski.javatzee.engine.ScoreCard;
+import com.davidjarski.javatzee.engine.Turn;
+import com.davidjarski.javatzee.hand.HandTable;
+import com.davidjarski.javatzee.hand.KeepTable;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.KIND5_VALUE;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_BONUS;
+import static com.davidjarski.javatzee.scorepad.ScoreConstants.UPPER_PAR;
+
+/**
+ * Works out the value of every hand and every choice of dice to keep over a
+ * single turn in one column, given the values of the states the column can
+ * move to afterwards.
+ * <p>
+ * Hands are identified by their HandTable index. Kept dice are identified by
+ * their count histogram, packed the same way as in HandTable, and the sets of
+ * kept dice and their outcomes are read from the shared KeepTable.
+ * <p>
+ * An evaluator holds the results of the last call to evaluate(), so each
+ * thread needs its own.
+ */
+public class TurnEvaluator
+{
+    public static final int HAND_COUNT = HandTable.HAND_COUNT;
+    public static final int MAX_ROLLS_LEFT = Turn.MAX_ROLL_COUNT - 1;
+
+    private static final int[] HAND_ENTRIES = new int[HAND_COUNT];
+
+    static {
+        for (int hand = 0; hand < HAND_COUNT; ++hand) {
+            HAND_ENTRIES[hand] = HandTable.getEntry(HandTable.getHistogram(hand));
+        }
+    }
+
+    private final ColumnValues values;
+    // the value of each hand with the given number of rolls left
+    private final double[][] handValues = new double[MAX_ROLLS_LEFT + 1][HAND_COUNT];
+    private final double[] keptValues = new double[KeepTable.KEPT_COUNT];
+    private int filledRows;
+    private int upperSubtotal;
+    private int kind5Count;
+
+    public TurnEvaluator(ColumnValues values)
+    {
+        this.values = values;
+    }
+
+    /**
+     * Works out the value of every hand for a turn in a column in the given
+     * state. Every state the turn can lead to must already be in the table.
+     *
+     * @return the expected score still to come in the column, before the
+     * first roll of the turn
+     * @see ColumnValues#getValue(int, int, int)
+     */
+    public double evaluate(int filledRows, int upperSubtotal, int kind5Count)
+    {
+        if (filledRows == ColumnValues.ALL_FILLED) {
+            throw new IllegalArgumentException("The column is already full");
+        }
+        this.filledRows = filledRows;
+        this.upperSubtotal = upperSubtotal;
+        this.kind5Count = kind5Count;
+
+        double[] scored = handValues[0];
+        for (int hand = 0; hand < HAND_COUNT; ++hand) {
+            double best = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < ColumnValues.ROWS; ++row) {
+                if ((filledRows & 1 << row) == 0) {
+                    best = Math.max(best, getBoxValue(hand, row));
+                }
+            }
+            scored[hand] = best;
+        }
+        expandRolls(handValues, keptValues);
+        return expectFirstRoll(handValues);
+    }
+
+    /**
+     * @return the expected score still to come in the column if the hand is
+     * played as well as possible with the given number of rolls left
+     */
+    public double getHandValue(int hand, int rollsLeft)
+    {
+        return handValues[rollsLeft][hand];
+    }
+
+    /**
+     * @return the count histogram of the dice to keep from the hand
+     */
+    public int getBestKeep(int hand, int rollsLeft)
+    {
+        return getBestKeep(hand, rollsLeft, handValues);
+    }
+
+    /**
+     * @param keptHistogram the count histogram of the dice to keep
+     * @param rollsLeft the number of rolls left before the dice are rerolled
+     * @return the expected score still to come in the column if the other
+     * dice are rerolled, then played as well as possible
+     */
+    public double getKeepValue(int keptHistogram, int rollsLeft)
+    {
+        if (rollsLeft < 1) {
+            throw new IllegalArgumentException("No rolls are left");
+        }
+        return expectKeep(keptHistogram, handValues[rollsLeft - 1]);
+    }
+
+    /**
+     * @return the points scored by entering the hand in the row, including
+     * any bonus it earns, plus the expected score still to come in the
+     * column afterwards
+     */
+    public double getBoxValue(int hand, int row)
+    {
+        int entry = HAND_ENTRIES[hand];
+        int score = HandTable.getScore(entry, row);
+        int points = score;
+        int subtotal = upperSubtotal;
+        int count = kind5Count;
+        if (ScoreCard.isUpper(row)) {
+            subtotal += score;
+            if (upperSubtotal < UPPER_PAR && subtotal >= UPPER_PAR) {
+                points += UPPER_BONUS;
+            }
+        }
+        if (score > 0 && HandTable.is(entry, HandTable.FIVE_OF_A_KIND)) {
+            if (kind5Count >= ColumnValues.BONUS_KIND5_COUNT) {
+                points += KIND5_VALUE;
+            } else if (row == ScoreCard.KIND5_ROW) {
+                ++count;
+            }
+        }
+        return points + values.get(ColumnValues.getIndex(filledRows | 1 << row,
+                subtotal, count));
+    }
+
+    /**
+     * @return the open row with the highest box value for the hand
+     */
+    public int getBestRow(int hand)
+    {
+        int bestRow = ScoreCard.NONE;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int row = 0; row < ColumnValues.ROWS; ++row) {
+            if ((filledRows & 1 << row) == 0) {
+                double value = getBoxValue(hand, row);
+                if (value > best) {
+                    best = value;
+                    bestRow = row;
+                }
+            }
+        }
+        return bestRow;
+    }
+
+    /**
+     * Fills in the value of every hand with one or more rolls left from the
+     * values of the hands with no rolls left, keeping the best dice each time.
+     *
+     * @param keptValues scratch space for the value of each set of kept dice
+     */
+    static void expandRolls(double[][] handValues, double[] keptValues)
+    {
+        for (int rollsLeft = 1; rollsLeft <= MAX_ROLLS_LEFT; ++rollsLeft) {
+            double[] previous = handValues[rollsLeft - 1];
+            for (int kept = 0; kept < KeepTable.KEPT_COUNT; ++kept) {
+                keptValues[kept] = expect(kept, previous);
+            }
+            double[] current = handValues[rollsLeft];
+            for (int hand = 0; hand < HAND_COUNT; ++hand) {
+                double best = Double.NEGATIVE_INFINITY;
+                int limit = KeepTable.getKeepLimit(hand);
+                for (int i = KeepTable.getFirstKeep(hand); i < limit; ++i) {
+                    best = Math.max(best, keptValues[KeepTable.getKeep(i)]);
+                }
+                current[hand] = best;
+            }
+        }
+    }
+
+    /**
+     * @return the expected value of a hand before the first roll of a turn
+     */
+    static double expectFirstRoll(double[][] handValues)
+    {
+        return expect(KeepTable.NOTHING_KEPT, handValues[MAX_ROLLS_LEFT]);
+    }
+
+    /**
+     * @return the expected value of rerolling the dice that aren't in the
+     * kept histogram
+     */
+    static double expectKeep(int keptHistogram, double[] handValues)
+    {
+        return expect(KeepTable.getKeptIndex(keptHistogram), handValues);
+    }
+
+    /**
+     * @return the count histogram of the set of kept dice, out of those the
+     * hand can keep, with the highest value
+     */
+    static int getBestKeep(int hand, int rollsLeft, double[][] handValues)
+    {
+        double[] next = handValues[rollsLeft - 1];
+        int bestKept = KeepTable.NOTHING_KEPT;
+        double best = Double.NEGATIVE_INFINITY;
+        int limit = KeepTable.getKeepLimit(hand);
+        for (int i = KeepTable.getFirstKeep(hand); i < limit; ++i) {
+            int kept = KeepTable.getKeep(i);
+            double value = expect(kept, next);
+            if (value > best) {
+                best = value;
+                bestKept = kept;
+            }
+        }
+        return KeepTable.getKeptHistogram(bestKept);
+    }
+
+    static int getHandEntry(int hand)
+    {
+        return HAND_ENTRIES[hand];
+    }
+
+    private static double expect(int kept, double[] handValues)
+    {
+        double sum = 0;
+        int limit = KeepTable.getOutcomeLimit(kept);
+        for (int i = KeepTable.getFirstOutcome(kept); i < limit; ++i) {
+            sum += KeepTable.getOutcomeProbability(i) * handValues[KeepTable.getOutcomeHand(i)];
+        }
+        return sum;
+    }
+}